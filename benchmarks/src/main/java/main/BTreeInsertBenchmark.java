@@ -0,0 +1,111 @@
+package main;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmark of the throughput of BTree.insert, for words drawn uniformly and
+ * following Zipf's law. Every iteration starts from an empty tree, which grows
+ * over the iteration, so splits and buffer pool write backs are included.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BTreeInsertBenchmark {
+    /**
+     * Amount of distinct words the inserted words are drawn from.
+     */
+    static final int VOCABULARY = 100_000;
+    /**
+     * Amount of words drawn, a power of two, they are inserted again from the start once all were inserted.
+     */
+    static final int WORDS = 1 << 20;
+    /**
+     * How the words are drawn, "uniform" or "zipf".
+     */
+    @Param({"uniform", "zipf"})
+    String distribution;
+    /**
+     * Page size of the tree.
+     */
+    @Param({"4096", "16384"})
+    int pageSize;
+    /**
+     * Dictionary holding every word already, so that only the tree is measured.
+     */
+    TermDictionary dictionary;
+    /**
+     * The words, in the order they are inserted.
+     */
+    String[] words;
+    /**
+     * Index of the next word to insert.
+     */
+    int next;
+    /**
+     * The file of the tree.
+     */
+    File file;
+    /**
+     * The tree being inserted into.
+     */
+    BTree tree;
+
+    /**
+     * Method to draw the words and give each of them a term id.
+     * @throws IOException never, the dictionary is not backed by a file.
+     */
+    @Setup(Level.Trial)
+    public void drawWords() throws IOException {
+        double exponent = distribution.equals("zipf") ? Zipf.DEFAULT_EXPONENT : 0;
+        words = new Zipf(VOCABULARY, exponent).words(WORDS, new Random(42));
+        dictionary = new TermDictionary();
+        for (String w : words) dictionary.id(w);
+    }
+
+    /**
+     * Method to start an empty tree.
+     * @throws IOException if the tree could not be created.
+     */
+    @Setup(Level.Iteration)
+    public void createTree() throws IOException {
+        file = File.createTempFile("insert", ".bt");
+        tree = new BTree(new RandomAccessFile(file, "rw"), dictionary, pageSize);
+        next = 0;
+    }
+
+    /**
+     * Method to close and delete the tree.
+     * @throws IOException if the tree could not be closed.
+     */
+    @TearDown(Level.Iteration)
+    public void deleteTree() throws IOException {
+        tree.close();
+        file.delete();
+    }
+
+    @Benchmark
+    public void insert() throws IOException {
+        tree.insert(words[next++ & (WORDS - 1)]);
+    }
+}
@@ -0,0 +1,107 @@
+package main;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmark of the latency of BTree.search for words drawn following Zipf's law.
+ * A search does not add the nodes it reads to the buffer pool, it reads their pages
+ * through a NodeView, so the cache that matters is the one of the pages. With a cold
+ * cache every page is read from the file (the OS may still have the page cached).
+ * With a warm cache the tree is opened over a page cache holding every page of the
+ * tree, filled by a scan of the tree before the benchmark starts. The caches are set up
+ * once per trial, and every call searches for the next word drawn.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BTreeSearchBenchmark {
+    /**
+     * Amount of words drawn to search for, a power of two.
+     */
+    static final int QUERIES = 1 << 16;
+    /**
+     * Amount of distinct words in the tree.
+     */
+    @Param({"10000", "100000"})
+    int size;
+    /**
+     * "cold" or "warm".
+     */
+    @Param({"cold", "warm"})
+    String cache;
+    /**
+     * Page size of the tree.
+     */
+    @Param({"4096", "16384"})
+    int pageSize;
+    /**
+     * The words searched for, in order.
+     */
+    String[] queries;
+    /**
+     * Index of the next word to search for.
+     */
+    int next;
+    /**
+     * The file of the tree.
+     */
+    File file;
+    /**
+     * The tree being searched.
+     */
+    BTree tree;
+
+    /**
+     * Method to build the tree, holding every word of the vocabulary once, and reopen it.
+     * @throws IOException if the tree could not be written or opened.
+     */
+    @Setup(Level.Trial)
+    public void buildTree() throws IOException {
+        TermDictionary dictionary = new TermDictionary();
+        file = File.createTempFile("search", ".bt");
+        BTree built = new BTree(new RandomAccessFile(file, "rw"), dictionary, pageSize);
+        for (int i = 0; i < size; i++) built.insert(Zipf.word(i));
+        built.close();
+        PageStore store = new ChannelPageStore(new RandomAccessFile(file, "rw"), pageSize);
+        if (cache.equals("warm")) store = new CachedPageStore(store, new PageCache((built.treeSize.get() + 2) * pageSize, pageSize));
+        tree = BTree.open(store, dictionary, BufferPool.MIN_CAPACITY);
+        if (cache.equals("warm")) tree.forEach((term, count) -> { }); // reads every page into the page cache
+        queries = new Zipf(size, Zipf.DEFAULT_EXPONENT).words(QUERIES, new Random(42));
+    }
+
+    /**
+     * Method to close and delete the tree.
+     * @throws IOException if the tree could not be closed.
+     */
+    @TearDown(Level.Trial)
+    public void deleteTree() throws IOException {
+        tree.close();
+        file.delete();
+    }
+
+    @Benchmark
+    public Entry search() throws IOException {
+        return tree.search(queries[next++ & (QUERIES - 1)]);
+    }
+}
@@ -0,0 +1,113 @@
+package main;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmark of the cost of reading and writing a single node through
+ * BTree.diskRead and BTree.diskWrite, encoding and decoding included,
+ * for both the channel and the memory mapped page store.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class NodeIoBenchmark {
+    /**
+     * Amount of distinct words in the tree.
+     */
+    static final int SIZE = 100_000;
+    /**
+     * Amount of node ids drawn to read, a power of two.
+     */
+    static final int READS = 1 << 16;
+    /**
+     * "channel" or "mapped".
+     */
+    @Param({"channel", "mapped"})
+    String store;
+    /**
+     * Page size of the tree.
+     */
+    @Param({"4096", "8192", "16384"})
+    int pageSize;
+    /**
+     * The ids of the nodes read, in order.
+     */
+    long[] ids;
+    /**
+     * Index of the next node to read.
+     */
+    int next;
+    /**
+     * The node written back to its page.
+     */
+    Node node;
+    /**
+     * The file of the tree.
+     */
+    File file;
+    /**
+     * The tree whose nodes are read and written.
+     */
+    BTree tree;
+
+    /**
+     * Method to build the tree and reopen it with the page store being measured.
+     * @throws IOException if the tree could not be written or opened.
+     */
+    @Setup(Level.Trial)
+    public void buildTree() throws IOException {
+        TermDictionary dictionary = new TermDictionary();
+        file = File.createTempFile("nodes", ".bt");
+        BTree built = new BTree(new RandomAccessFile(file, "rw"), dictionary, pageSize);
+        for (int i = 0; i < SIZE; i++) built.insert(Zipf.word(i));
+        built.close();
+        RandomAccessFile raf = new RandomAccessFile(file, "rw");
+        PageStore pages = store.equals("mapped") ? new MappedPageStore(raf, pageSize) : new ChannelPageStore(raf, pageSize);
+        tree = BTree.open(pages, dictionary);
+        Random random = new Random(42);
+        ids = new long[READS];
+        for (int i = 0; i < READS; i++) ids[i] = BTree.ROOT_ID + random.nextInt((int) tree.treeSize.get());
+        node = tree.diskRead(BTree.ROOT_ID);
+    }
+
+    /**
+     * Method to close and delete the tree.
+     * @throws IOException if the tree could not be closed.
+     */
+    @TearDown(Level.Trial)
+    public void deleteTree() throws IOException {
+        tree.close();
+        file.delete();
+    }
+
+    @Benchmark
+    public Node diskRead() throws IOException {
+        return tree.diskRead(ids[next++ & (READS - 1)]);
+    }
+
+    @Benchmark
+    public void diskWrite() throws IOException {
+        tree.diskWrite(node); // the node is written back unchanged, so the tree stays the same
+    }
+}
@@ -0,0 +1,136 @@
+package main;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmark of Webpage.tfidf, Corpus.counts and Webpage.getBestMatch on corpora of generated
+ * pages, built through the ingestion pipeline so that nothing is fetched.
+ * In the lsh mode the matches are only found among the candidates of an LSH
+ * index, and the recall against the exact ranking is printed once the corpus is built.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RankingBenchmark {
+    /**
+     * Amount of distinct words the pages are made of.
+     */
+    static final int VOCABULARY = 50_000;
+    /**
+     * Amount of words in the body of a page.
+     */
+    static final int WORDS_PER_DOC = 300;
+    /**
+     * Amount of pages and words drawn for the lookups, a power of two.
+     */
+    static final int LOOKUPS = 1 << 12;
+    /**
+     * Amount of pages the recall of the lsh mode is measured with.
+     */
+    static final int RECALL_QUERIES = 200;
+    /**
+     * Amount of pages in the corpus.
+     */
+    @Param({"100", "1000", "10000"})
+    int numDocs;
+    /**
+     * Whether every page sharing a term with the query is scored (exact) or only the candidates of an LSH index (lsh).
+     */
+    @Param({"exact", "lsh"})
+    String mode;
+    /**
+     * Directory the corpus is built in.
+     */
+    File dir;
+    /**
+     * The corpus.
+     */
+    Corpus corpus;
+    /**
+     * The pages looked up, in order.
+     */
+    Webpage[] pages;
+    /**
+     * The words looked up, in order.
+     */
+    String[] words;
+    /**
+     * Index of the next lookup.
+     */
+    int next;
+
+    /**
+     * Method to build the corpus and draw the lookups.
+     * @throws IOException if the corpus could not be built.
+     * @throws InterruptedException if the thread is interrupted while the corpus is built.
+     */
+    @Setup(Level.Trial)
+    public void buildCorpus() throws IOException, InterruptedException {
+        dir = Files.createTempDirectory("corpus").toFile();
+        corpus = Corpus.create(dir, PersistentStatics.DEFAULT_PAGE_SIZE);
+        new IngestionPipeline(new SyntheticSource(numDocs, VOCABULARY, WORDS_PER_DOC, 42), (page, done, total) -> {
+        }).run(corpus);
+        corpus.vectors(); // built once, as they would be before the first query
+        Random random = new Random(42);
+        pages = new Webpage[LOOKUPS];
+        for (int i = 0; i < LOOKUPS; i++) pages[i] = corpus.get(random.nextInt(corpus.size()));
+        if (mode.equals("lsh")) {
+            corpus.enableLsh(LshIndex.DEFAULT_BANDS, LshIndex.DEFAULT_ROWS);
+            int[] queries = new int[Math.min(RECALL_QUERIES, corpus.size())];
+            for (int i = 0; i < queries.length; i++) queries[i] = pages[i].docId;
+            System.out.println("recall@10 = " + new Ranker(corpus).recall(queries, 10));
+        }
+        words = new Zipf(VOCABULARY, Zipf.DEFAULT_EXPONENT).words(LOOKUPS, random);
+    }
+
+    /**
+     * Method to close and delete the corpus.
+     * @throws IOException if the corpus could not be closed.
+     */
+    @TearDown(Level.Trial)
+    public void deleteCorpus() throws IOException {
+        corpus.close();
+        File[] files = dir.listFiles();
+        if (files != null) {
+            for (File f : files) f.delete();
+        }
+        dir.delete();
+    }
+
+    @Benchmark
+    public double tfidf() throws IOException {
+        int i = next++ & (LOOKUPS - 1);
+        return pages[i].tfidf(words[i], corpus);
+    }
+
+    @Benchmark
+    public int[] countEverywhere() throws IOException {
+        return corpus.counts(corpus.dictionary.lookup(words[next++ & (LOOKUPS - 1)]));
+    }
+
+    @Benchmark
+    public Webpage getBestMatch() throws IOException {
+        return pages[next++ & (LOOKUPS - 1)].getBestMatch(corpus);
+    }
+}
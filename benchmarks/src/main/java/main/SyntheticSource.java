@@ -0,0 +1,67 @@
+package main;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Document source of generated pages, so that a corpus of any size can be
+ * built for the benchmarks without a network or saved pages. Each page has
+ * a title and a body of words drawn following Zipf's law, and the same
+ * pages are generated every run.
+ */
+public class SyntheticSource implements DocumentSource {
+    /**
+     * Prefix of the location of a page, followed by its number.
+     */
+    static final String PREFIX = "synthetic://page/";
+    /**
+     * Amount of pages in the source.
+     */
+    int numDocs;
+    /**
+     * Amount of distinct words the pages are made of.
+     */
+    int vocabulary;
+    /**
+     * Amount of words in the body of a page.
+     */
+    int wordsPerDoc;
+    /**
+     * Seed the words of every page are drawn from, together with the page's number.
+     */
+    long seed;
+    /**
+     * Distribution the words are drawn from, shared by every page.
+     */
+    Zipf zipf;
+
+    SyntheticSource(int aNumDocs, int aVocabulary, int aWordsPerDoc, long aSeed) {
+        numDocs = aNumDocs;
+        vocabulary = aVocabulary;
+        wordsPerDoc = aWordsPerDoc;
+        seed = aSeed;
+        zipf = new Zipf(vocabulary, Zipf.DEFAULT_EXPONENT);
+    }
+
+    @Override
+    public List<String> locations() {
+        ArrayList<String> locations = new ArrayList<>(numDocs);
+        for (int i = 0; i < numDocs; i++) locations.add(PREFIX + i);
+        return locations;
+    }
+
+    @Override
+    public RawDocument load(String location) {
+        int n = Integer.parseInt(location.substring(PREFIX.length()));
+        Random random = new Random(seed * 31 + n);
+        StringBuilder html = new StringBuilder("<html><head><title>Page ").append(n).append("</title></head><body><p>");
+        for (int i = 0; i < wordsPerDoc; i++) html.append(Zipf.word(zipf.next(random))).append(' ');
+        return new RawDocument(location, html.append("</p></body></html>").toString());
+    }
+
+    @Override
+    public String toString() {
+        return "synthetic " + numDocs + " " + vocabulary + " " + wordsPerDoc + " " + seed;
+    }
+}
@@ -0,0 +1,67 @@
+package main;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Generator of synthetic words for the benchmarks. Word i of the vocabulary is
+ * "t" followed by i, and words are drawn either uniformly or following Zipf's law,
+ * where word i is drawn about 1 / (i + 1)^s as often as the most common word,
+ * the way words are spread over natural text.
+ */
+public class Zipf {
+    /**
+     * Exponent of the distribution, about 1 for English text.
+     */
+    static final double DEFAULT_EXPONENT = 1.0;
+    /**
+     * Chance of drawing each word or a lower one, by word.
+     */
+    double[] cdf;
+
+    /**
+     * Constructor for a generator drawing words following Zipf's law.
+     * @param vocabulary the amount of distinct words.
+     * @param exponent the exponent of the distribution, 0 for a uniform distribution.
+     */
+    Zipf(int vocabulary, double exponent) {
+        cdf = new double[vocabulary];
+        double sum = 0;
+        for (int i = 0; i < vocabulary; i++) {
+            sum += 1 / Math.pow(i + 1, exponent);
+            cdf[i] = sum;
+        }
+        for (int i = 0; i < vocabulary; i++) cdf[i] /= sum;
+    }
+
+    /**
+     * Method to get a word of the vocabulary.
+     * @param i the rank of the word.
+     * @return the word.
+     */
+    static String word(int i) {
+        return "t" + i;
+    }
+
+    /**
+     * Method to draw the rank of a word.
+     * @param random the source of the draw, seeded so that every run draws the same words.
+     * @return the rank, from 0 for the most common word.
+     */
+    int next(Random random) {
+        int i = Arrays.binarySearch(cdf, random.nextDouble());
+        return Math.min(i < 0 ? -i - 1 : i, cdf.length - 1);
+    }
+
+    /**
+     * Method to draw a number of words.
+     * @param n the amount of words.
+     * @param random the source of the draws.
+     * @return the words, in the order they were drawn.
+     */
+    String[] words(int n, Random random) {
+        String[] words = new String[n];
+        for (int i = 0; i < n; i++) words[i] = word(next(random));
+        return words;
+    }
+}
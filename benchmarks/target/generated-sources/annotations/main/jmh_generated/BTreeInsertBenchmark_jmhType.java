@@ -0,0 +1,4 @@
+package main.jmh_generated;
+public class BTreeInsertBenchmark_jmhType extends BTreeInsertBenchmark_jmhType_B3 {
+}
+
@@ -0,0 +1,4 @@
+package main.jmh_generated;
+public class BTreeSearchBenchmark_jmhType extends BTreeSearchBenchmark_jmhType_B3 {
+}
+
@@ -0,0 +1,4 @@
+package main.jmh_generated;
+public class NodeIoBenchmark_jmhType extends NodeIoBenchmark_jmhType_B3 {
+}
+
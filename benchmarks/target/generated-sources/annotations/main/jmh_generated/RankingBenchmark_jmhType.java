@@ -0,0 +1,4 @@
+package main.jmh_generated;
+public class RankingBenchmark_jmhType extends RankingBenchmark_jmhType_B3 {
+}
+
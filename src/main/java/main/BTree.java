@@ -3,344 +3,581 @@ package main;
 import java.io.IOException;
 import java.io.RandomAccessFile;
 import java.nio.ByteBuffer;
-import java.nio.channels.FileChannel;
-import java.nio.charset.StandardCharsets;
-import java.util.LinkedHashMap;
-import java.util.Map;
-import java.util.StringTokenizer;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 /**
- * Class that will be used to represent the b-tree of order 32
+ * Class that will be used to represent the b-tree
  * for storing the words and frequencies of a specific document.
+ * The tree is keyed by the int ids the corpus' term dictionary gives the words.
+ * Its order follows from the page size it is created with, see NodeCodec.
+ * Several threads may search and insert at the same time. Every node has a
+ * read/write latch, shared with the nodes whose ids are LATCH_STRIPES apart, and a
+ * search or insert going down the tree latches a child before letting go of its parent
+ * (latch coupling). Inserts split full nodes on the way down, so the parent is never
+ * needed again once the child is latched.
+ * What the tree does is counted in its Metrics, and given to the flight recorder as TreeEvents.
  */
-public class BTree {
+public class BTree implements TermIndex {
     /**
      * Maximum amount of entries that the cache may
      * contain before removing the least recently used.
      */
     static final int MAX_CACHE_ENTRIES = 100;
     /**
-     * The root node of the tree.
+     * How full bulk loading makes each node, a packed tree by default.
      */
-    Node root;
+    static final double DEFAULT_FILL_FACTOR = 1.0;
     /**
-     * The file on disk that will contain the data
-     * for the tree.
+     * The id of the root node, the root always lives in the page after the superblock.
      */
-    RandomAccessFile file;
+    static final long ROOT_ID = PersistentStatics.SUPERBLOCK_ID + 1;
     /**
-     * The file channel that will be used to write to
-     * the random access file.
+     * Amount of threads reading pages in the background for every tree.
      */
-    FileChannel channel;
+    static final int IO_THREADS = 16;
     /**
-     * Buffer cache to speed up IO.
+     * Amount of latches the nodes of a tree share, a power of two.
      */
-    LinkedHashMap<Long, Node> cache;
+    static final int LATCH_STRIPES = 64;
     /**
-     * Size of the tree in terms of amount of nodes.
+     * Executor shared by every tree to read pages in the background, so that reads of
+     * several nodes, or of several trees, wait on the disk at the same time. Its threads
+     * are daemons, so it never keeps the program from exiting.
      */
-    long treeSize;
+    static final ExecutorService IO = Executors.newFixedThreadPool(IO_THREADS, r -> {
+        Thread thread = new Thread(r, "btree-io");
+        thread.setDaemon(true);
+        return thread;
+    });
+    /**
+     * The storage engine holding the pages of the tree.
+     */
+    PageStore store;
+    /**
+     * Buffer pool caching the nodes of the tree, changes are written back
+     * when a node is evicted or the tree is flushed.
+     */
+    BufferPool cache;
+    /**
+     * Size of the tree in terms of amount of nodes, a new node gets the id ROOT_ID + treeSize.
+     */
+    AtomicLong treeSize;
+    /**
+     * Amount of distinct terms in the tree.
+     */
+    AtomicLong distinctTerms;
+    /**
+     * Total of the counts of every term in the tree.
+     */
+    AtomicLong totalTerms;
+    /**
+     * Buffer holding a single page for each thread, reused for every disk read and write.
+     */
+    ThreadLocal<ByteBuffer> page;
+    /**
+     * View over a single page for each thread, reused for every lookup.
+     */
+    ThreadLocal<NodeView> views;
+    /**
+     * The latches of the nodes, a node uses the one at its id masked by LATCH_STRIPES - 1,
+     * so there are as many however large the tree grows.
+     */
+    ReentrantReadWriteLock[] latches;
+    /**
+     * Codec for the pages of the tree, which also gives the tree its T.
+     */
+    NodeCodec codec;
+    /**
+     * T of the tree, a node has at most 2T - 1 entries and 2T children.
+     */
+    int t;
+    /**
+     * Dictionary the words are turned into term ids with.
+     */
+    TermDictionary dictionary;
+    /**
+     * Counters and latency histograms the tree reports to.
+     */
+    Metrics metrics;
+    /**
+     * Executor the tree reads pages on in the background.
+     */
+    ExecutorService io;
+
+    BTree(RandomAccessFile aFile, TermDictionary aDictionary) throws IOException {
+        this(aFile, aDictionary, PersistentStatics.DEFAULT_PAGE_SIZE);
+    }
 
-    BTree(RandomAccessFile aFile) throws IOException {
-        file = aFile;
-        channel = file.getChannel();
-        treeSize = 0;
-        root = new Node(treeSize++);
+    /**
+     * Constructor for a tree with a given page size.
+     * @param aFile the file on disk that will contain the data for the tree.
+     * @param aDictionary dictionary the words are turned into term ids with.
+     * @param pageSize the size of the pages, one of PersistentStatics.PAGE_SIZES.
+     * @throws IOException if the root could not be written.
+     * @throws IllegalArgumentException if the page size is not supported.
+     */
+    BTree(RandomAccessFile aFile, TermDictionary aDictionary, int pageSize) throws IOException {
+        this(new ChannelPageStore(aFile, pageSize), aDictionary);
+    }
+
+    BTree(PageStore aStore, TermDictionary aDictionary) throws IOException {
+        this(aStore, aDictionary, MAX_CACHE_ENTRIES);
+    }
+
+    BTree(PageStore aStore, TermDictionary aDictionary, int cacheCapacity) throws IOException {
+        this(aStore, aDictionary, cacheCapacity, null);
+    }
+
+    /**
+     * Constructor for a new tree, or for a tree that is already in a page store.
+     * @param aStore the page store holding the tree.
+     * @param aDictionary dictionary the words are turned into term ids with.
+     * @param cacheCapacity the amount of nodes the buffer pool may hold.
+     * @param existing the superblock of the tree already in the store, or null to start a new tree.
+     * @throws IOException if the superblock and root of a new tree could not be written.
+     */
+    private BTree(PageStore aStore, TermDictionary aDictionary, int cacheCapacity, Superblock existing) throws IOException {
+        store = aStore;
+        dictionary = aDictionary;
+        metrics = Metrics.GLOBAL;
+        io = IO;
+        codec = new NodeCodec(aStore.pageSize());
+        t = codec.t;
+        page = ThreadLocal.withInitial(() -> ByteBuffer.allocate(codec.pageSize));
+        views = ThreadLocal.withInitial(() -> new NodeView(codec));
+        latches = new ReentrantReadWriteLock[LATCH_STRIPES];
+        for (int i = 0; i < LATCH_STRIPES; i++) latches[i] = new ReentrantReadWriteLock();
+        cache = new BufferPool(this, cacheCapacity);
+        if (existing != null) {
+            treeSize = new AtomicLong(existing.nodeCount);
+            distinctTerms = new AtomicLong(existing.distinctTerms);
+            totalTerms = new AtomicLong(existing.totalTerms);
+            return;
+        }
+        treeSize = new AtomicLong();
+        distinctTerms = new AtomicLong();
+        totalTerms = new AtomicLong();
+        Node root = new Node(newId(), t);
         root.leaf = true;
-        cache = new LinkedHashMap<>(133) {
-            @Override
-            protected boolean removeEldestEntry(Map.Entry<Long, Node> eldest) {
-                return cache.size() >= MAX_CACHE_ENTRIES;
-            }
-        };
         diskWrite(root);
+        writeSuperblock();
+        store.commit();
+    }
+
+    /**
+     * Method to open a tree that is already in a page store, only its superblock is read.
+     * @param aStore the page store holding the tree.
+     * @param aDictionary dictionary the tree's term ids were given by.
+     * @return the tree.
+     * @throws IOException if the superblock could not be read, or is not one of a tree in this store.
+     */
+    static BTree open(PageStore aStore, TermDictionary aDictionary) throws IOException {
+        return open(aStore, aDictionary, MAX_CACHE_ENTRIES);
+    }
+
+    /**
+     * Method to open a tree that is already in a page store, only its superblock is read.
+     * @param aStore the page store holding the tree.
+     * @param aDictionary dictionary the tree's term ids were given by.
+     * @param cacheCapacity the amount of nodes the buffer pool may hold.
+     * @return the tree.
+     * @throws IOException if the superblock could not be read, or is not one of a tree in this store.
+     */
+    static BTree open(PageStore aStore, TermDictionary aDictionary, int cacheCapacity) throws IOException {
+        ByteBuffer page = ByteBuffer.allocate(aStore.pageSize());
+        aStore.read(PersistentStatics.SUPERBLOCK_ID, page);
+        Superblock s = Superblock.decode(page);
+        if (s.pageSize != aStore.pageSize())
+            throw new IOException("tree has " + s.pageSize + " byte pages, the store has " + aStore.pageSize());
+        if (s.rootId != ROOT_ID) throw new IOException("unexpected root id: " + s.rootId);
+        return new BTree(aStore, aDictionary, cacheCapacity, s);
+    }
+
+    /**
+     * Method to open a tree that is already in a file, with the page size it was created with.
+     * @param aFile the file holding the tree.
+     * @param aDictionary dictionary the tree's term ids were given by.
+     * @return the tree.
+     * @throws IOException if the superblock could not be read, or is not one of a tree.
+     */
+    static BTree open(RandomAccessFile aFile, TermDictionary aDictionary) throws IOException {
+        aFile.seek(PersistentStatics.PAGE_SIZE_OFFSET); // the page size is at the same place for every page size
+        return open(new ChannelPageStore(aFile, aFile.readInt()), aDictionary);
+    }
+
+    /**
+     * Method to get the id for a new node.
+     * @return the id.
+     */
+    long newId() {
+        return ROOT_ID + treeSize.getAndIncrement();
+    }
+
+    /**
+     * Method to write the superblock of the tree to its page.
+     * @throws IOException if the superblock could not be written.
+     */
+    void writeSuperblock() throws IOException {
+        Superblock s = new Superblock();
+        s.pageSize = codec.pageSize;
+        s.rootId = ROOT_ID;
+        s.nodeCount = treeSize.get();
+        s.freeList = PersistentStatics.NO_PAGE; // nodes are never deleted, so no page is ever freed
+        s.distinctTerms = distinctTerms.get();
+        s.totalTerms = totalTerms.get();
+        ByteBuffer page = this.page.get();
+        page.clear();
+        s.encode(page);
+        store.write(PersistentStatics.SUPERBLOCK_ID, page);
+    }
+
+    /**
+     * Method to create a tree whose file is memory mapped rather than
+     * read and written through its file channel.
+     * @param aFile the file on disk that will contain the data for the tree.
+     * @param aDictionary dictionary the words are turned into term ids with.
+     * @return the new tree.
+     * @throws IOException if the file could not be mapped.
+     */
+    static BTree mapped(RandomAccessFile aFile, TermDictionary aDictionary) throws IOException {
+        return mapped(aFile, aDictionary, PersistentStatics.DEFAULT_PAGE_SIZE);
+    }
+
+    /**
+     * Method to create a memory mapped tree with a given page size.
+     * @param aFile the file on disk that will contain the data for the tree.
+     * @param aDictionary dictionary the words are turned into term ids with.
+     * @param pageSize the size of the pages, one of PersistentStatics.PAGE_SIZES.
+     * @return the new tree.
+     * @throws IOException if the file could not be mapped.
+     * @throws IllegalArgumentException if the page size is not supported.
+     */
+    static BTree mapped(RandomAccessFile aFile, TermDictionary aDictionary, int pageSize) throws IOException {
+        return new BTree(new MappedPageStore(aFile, pageSize), aDictionary);
     }
 
     /**
      * Method to write the fields of the node to disk.
-     * Will be in the order of id, numEntries, leaf, words, counts, children
+     * The node is encoded into the page buffer and handed to the page store
+     * in one write, in the order of header, keys, counts, children.
      * @param n the node whose fields are being written to disk.
-     * @throws IOException if there is an issue with seeking to any of the
-     * fields indices in the file.
+     * @throws IOException if there is an issue with writing the page to the file.
      */
     void diskWrite(Node n) throws IOException {
-        System.out.println("DW!");
-        channel.position((n.id * PersistentStatics.TOTAL_SIZE) + PersistentStatics.ID_ARR_OFFSET);
-        ByteBuffer idBuf = ByteBuffer.allocate(PersistentStatics.ID_ARR_SIZE);
-        idBuf.putLong(n.id);
-        idBuf.flip();
-        channel.write(idBuf); // id
-        channel.position((n.id * PersistentStatics.TOTAL_SIZE) + PersistentStatics.NUM_ENTRIES_ARR_OFFSET);
-        ByteBuffer numEntriesBuf = ByteBuffer.allocate(PersistentStatics.NUM_ENTRIES_ARR_SIZE);
-        numEntriesBuf.putInt(n.numEntries);
-        numEntriesBuf.flip();
-        channel.write(numEntriesBuf); // num entries
-        channel.position((n.id * PersistentStatics.TOTAL_SIZE) + PersistentStatics.LEAF_ARR_OFFSET);
-        ByteBuffer leafBuf = ByteBuffer.allocate(PersistentStatics.LEAF_ARR_SIZE);
-        if (n.leaf) leafBuf.putInt(1);
-        else leafBuf.putInt(0);
-        leafBuf.flip();
-        channel.write(leafBuf); // leaf
-        for (int i = 0; i < n.entries.length; i++) {
-            ByteBuffer words = ByteBuffer.allocate(PersistentStatics.MAX_WORD_LEN);
-            channel.position((n.id * PersistentStatics.TOTAL_SIZE) + (PersistentStatics.WORD_ARR_OFFSET + (PersistentStatics.MAX_WORD_LEN * i)));
-            String word;
-            if (n.entries[i] == null) word = "null";
-            else word = n.entries[i].word;
-            int wordLen = word.length();
-            while (wordLen < 32) {
-                word += " "; // padding the word to 32 bytes
-                wordLen = word.length();
-            }
-            byte[] bArr = new byte[32];
-            for (int j = 0; j < 32; j++) {
-                byte b = (byte)word.charAt(j);
-                bArr[j] = b;
-            }
-            words.put(bArr);
-            words.flip();
-            channel.write(words); // words
-        }
-        for (int j = 0; j < n.entries.length; j++) {
-            if (n.entries[j] == null) continue;
-            ByteBuffer count = ByteBuffer.allocate(PersistentStatics.INT_WIDTH);
-            channel.position((n.id * PersistentStatics.TOTAL_SIZE) + (PersistentStatics.COUNT_ARR_OFFSET + (PersistentStatics.INT_WIDTH * j)));
-            count.putInt(n.entries[j].count);
-            count.flip();
-            channel.write(count); // count
-        }
-        for (int k = 0; k < PersistentStatics.MAX_CHILDREN; k++) {
-            ByteBuffer child = ByteBuffer.allocate(PersistentStatics.LONG_WIDTH);
-            channel.position((n.id * PersistentStatics.TOTAL_SIZE) + (PersistentStatics.CHILDREN_ARR_OFFSET + (PersistentStatics.LONG_WIDTH * k)));
-            if (n.children[k] == null) child.putLong(-2);
-            else child.putLong(n.children[k].id);
-            child.flip();
-            channel.write(child); // children
+        TreeEvents.NodeIo event = new TreeEvents.NodeIo();
+        event.begin();
+        ByteBuffer page = this.page.get();
+        page.clear();
+        codec.encode(n, page);
+        store.write(n.id, page);
+        metrics.diskWrites.increment();
+        metrics.bytesWritten.add(codec.pageSize);
+        if (event.shouldCommit()) {
+            event.id = n.id;
+            event.bytes = codec.pageSize;
+            event.write = true;
+            event.commit();
         }
     }
 
     /**
      * Method to read the fields of a node from disk, and return a copy of that
      * node for processing.
+     * The whole page of the node is read from the page store in one read.
      * @param id the id of the node to be read from disk.
      * @return a copy of the node being read from disk for processing.
+     * @throws IOException if the page could not be read or is not a node of this tree.
      */
     Node diskRead(long id) throws IOException {
-        channel.position((id * PersistentStatics.TOTAL_SIZE) + PersistentStatics.ID_ARR_OFFSET);
-        ByteBuffer idBuf = ByteBuffer.allocate(PersistentStatics.ID_ARR_SIZE);
-        channel.read(idBuf);
-        idBuf.flip();
-        long aId = idBuf.getLong(); // id
-        channel.position((id * PersistentStatics.TOTAL_SIZE) + PersistentStatics.NUM_ENTRIES_ARR_OFFSET);
-        ByteBuffer numEntriesBuf = ByteBuffer.allocate(PersistentStatics.NUM_ENTRIES_ARR_SIZE);
-        channel.read(numEntriesBuf);
-        numEntriesBuf.flip();
-        int aNumEntries = numEntriesBuf.getInt(); // # entries
-        channel.position((id * PersistentStatics.TOTAL_SIZE) + PersistentStatics.LEAF_ARR_OFFSET);
-        ByteBuffer leafBuf = ByteBuffer.allocate(PersistentStatics.LEAF_ARR_SIZE);
-        channel.read(leafBuf);
-        leafBuf.flip();
-        int tmpLeaf = leafBuf.getInt();
-        boolean aLeaf = tmpLeaf == 1; // leaf
-        String[] words = new String[PersistentStatics.MAX_ENTRIES];
-        for (int i = 0; i < words.length; i++) { // words
-            channel.position((id * PersistentStatics.TOTAL_SIZE) + (PersistentStatics.WORD_ARR_OFFSET + (PersistentStatics.MAX_WORD_LEN * i)));
-            ByteBuffer word = ByteBuffer.allocate(PersistentStatics.MAX_WORD_LEN);
-            channel.read(word);
-            word.flip();
-            byte[] wordBytes = new byte[PersistentStatics.MAX_WORD_LEN];
-            int j = 0;
-            while (word.hasRemaining()) {
-                byte b = word.get();
-                wordBytes[j] = b;
-                j++;
-            }
-            String s = new String(wordBytes, StandardCharsets.ISO_8859_1);
-            StringTokenizer tz = new StringTokenizer(s);
-            String actualWord = tz.nextToken();
-            if (actualWord.toString().equalsIgnoreCase("null")) words[i] = null;
-            else words[i] = actualWord;
+        TreeEvents.NodeIo event = new TreeEvents.NodeIo();
+        event.begin();
+        ByteBuffer page = this.page.get();
+        page.clear();
+        store.read(id, page);
+        Node n = codec.decode(page);
+        metrics.diskReads.increment();
+        metrics.bytesRead.add(codec.pageSize);
+        if (event.shouldCommit()) {
+            event.id = id;
+            event.bytes = codec.pageSize;
+            event.commit();
         }
-        int[] counts = new int[PersistentStatics.MAX_ENTRIES];
-        for (int k = 0; k < counts.length; k++) { // counts
-            channel.position((id * PersistentStatics.TOTAL_SIZE) + (PersistentStatics.COUNT_ARR_OFFSET + (PersistentStatics.INT_WIDTH * k)));
-            ByteBuffer count = ByteBuffer.allocate(PersistentStatics.INT_WIDTH);
-            channel.read(count);
-            count.flip();
-            int c = count.getInt();
-            counts[k] = c;
-        }
-        Entry[] aEntries = new Entry[PersistentStatics.MAX_ENTRIES];
-        for (int l = 0; l < aEntries.length; l++) { // creating the entries from the words and counts
-            if (words[l] == null) continue;
-            aEntries[l] = new Entry(words[l]);
-            aEntries[l].count = counts[l];
-        }
-        Node[] aChildren = new Node[PersistentStatics.MAX_CHILDREN];
-        for (int m = 0; m < aChildren.length; m++) {
-            channel.position((id * PersistentStatics.TOTAL_SIZE) + (PersistentStatics.CHILDREN_ARR_OFFSET + (PersistentStatics.LONG_WIDTH * m)));
-            ByteBuffer child = ByteBuffer.allocate(PersistentStatics.LONG_WIDTH);
-            channel.read(child);
-            child.flip();
-            long l = child.getLong();
-            if (l == -2) aChildren[m] = null;
-            else {
-                aChildren[m] = new Node();
-                aChildren[m].id = l;
-            }
-        }
-        Node fakeNode = new Node();
-        fakeNode.entries = aEntries;
-        fakeNode.children = aChildren;
-        fakeNode.id = aId;
-        fakeNode.numEntries = aNumEntries;
-        fakeNode.leaf = aLeaf;
-        return fakeNode;
+        return n;
     }
 
     /**
-     * Method to find a word in the tree.
-     * @param currNode the node we are currently searching.
+     * Method to find a word in the tree, starting from the root.
      * @param word the word we are searching for in the tree.
      * @return the Entry that contains the word if it exists,
      * or return null if the entry is not present in the three.
+     * @throws IOException if disk read throws an IO exception.
      */
-    Entry search(Node currNode, String word) throws IOException {
-        int i = 0;
-        while ((i <= currNode.numEntries) && (word.compareTo(currNode.entries[i].word)) > 0) { // moving through the array to find where the word would be placed
-            i++;
-        }
-        if (i < currNode.numEntries && word.equalsIgnoreCase(currNode.entries[i].word)) {
-            cache.put(currNode.id, currNode);
-            return currNode.entries[i]; // if the word is in the spot return true
-        } else if (currNode.leaf) {
-            cache.put(currNode.id, currNode);
-            return null; // if it's not there and curr node is a leaf node, return false
-        } else {
-            cache.put(currNode.id, currNode);
-            Node n;
-            if (cache.containsKey(currNode.children[i].id)) {
-                cache.get(currNode.children[i].id);
-                cache.put(currNode.children[i].id, currNode.children[i]);
-            } else {
-                n = diskRead(currNode.children[i].id);
-                cache.put(n.id, n);
+    Entry search(String word) throws IOException {
+        int term = dictionary.lookup(word);
+        if (term < 0) return null; // no document has the word
+        return search(term);
+    }
+
+    /**
+     * Method to find a term in the tree, starting from the root.
+     * @param term the id of the term we are searching for in the tree.
+     * @return the Entry that contains the term if it exists,
+     * or return null if the entry is not present in the three.
+     * @throws IOException if disk read throws an IO exception.
+     */
+    Entry search(int term) throws IOException {
+        int count = lookup(term);
+        if (count < 0) return null;
+        Entry e = new Entry(term); // a copy, the entry in the node may be changed by an insert
+        e.count = count;
+        return e;
+    }
+
+    /**
+     * Method to get the count of a term without allocating anything: the latches are a fixed
+     * array, the pool is searched without boxing ids (see BufferPool.peek), and the search event
+     * is only made while a recording has it enabled. A read latch that other threads hold at
+     * the same time may still give the thread a hold count. A node in the buffer pool is searched
+     * as it is, since it may be newer than its page, and any other node is searched through a
+     * view over its page (see NodeView), read through the page store and its page cache if
+     * it has one. Lookups do not add nodes to the pool.
+     * @param term the id of the term.
+     * @return the count of the term, or -1 if it is not in the tree.
+     * @throws IOException if a page could not be read.
+     */
+    private int lookup(int term) throws IOException {
+        TreeEvents.Operation event = TreeEvents.OPERATION.isEnabled() ? new TreeEvents.Operation() : null;
+        if (event != null) event.begin();
+        long start = System.nanoTime();
+        NodeView view = views.get();
+        Lock held = latch(ROOT_ID).readLock();
+        held.lock();
+        try {
+            long id = ROOT_ID;
+            for (int depth = 1; ; depth++) {
+                long childId;
+                Node n = cache.peek(id);
+                if (n != null) {
+                    int i = n.find(term);
+                    if (i >= 0) return n.entries[i].count;
+                    if (n.leaf) {
+                        metrics.height.accumulate(depth);
+                        return -1;
+                    }
+                    childId = n.children[-i - 1].id;
+                } else {
+                    view.read(store, id);
+                    metrics.diskReads.increment();
+                    metrics.bytesRead.add(codec.pageSize);
+                    int i = view.find(term);
+                    if (i >= 0) return view.count(i);
+                    if (view.leaf) {
+                        metrics.height.accumulate(depth);
+                        return -1;
+                    }
+                    childId = view.child(-i - 1);
+                }
+                Lock child = latch(childId).readLock(); // going down to the child the term would be under
+                if (!latchChild(child, childId, id)) { // starting over from the root
+                    held.unlock();
+                    held = latch(ROOT_ID).readLock();
+                    held.lock();
+                    id = ROOT_ID;
+                    depth = 0;
+                    continue;
+                }
+                held.unlock();
+                held = child;
+                id = childId;
+            }
+        } finally {
+            held.unlock();
+            metrics.search.record(System.nanoTime() - start);
+            if (event != null && event.shouldCommit()) {
+                event.operation = "search";
+                event.term = term;
+                event.commit();
             }
-            return search(currNode.children[i], word); // if it is not a leaf node, recurse
         }
     }
 
     /**
-     * Method to split a full node.
+     * Method to get the latch of a node, which must be held while the node is used.
+     * Nodes whose ids are LATCH_STRIPES apart share a latch.
+     * @param id the id of the node.
+     * @return the latch of the node.
+     */
+    ReentrantReadWriteLock latch(long id) {
+        return latches[(int) id & (LATCH_STRIPES - 1)];
+    }
+
+    /**
+     * Method to latch a child while holding the latch of its parent. Latches are waited on in
+     * increasing order of their place in the latches array, so that two threads going down
+     * the tree never wait on each other, and a child whose latch comes before its parent's
+     * is only latched if it is free. A child sharing its parent's latch holds it once more.
+     * @param child the read or write lock of the child's latch, the same kind as the parent's.
+     * @param childId the id of the child.
+     * @param parentId the id of the parent.
+     * @return true if the child was latched, false if the caller has to let go of the parent and start over from the root.
+     */
+    boolean latchChild(Lock child, long childId, long parentId) {
+        if ((childId & (LATCH_STRIPES - 1)) >= (parentId & (LATCH_STRIPES - 1))) {
+            child.lock();
+            return true;
+        }
+        return child.tryLock();
+    }
+
+    /**
+     * Method to check whether any thread holds the latch of a node, or of a node sharing it.
+     * @param id the id of the node.
+     * @return true if the latch is held for reading or writing, false otherwise.
+     */
+    boolean isLatched(long id) {
+        ReentrantReadWriteLock l = latch(id);
+        return l.isWriteLocked() || l.getReadLockCount() > 0;
+    }
+
+    /**
+     * Method to split a full node, the caller holds the write latches of
+     * the parent and the node being split.
      * @param parent the parent of the node being split.
      * @param nodeBeingSplit the node being split.
      * @param indexInParent index of the node being split in the parent's
      * children array.
-     * @throws IOException if disk write throws an IO exception.
+     * @throws IOException if evicting from the cache throws an IO exception.
      */
     void splitChild(Node parent, Node nodeBeingSplit, int indexInParent) throws IOException {
-        System.out.println("PERFORMING SPLIT!");
-        Node newRightSibling = new Node(treeSize++);
+        TreeEvents.Split event = new TreeEvents.Split();
+        event.begin();
+        Node newRightSibling = new Node(newId(), t); // only reachable through the parent, so it needs no latch yet
         newRightSibling.leaf = nodeBeingSplit.leaf;
-        for (int i = 0; i < Node.T - 1; i++) { // putting keys larger than median in new node
-            newRightSibling.entries[i] = nodeBeingSplit.entries[i + Node.T];
-            nodeBeingSplit.entries[i + Node.T] = null;
+        for (int i = 0; i < t - 1; i++) { // putting keys larger than median in new node
+            newRightSibling.entries[i] = nodeBeingSplit.entries[i + t];
+            nodeBeingSplit.entries[i + t] = null;
         }
         if (!nodeBeingSplit.leaf) {
-            for (int j = 0; j < Node.T; j++) { // splitting the children up accordingly
-                newRightSibling.children[j] = nodeBeingSplit.children[j + Node.T];
-                nodeBeingSplit.children[j + Node.T - 1] = null;
+            for (int j = 0; j < t; j++) { // splitting the children up accordingly
+                newRightSibling.children[j] = nodeBeingSplit.children[j + t];
+                nodeBeingSplit.children[j + t] = null;
             }
         }
         for (int k = parent.children.length - 2; k >= indexInParent + 1; k--) parent.children[k + 1] = parent.children[k]; // making room for new right sibling
         parent.children[indexInParent + 1] = newRightSibling;
         for (int l = parent.entries.length - 2; l >= indexInParent; l--) parent.entries[l + 1] = parent.entries[l]; // making room for median key
-        parent.entries[indexInParent] = nodeBeingSplit.entries[Node.T - 1]; // putting median index in parent
-        nodeBeingSplit.entries[Node.T - 1] = null; // removing median index from node being split
-        parent.numEntries++; nodeBeingSplit.numEntries = Node.T - 1; newRightSibling.numEntries = Node.T - 1; // setting the # of keys in the nodes
-        diskWrite(parent); diskWrite(nodeBeingSplit); diskWrite(newRightSibling); // writing all the nodes to disk
-        cache.put(parent.id, parent); cache.put(nodeBeingSplit.id, nodeBeingSplit); cache.put(newRightSibling.id, newRightSibling);
+        parent.entries[indexInParent] = nodeBeingSplit.entries[t - 1]; // putting median index in parent
+        nodeBeingSplit.entries[t - 1] = null; // removing median index from node being split
+        parent.numEntries++; nodeBeingSplit.numEntries = t - 1; newRightSibling.numEntries = t - 1; // setting the # of keys in the nodes
+        cache.markDirty(parent); cache.markDirty(nodeBeingSplit); cache.markDirty(newRightSibling);
+        metrics.splits.increment();
+        if (event.shouldCommit()) {
+            event.id = nodeBeingSplit.id;
+            event.sibling = newRightSibling.id;
+            event.commit();
+        }
     }
 
     /**
      * Method to insert on a leaf node, assumed to be non-full.
      * @param n the node we are inserting into.
      * @param e the entry we are inserting into the node.
-     * @throws IOException if disk write throws an IO exception.
+     * @throws IOException if evicting from the cache throws an IO exception.
      */
     void linearInsert(Node n, Entry e) throws IOException {
         int i = n.numEntries - 1;
-        while (i >= 0 && e.word.compareTo(n.entries[i].word) < 0) {
+        while (i >= 0 && e.term < n.entries[i].term) {
             n.entries[i + 1] = n.entries[i]; // moving over the entries as we go
             --i;
         }
         n.entries[++i] = e;
         ++n.numEntries;
-        diskWrite(n);
+        distinctTerms.incrementAndGet();
+        cache.markDirty(n);
     }
 
     /**
-     * Method to search for the word in the current node, and if
-     * it is found, increment its count and write the node to disk.
+     * Method to search for the term in the current node, and if
+     * it is found, increase its count and mark the node as dirty.
      * @param n the node being traversed.
-     * @param word the word being searched for.
-     * @return true if the word is found, false otherwise.
-     * @throws IOException if disk write throws an IO exception.
+     * @param term the id of the term being searched for.
+     * @param amount how much the count of the term is increased by.
+     * @return true if the term is found, false otherwise.
+     * @throws IOException if evicting from the cache throws an IO exception.
      */
-    boolean incrementIfPresent(Node n, String word) throws IOException {
-        for (Entry e : n.entries) {
-            if (e == null) return false;
-            if (e.word.equalsIgnoreCase(word)) {
-                ++e.count;
-                diskWrite(n);
-                return true;
-            }
-        }
-        return false;
+    boolean incrementIfPresent(Node n, int term, int amount) throws IOException {
+        int i = n.find(term);
+        if (i < 0) return false;
+        n.entries[i].count += amount;
+        cache.markDirty(n);
+        return true;
     }
 
     /**
-     * Method to insert a word into the tree with a nonfull root.
+     * Method to insert a term into the tree with a nonfull root.
+     * The caller holds the write latch of currNode, which is let go of by this method.
      * @param currNode the node we are currently trying to insert into.
-     * @param word the word being inserted into the tree.
+     * @param term the id of the term being inserted into the tree.
+     * @param amount how many times the term is being inserted.
+     * @return true if the term was inserted, false if a child could not be latched (see latchChild)
+     * and the insert has to start over from the root, the splits made on the way stay.
      * @throws IOException if there are any issues with the random access file.
      */
-    void insertNonfull(Node currNode, String word) throws IOException {
-        if (incrementIfPresent(currNode, word)) return; // if word is present: increment count, disk write, and return.
-        if (currNode.leaf) {
-            Entry e = new Entry(word);
-            linearInsert(currNode, e);
-        } else { // if currNode is not a leaf node
-            int i = currNode.numEntries - 1;
-            System.out.println("# of entries - 1: " + i);
-            System.out.println("node's entries: " );
-            for (Entry e : currNode.entries) {
-                if (e == null) System.out.println("null");
-                else System.out.println(e.word);
-            }
-            while (i >= 0 && word.compareTo(currNode.entries[i].word) < 0) --i;
-            Node n;
-            if (currNode.children[i + 1] != null) {
-                if (cache.containsValue(currNode.children[i + 1])) {
-                    n = cache.get(currNode.children[++i].id);
-                    cache.put(n.id, n);
-                } else {
-                    n = diskRead(currNode.children[++i].id);
-                    cache.put(n.id, n);
-                }
-            } else {
-                if (cache.containsValue(currNode.children[i])) {
-                    n = cache.get(currNode.children[i].id);
-                    cache.put(n.id, n);
-                } else {
-                    n = diskRead(currNode.children[i].id);
-                    cache.put(n.id, n);
+    boolean insertNonfull(Node currNode, int term, int amount) throws IOException {
+        Lock held = latch(currNode.id).writeLock();
+        try {
+            for (int depth = 1; ; depth++) {
+                if (incrementIfPresent(currNode, term, amount)) return true; // if term is present: increment count, mark dirty, and return.
+                if (currNode.leaf) {
+                    Entry e = new Entry(term);
+                    e.count = amount;
+                    linearInsert(currNode, e);
+                    metrics.height.accumulate(depth);
+                    return true;
+                } // if currNode is not a leaf node
+                int i = -currNode.find(term) - 1; // the term is not in the node, this is the child it goes under
+                long childId = currNode.children[i].id;
+                Lock child = latch(childId).writeLock();
+                if (!latchChild(child, childId, currNode.id)) return false;
+                Node n;
+                try {
+                    n = cache.get(childId);
+                    if (n.numEntries == codec.maxEntries) {
+                        splitChild(currNode, n, i);
+                        if (term == currNode.entries[i].term) { // the median moved up is the term itself
+                            currNode.entries[i].count += amount;
+                            cache.markDirty(currNode);
+                            child.unlock();
+                            return true;
+                        }
+                        if (term > currNode.entries[i].term) { // going to the new right sibling instead
+                            child.unlock();
+                            childId = currNode.children[i + 1].id;
+                            child = latch(childId).writeLock();
+                            if (!latchChild(child, childId, currNode.id)) return false;
+                            n = cache.get(childId);
+                        }
+                    }
+                } catch (IOException | RuntimeException e) {
+                    child.unlock();
+                    throw e;
                 }
+                held.unlock(); // the child is not full, so the parent will not change again
+                held = child;
+                currNode = n;
             }
-            if (n.numEntries == PersistentStatics.MAX_ENTRIES)
-                splitChild(currNode, n, i);
-            insertNonfull(n, word);
+        } finally {
+            held.unlock();
         }
     }
 
@@ -350,23 +587,362 @@ public class BTree {
      * @throws IOException if there are any issues with the random access file.
      */
     void insert(String word) throws IOException {
-        Node r;
-        if (cache.containsKey(0l)) {
-            r = cache.get(0l);
-        } else {
-            r = diskRead(0);
+        insert(word, 1);
+    }
+
+    /**
+     * Insert method for the tree that adds several occurrences of a word at once.
+     * @param word the word being inserted into the tree.
+     * @param amount how many times the word is being inserted.
+     * @throws IOException if there are any issues with the random access file.
+     */
+    void insert(String word, int amount) throws IOException {
+        insert(dictionary.id(word), amount);
+    }
+
+    /**
+     * Insert method for the tree that adds several occurrences of a term at once.
+     * @param term the id of the term being inserted into the tree.
+     * @param amount how many times the term is being inserted.
+     * @throws IOException if there are any issues with the random access file.
+     */
+    @Override
+    public void insert(int term, int amount) throws IOException {
+        TreeEvents.Operation event = new TreeEvents.Operation();
+        event.begin();
+        long start = System.nanoTime();
+        Lock rootLatch = latch(ROOT_ID).writeLock();
+        try {
+            boolean inserted;
+            do {
+                rootLatch.lock();
+                Node r;
+                try {
+                    r = cache.get(ROOT_ID);
+                    if (r.numEntries == codec.maxEntries) {
+                        Node s = new Node(ROOT_ID, t);
+                        s.leaf = false;
+                        s.numEntries = 0;
+                        cache.remove(ROOT_ID);
+                        r.id = newId(); // the old root moves out of the root page
+                        s.children[0] = r;
+                        splitChild(s, r, 0);
+                        metrics.rootSplits.increment();
+                        r = s;
+                    }
+                } catch (IOException | RuntimeException e) {
+                    rootLatch.unlock();
+                    throw e;
+                }
+                inserted = insertNonfull(r, term, amount); // lets go of the root's latch
+            } while (!inserted);
+            totalTerms.addAndGet(amount);
+        } finally {
+            metrics.insert.record(System.nanoTime() - start);
+            if (event.shouldCommit()) {
+                event.operation = "insert";
+                event.term = term;
+                event.commit();
+            }
+        }
+    }
+
+    /**
+     * Method to add several terms at once, an empty tree is bulk loaded with them.
+     * @param terms the ids of the terms, in increasing order without duplicates.
+     * @param counts how many times each term is being inserted.
+     * @throws IOException if disk read or disk write throws an IO exception.
+     */
+    @Override
+    public void insertAll(int[] terms, int[] counts) throws IOException {
+        boolean loaded = false;
+        Lock rootLatch = latch(ROOT_ID).writeLock();
+        rootLatch.lock();
+        try {
+            if (treeSize.get() == 1 && cache.get(ROOT_ID).numEntries == 0) {
+                ArrayList<Entry> entries = new ArrayList<>(terms.length);
+                for (int i = 0; i < terms.length; i++) {
+                    Entry e = new Entry(terms[i]);
+                    e.count = counts[i];
+                    entries.add(e);
+                }
+                bulkLoadLatched(entries.iterator(), DEFAULT_FILL_FACTOR);
+                loaded = true;
+            }
+        } finally {
+            rootLatch.unlock();
+        }
+        if (!loaded) TermIndex.super.insertAll(terms, counts);
+    }
+
+    @Override
+    public int count(int term) throws IOException {
+        return Math.max(lookup(term), 0);
+    }
+
+    /**
+     * Method to get the count of a term on the tree's IO executor, so that the caller
+     * can start the lookups of many trees before waiting for any of them.
+     * @param term the id of the term.
+     * @return the future count, or 0 if the term is not in the tree.
+     */
+    @Override
+    public CompletableFuture<Integer> countAsync(int term) {
+        return submit(() -> count(term));
+    }
+
+    /**
+     * Method to read a node on the tree's IO executor. The node is read under its latch,
+     * from the buffer pool if it is there and from its page otherwise, and is a copy that
+     * later changes to the tree are not made to.
+     * @param id the id of the node.
+     * @return the future node.
+     */
+    CompletableFuture<Node> readAsync(long id) {
+        return submit(() -> {
+            Lock latch = latch(id).readLock();
+            latch.lock();
+            try {
+                Node n = cache.peek(id);
+                return n == null ? diskRead(id) : n.copy();
+            } finally {
+                latch.unlock();
+            }
+        });
+    }
+
+    /**
+     * Method to run a task that reads the tree on the tree's IO executor.
+     * @param task the task.
+     * @param <T> the type of the task's result.
+     * @return the future result of the task, which fails with the exception the task threw.
+     */
+    <T> CompletableFuture<T> submit(Callable<T> task) {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        io.execute(() -> {
+            try {
+                result.complete(task.call());
+            } catch (Throwable e) {
+                result.completeExceptionally(e);
+            }
+        });
+        return result;
+    }
+
+    /**
+     * Method to wait for the result of a task run on an IO executor.
+     * @param future the future result of the task.
+     * @param <T> the type of the task's result.
+     * @return the result.
+     * @throws IOException if the task threw an IO exception, or the thread was interrupted while waiting.
+     */
+    static <T> T await(CompletableFuture<T> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("interrupted while waiting for a read", e);
+        } catch (ExecutionException | CompletionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) throw (IOException) cause;
+            if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+            if (cause instanceof Error) throw (Error) cause;
+            throw new IOException(cause);
+        }
+    }
+
+    /**
+     * Method to go through every term of the tree and its count, in order of term id.
+     * @param sink the receiver of the terms.
+     * @throws IOException if disk read throws an IO exception, or the receiver failed.
+     */
+    @Override
+    public void forEach(TermCountSink sink) throws IOException {
+        TreeCursor cursor = cursor();
+        for (Entry e = cursor.next(); e != null; e = cursor.next()) sink.term(e.term, e.count);
+    }
+
+    @Override
+    public long size() {
+        return distinctTerms.get();
+    }
+
+    /**
+     * Method to get a cursor over every entry of the tree, in order of term id.
+     * @return the cursor.
+     */
+    TreeCursor cursor() {
+        return new TreeCursor(this, 0, Integer.MAX_VALUE, null);
+    }
+
+    /**
+     * Method to get a cursor over the entries of a range of term ids, in order of term id.
+     * @param from the smallest term id returned.
+     * @param to the term id the scan stops before.
+     * @return the cursor.
+     */
+    TreeCursor range(int from, int to) {
+        return new TreeCursor(this, from, to, null);
+    }
+
+    /**
+     * Method to get a cursor over the entries whose words are in a range, such as
+     * all words from "a" up to "c". Term ids are not in the order of their words,
+     * so the whole tree is scanned and the entries come out in order of term id.
+     * @param from the smallest word returned.
+     * @param to the word the scan stops before.
+     * @return the cursor.
+     */
+    TreeCursor range(String from, String to) {
+        return new TreeCursor(this, 0, Integer.MAX_VALUE, term -> {
+            String word = dictionary.term(term);
+            return word.compareTo(from) >= 0 && word.compareTo(to) < 0;
+        });
+    }
+
+    /**
+     * Method to get a cursor over the entries whose words start with a prefix.
+     * The whole tree is scanned and the entries come out in order of term id.
+     * @param prefix the prefix.
+     * @return the cursor.
+     */
+    TreeCursor prefix(String prefix) {
+        return new TreeCursor(this, 0, Integer.MAX_VALUE, term -> dictionary.term(term).startsWith(prefix));
+    }
+
+    /**
+     * Method to check whether nothing has been inserted into the tree yet.
+     * @return true if the tree only has an empty root, false otherwise.
+     * @throws IOException if disk read throws an IO exception.
+     */
+    boolean isEmpty() throws IOException {
+        Lock rootLatch = latch(ROOT_ID).readLock();
+        rootLatch.lock();
+        try {
+            return treeSize.get() == 1 && cache.get(ROOT_ID).numEntries == 0;
+        } finally {
+            rootLatch.unlock();
+        }
+    }
+
+    /**
+     * Method to build the tree bottom up from entries that are already counted
+     * and sorted, instead of inserting them one at a time. The leaves are filled
+     * first, then each level of internal nodes above them, and every node is
+     * written exactly once, in order of id, with the root written last to its page.
+     * The root stays latched while the tree is built, so that searches wait for it.
+     * @param sorted the entries in increasing order of their term ids, without duplicates.
+     * @param fillFactor how full each non-root node is made, as a share of its 2T - 1 entries.
+     * It is clamped to between 0 and 1, and a node is never given less than the minimum of
+     * T - 1 entries, so any fill factor below (T - 1) / (2T - 1), about a half, gives half full nodes.
+     * @throws IOException if disk write throws an IO exception.
+     * @throws IllegalStateException if the tree is not empty.
+     * @throws IllegalArgumentException if the entries are not sorted.
+     */
+    void bulkLoad(Iterator<Entry> sorted, double fillFactor) throws IOException {
+        Lock rootLatch = latch(ROOT_ID).writeLock();
+        rootLatch.lock();
+        try {
+            bulkLoadLatched(sorted, fillFactor);
+        } finally {
+            rootLatch.unlock();
         }
-        if (r.numEntries == Node.MAX_ENTRIES) {
-            Node s = new Node(0);
-            root = s;
-            s.leaf = false;
-            s.numEntries = 0;
-            r.id = treeSize++;
-            s.children[0] = r;
-            splitChild(s, r, 0);
-            insertNonfull(s, word);
-        } else {
-            insertNonfull(r, word);
+    }
+
+    /**
+     * Method to bulk load the tree while holding the latch of the root.
+     * @param sorted the entries in increasing order of their term ids, without duplicates.
+     * @param fillFactor how full each non-root node is made, clamped as described by bulkLoad.
+     * @throws IOException if disk write throws an IO exception.
+     */
+    private void bulkLoadLatched(Iterator<Entry> sorted, double fillFactor) throws IOException {
+        if (!isEmpty()) throw new IllegalStateException("bulk load needs an empty tree");
+        double clamped = Double.isNaN(fillFactor) ? 1 : Math.max(0, Math.min(1, fillFactor));
+        int perNode = Math.max(t - 1, (int) Math.floor(clamped * codec.maxEntries)); // the entries each node is aimed at
+        ArrayList<Entry> keys = new ArrayList<>();
+        long total = 0;
+        while (sorted.hasNext()) {
+            Entry e = sorted.next();
+            if (!keys.isEmpty() && e.term <= keys.get(keys.size() - 1).term)
+                throw new IllegalArgumentException("entries are not sorted: " + e.term);
+            keys.add(e);
+            total += e.count;
+        }
+        distinctTerms.addAndGet(keys.size());
+        totalTerms.addAndGet(total);
+        cache.remove(ROOT_ID);
+        ArrayList<Node> children = null; // the level below, null while building the leaves
+        while (keys.size() > codec.maxEntries) {
+            int numNodes = (keys.size() + perNode - 1) / perNode;
+            numNodes = Math.min(numNodes, (keys.size() + 1) / t); // n nodes take n - 1 separators, and at least T - 1 entries each
+            int inNodes = keys.size() - (numNodes - 1);
+            ArrayList<Entry> separators = new ArrayList<>(numNodes - 1);
+            ArrayList<Node> level = new ArrayList<>(numNodes);
+            int k = 0, c = 0;
+            for (int j = 0; j < numNodes; j++) {
+                int count = inNodes / numNodes + (j < inNodes % numNodes ? 1 : 0); // spreading the entries evenly
+                Node n = new Node(newId(), t);
+                fillNode(n, keys, k, count, children, c);
+                k += count; c += count + 1;
+                diskWrite(n);
+                level.add(placeholder(n.id));
+                if (j < numNodes - 1) separators.add(keys.get(k++));
+            }
+            keys = separators;
+            children = level;
+        }
+        Node root = new Node(ROOT_ID, t);
+        fillNode(root, keys, 0, keys.size(), children, 0);
+        diskWrite(root);
+    }
+
+    /**
+     * Method to copy a run of entries, and the children around them, into a new node.
+     * @param n the node being filled.
+     * @param keys the entries of the level being built.
+     * @param from index of the first entry of the node.
+     * @param count amount of entries in the node.
+     * @param children the nodes of the level below, or null if n is a leaf.
+     * @param firstChild index of the first child of the node.
+     */
+    private static void fillNode(Node n, ArrayList<Entry> keys, int from, int count, ArrayList<Node> children, int firstChild) {
+        for (int i = 0; i < count; i++) n.entries[i] = keys.get(from + i);
+        n.numEntries = count;
+        n.leaf = children == null;
+        if (!n.leaf) {
+            for (int i = 0; i <= count; i++) n.children[i] = children.get(firstChild + i);
         }
     }
+
+    /**
+     * Method to make a stand in for a child, which only holds its id.
+     * @param id the id of the child.
+     * @return the stand in node.
+     */
+    private static Node placeholder(long id) {
+        Node n = new Node();
+        n.id = id;
+        return n;
+    }
+
+    /**
+     * Method to write every changed node in the cache to disk, followed by the superblock,
+     * and commit them. With a logged page store a crash brings the tree back to its last flush.
+     * @throws IOException if disk write throws an IO exception.
+     */
+    @Override
+    public void flush() throws IOException {
+        cache.flush();
+        writeSuperblock();
+        store.commit();
+    }
+
+    /**
+     * Method to flush the tree and close its page store.
+     * @throws IOException if disk write or closing the store throws an IO exception.
+     */
+    void close() throws IOException {
+        flush();
+        store.close();
+    }
 }
@@ -0,0 +1,126 @@
+package main;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * Bloom filter over the term ids of a document, which tells for sure that a term is
+ * not in the document, and that it may be otherwise. It is sized for the amount of
+ * terms it holds and the share of absent terms it may wrongly say may be there, and
+ * the k bits of a term are picked by double hashing a single 64 bit hash of its id.
+ * It is written as the amount of hash functions, the amount of words and the words.
+ */
+public class BloomFilter {
+    /**
+     * Default share of absent terms that a filter says may be present.
+     */
+    static final double DEFAULT_FALSE_POSITIVE_RATE = 0.01;
+    /**
+     * The bits of the filter.
+     */
+    long[] words;
+    /**
+     * Amount of bits of the filter.
+     */
+    long numBits;
+    /**
+     * Amount of bits set for every term.
+     */
+    int numHashes;
+
+    /**
+     * Constructor for an empty filter sized for a number of terms.
+     * @param expected the amount of terms that will be added.
+     * @param falsePositiveRate the share of absent terms the filter may say are present, between 0 and 1.
+     * @throws IllegalArgumentException if the rate is not between 0 and 1.
+     */
+    BloomFilter(int expected, double falsePositiveRate) {
+        if (!(falsePositiveRate > 0 && falsePositiveRate < 1)) {
+            throw new IllegalArgumentException("false positive rate not between 0 and 1: " + falsePositiveRate);
+        }
+        int n = Math.max(expected, 1);
+        long bits = (long) Math.ceil(-n * Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2)));
+        words = new long[(int) Math.max(1, (bits + 63) / 64)];
+        numBits = (long) words.length * 64;
+        numHashes = (int) Math.max(1, Math.round((double) numBits / n * Math.log(2)));
+    }
+
+    /**
+     * Constructor for a filter that was written before.
+     * @param aWords the bits of the filter.
+     * @param aNumHashes the amount of bits set for every term.
+     */
+    BloomFilter(long[] aWords, int aNumHashes) {
+        words = aWords;
+        numBits = (long) words.length * 64;
+        numHashes = aNumHashes;
+    }
+
+    /**
+     * Method to get the 64 bit hash of a term id, its two halves are the two hashes
+     * every bit of the term is picked from.
+     * @param term the term id.
+     * @return the hash.
+     */
+    private static long hash(int term) {
+        long h = term * 0x9e3779b97f4a7c15L; // the finalizer of splitmix64
+        h = (h ^ (h >>> 30)) * 0xbf58476d1ce4e5b9L;
+        h = (h ^ (h >>> 27)) * 0x94d049bb133111ebL;
+        return h ^ (h >>> 31);
+    }
+
+    /**
+     * Method to add a term to the filter.
+     * @param term the term id.
+     */
+    void add(int term) {
+        long h = hash(term);
+        long h1 = h >>> 32;
+        long h2 = h & 0xffffffffL;
+        for (int i = 0; i < numHashes; i++) {
+            long bit = (h1 + i * h2) % numBits;
+            words[(int) (bit >>> 6)] |= 1L << bit;
+        }
+    }
+
+    /**
+     * Method to check whether a term may have been added to the filter.
+     * @param term the term id.
+     * @return false if the term was never added, true if it may have been.
+     */
+    boolean mightContain(int term) {
+        long h = hash(term);
+        long h1 = h >>> 32;
+        long h2 = h & 0xffffffffL;
+        for (int i = 0; i < numHashes; i++) {
+            long bit = (h1 + i * h2) % numBits;
+            if ((words[(int) (bit >>> 6)] & (1L << bit)) == 0) return false;
+        }
+        return true;
+    }
+
+    /**
+     * Method to write the filter.
+     * @param out the output the filter is written to.
+     * @throws IOException if the filter could not be written.
+     */
+    void write(DataOutput out) throws IOException {
+        out.writeInt(numHashes);
+        out.writeInt(words.length);
+        for (long w : words) out.writeLong(w);
+    }
+
+    /**
+     * Method to read a filter that was written by write.
+     * @param in the input the filter is read from.
+     * @return the filter.
+     * @throws IOException if the filter could not be read.
+     */
+    static BloomFilter read(DataInput in) throws IOException {
+        int numHashes = in.readInt();
+        long[] words = new long[in.readInt()];
+        for (int i = 0; i < words.length; i++) words[i] = in.readLong();
+        return new BloomFilter(words, numHashes);
+    }
+}
@@ -0,0 +1,226 @@
+package main;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Buffer pool holding the most recently used nodes of a b-tree in memory.
+ * Nodes that are changed are only marked as dirty, and are written back to
+ * disk when they are evicted or when the pool is flushed.
+ * The pool may be used from several threads. A thread must hold the latch of
+ * a node (see BTree.latch) while it gets and uses the node, and a node whose
+ * latch is held is never evicted, so it cannot be changed after it was written back.
+ */
+public class BufferPool {
+    /**
+     * Smallest capacity a pool may have, enough for every node
+     * an insert is holding on to at once.
+     */
+    static final int MIN_CAPACITY = 8;
+    /**
+     * The tree whose nodes are being cached.
+     */
+    BTree tree;
+    /**
+     * Maximum amount of nodes the pool may hold, it may go over while every
+     * node that could be evicted is latched.
+     */
+    int capacity;
+    /**
+     * The cached nodes by id, in order from least to most recently used.
+     */
+    LinkedHashMap<Long, Node> nodes;
+    /**
+     * The cached nodes again, in a table with linear probing by id, so that peek finds
+     * a node without boxing its id. Its length is a power of two, at least twice the
+     * amount of nodes.
+     */
+    Node[] slots;
+    /**
+     * Ids of the cached nodes that have changed since they were last written.
+     */
+    HashSet<Long> dirty;
+    /**
+     * Amount of lookups that found the node in the pool.
+     */
+    long hits;
+    /**
+     * Amount of lookups that had to read the node from disk.
+     */
+    long misses;
+    /**
+     * Amount of nodes that were evicted to make room for another.
+     */
+    long evictions;
+    /**
+     * Amount of dirty nodes that were written back to disk.
+     */
+    long writeBacks;
+
+    BufferPool(BTree aTree, int aCapacity) {
+        tree = aTree;
+        capacity = Math.max(aCapacity, MIN_CAPACITY);
+        nodes = new LinkedHashMap<>(capacity * 4 / 3 + 1, 0.75f, true);
+        slots = new Node[Integer.highestOneBit(capacity) * 4];
+        dirty = new HashSet<>();
+    }
+
+    /**
+     * Method to get a node, reading it from disk if it is not in the pool.
+     * @param id the id of the node, whose latch is held by the caller.
+     * @return the node with the given id.
+     * @throws IOException if disk read or disk write throws an IO exception.
+     */
+    synchronized Node get(long id) throws IOException {
+        Node n = nodes.get(id);
+        if (n != null) {
+            ++hits;
+            tree.metrics.cacheHits.increment();
+            return n;
+        }
+        ++misses;
+        tree.metrics.cacheMisses.increment();
+        n = tree.diskRead(id);
+        nodes.put(id, n);
+        put(n);
+        evictIfFull();
+        return n;
+    }
+
+    /**
+     * Method to get a node only if it is in the pool, without reading it into the pool
+     * or making it more recently used, for scans that should not evict the nodes other
+     * operations are using. Nothing is allocated to find the node.
+     * @param id the id of the node, whose latch is held by the caller.
+     * @return the node with the given id, or null if it is not in the pool.
+     */
+    synchronized Node peek(long id) {
+        int mask = slots.length - 1;
+        for (int i = Long.hashCode(id) & mask; slots[i] != null; i = (i + 1) & mask) {
+            if (slots[i].id == id) return slots[i];
+        }
+        return null;
+    }
+
+    /**
+     * Method to mark a node as changed, so that it is written back later.
+     * A node that is not in the pool yet (a new node) is added to it.
+     * @param n the node that was changed, whose latch is held by the caller.
+     * @throws IOException if disk write throws an IO exception.
+     */
+    synchronized void markDirty(Node n) throws IOException {
+        nodes.put(n.id, n);
+        put(n);
+        dirty.add(n.id);
+        evictIfFull();
+    }
+
+    /**
+     * Method to drop a node from the pool without writing it back,
+     * used when the node is moved to another id.
+     * @param id the id the node was cached under.
+     */
+    synchronized void remove(long id) {
+        nodes.remove(id);
+        unslot(id);
+        dirty.remove(id);
+    }
+
+    /**
+     * Method to put a node in the table of slots, in place of a node with the same id,
+     * doubling the table once it is half full.
+     * @param n the node, which is in nodes.
+     */
+    private void put(Node n) {
+        if (nodes.size() * 2 > slots.length) {
+            slots = new Node[slots.length * 2];
+            for (Node cached : nodes.values()) place(cached);
+            return;
+        }
+        place(n);
+    }
+
+    /**
+     * Method to put a node in the slot of its id, or in the first free slot after it.
+     * @param n the node.
+     */
+    private void place(Node n) {
+        int mask = slots.length - 1;
+        int i = Long.hashCode(n.id) & mask;
+        while (slots[i] != null && slots[i].id != n.id) i = (i + 1) & mask;
+        slots[i] = n;
+    }
+
+    /**
+     * Method to take a node out of the table of slots, moving the nodes after it
+     * back so that every node can still be found from the slot of its id.
+     * @param id the id of the node.
+     */
+    private void unslot(long id) {
+        int mask = slots.length - 1;
+        int i = Long.hashCode(id) & mask;
+        while (slots[i] != null && slots[i].id != id) i = (i + 1) & mask;
+        if (slots[i] == null) return;
+        slots[i] = null;
+        for (int j = (i + 1) & mask; slots[j] != null; j = (j + 1) & mask) {
+            int home = Long.hashCode(slots[j].id) & mask;
+            boolean reachable = i <= j ? i < home && home <= j : i < home || home <= j; // found before reaching the hole
+            if (reachable) continue;
+            slots[i] = slots[j];
+            slots[j] = null;
+            i = j;
+        }
+    }
+
+    /**
+     * Method to evict the least recently used nodes until the pool is
+     * within its capacity, writing back the ones that are dirty.
+     * Nodes whose latch is held are skipped.
+     * @throws IOException if disk write throws an IO exception.
+     */
+    synchronized void evictIfFull() throws IOException {
+        Iterator<Map.Entry<Long, Node>> it = nodes.entrySet().iterator();
+        while (nodes.size() > capacity && it.hasNext()) {
+            Node eldest = it.next().getValue();
+            if (tree.isLatched(eldest.id)) continue; // in use, it may still change
+            if (dirty.remove(eldest.id)) {
+                tree.diskWrite(eldest);
+                ++writeBacks;
+            }
+            it.remove();
+            unslot(eldest.id);
+            ++evictions;
+            tree.metrics.evictions.increment();
+        }
+    }
+
+    /**
+     * Method to write every dirty node back to disk, the nodes stay cached.
+     * Each node is written while holding its latch, so that it is not
+     * written in the middle of a change.
+     * @throws IOException if disk write throws an IO exception.
+     */
+    void flush() throws IOException {
+        ArrayList<Long> ids;
+        synchronized (this) {
+            ids = new ArrayList<>(dirty);
+        }
+        for (Long id : ids) {
+            tree.latch(id).readLock().lock(); // taken outside the pool's lock, like every other latch
+            try {
+                synchronized (this) {
+                    if (dirty.remove(id)) {
+                        tree.diskWrite(nodes.get(id));
+                        ++writeBacks;
+                    }
+                }
+            } finally {
+                tree.latch(id).readLock().unlock();
+            }
+        }
+    }
+}
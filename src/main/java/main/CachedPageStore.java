@@ -0,0 +1,80 @@
+package main;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Page store that keeps the pages of another page store in a page cache in direct
+ * memory. Pages are written through to the underlying store and into the cache, and
+ * read from the cache when they are there. Several stores may share one cache.
+ * For example: new BTree(new CachedPageStore(new ChannelPageStore(file, pageSize), cache), dictionary, BufferPool.MIN_CAPACITY).
+ */
+public class CachedPageStore implements PageStore {
+    /**
+     * The page store the pages are read from and written to.
+     */
+    PageStore store;
+    /**
+     * The cache the pages are kept in.
+     */
+    PageCache cache;
+    /**
+     * The namespace of the store's pages in the cache.
+     */
+    long namespace;
+
+    /**
+     * Constructor for a store caching the pages of another.
+     * @param aStore the page store the pages are read from and written to.
+     * @param aCache the cache the pages are kept in.
+     * @throws IllegalArgumentException if the cache is for pages of another size.
+     */
+    CachedPageStore(PageStore aStore, PageCache aCache) {
+        if (aCache.pageSize != aStore.pageSize()) throw new IllegalArgumentException("cache is for pages of " + aCache.pageSize + " bytes");
+        store = aStore;
+        cache = aCache;
+        namespace = cache.register();
+    }
+
+    @Override
+    public void read(long id, ByteBuffer page) throws IOException {
+        long key = PageCache.key(namespace, id);
+        if (cache.read(key, page)) return;
+        int start = page.position();
+        store.read(id, page);
+        ByteBuffer read = page.duplicate();
+        read.limit(page.position()).position(start);
+        cache.put(key, read);
+    }
+
+    @Override
+    public void write(long id, ByteBuffer page) throws IOException {
+        ByteBuffer written = page.duplicate();
+        store.write(id, page);
+        cache.put(PageCache.key(namespace, id), written);
+    }
+
+    @Override
+    public int pageSize() {
+        return store.pageSize();
+    }
+
+    @Override
+    public void sync() throws IOException {
+        store.sync();
+    }
+
+    @Override
+    public void commit() throws IOException {
+        store.commit();
+    }
+
+    /**
+     * Method to close the underlying store, its pages are left in the cache to be replaced.
+     * @throws IOException if the underlying store could not be closed.
+     */
+    @Override
+    public void close() throws IOException {
+        store.close();
+    }
+}
@@ -0,0 +1,42 @@
+package main;
+
+/**
+ * Entry of a segment store's catalog, tying a document of the corpus
+ * to the b-tree holding its words.
+ */
+public class CatalogEntry {
+    /**
+     * The document id of the webpage.
+     */
+    int docId;
+    /**
+     * The id of the webpage's b-tree in the segment store.
+     */
+    int tree;
+    /**
+     * The title of the webpage.
+     */
+    String title;
+    /**
+     * The link to the webpage.
+     */
+    String link;
+    /**
+     * Bloom filter over the term ids of the webpage.
+     */
+    BloomFilter filter;
+    /**
+     * Whether the counts of the webpage are in its b-tree, or only in the corpus' inverted index
+     * because they fit in memory and the b-tree was never written.
+     */
+    boolean inTree;
+
+    CatalogEntry(int aDocId, int aTree, String aTitle, String aLink, BloomFilter aFilter, boolean aInTree) {
+        docId = aDocId;
+        tree = aTree;
+        title = aTitle;
+        link = aLink;
+        filter = aFilter;
+        inTree = aInTree;
+    }
+}
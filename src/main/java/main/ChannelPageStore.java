@@ -0,0 +1,63 @@
+package main;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Page store that does a positional read or write on the file channel
+ * of a random access file for every page.
+ */
+public class ChannelPageStore implements PageStore {
+    /**
+     * The file on disk that will contain the pages.
+     */
+    RandomAccessFile file;
+    /**
+     * The file channel that will be used to read and write the pages.
+     */
+    FileChannel channel;
+    /**
+     * Size of a page in bytes.
+     */
+    int pageSize;
+
+    ChannelPageStore(RandomAccessFile aFile, int aPageSize) {
+        file = aFile;
+        channel = file.getChannel();
+        pageSize = aPageSize;
+    }
+
+    @Override
+    public void read(long id, ByteBuffer page) throws IOException {
+        long pos = id * pageSize;
+        while (page.hasRemaining()) {
+            int read = channel.read(page, pos);
+            if (read < 0) break; // past the end of the file, the rest of the page stays zeroed
+            pos += read;
+        }
+        while (page.hasRemaining()) page.put((byte) 0);
+    }
+
+    @Override
+    public void write(long id, ByteBuffer page) throws IOException {
+        long pos = id * pageSize;
+        while (page.hasRemaining()) pos += channel.write(page, pos);
+    }
+
+    @Override
+    public int pageSize() {
+        return pageSize;
+    }
+
+    @Override
+    public void sync() throws IOException {
+        channel.force(false);
+    }
+
+    @Override
+    public void close() throws IOException {
+        file.close();
+    }
+}
@@ -0,0 +1,311 @@
+package main;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * The collection of webpages that are compared against, along with
+ * the inverted index over all of their words and the store their b-trees live in.
+ */
+public class Corpus {
+    /**
+     * Name of the file of the inverted index.
+     */
+    static final String INDEX_FILE = "index.dat";
+    /**
+     * Name of the file of the term dictionary.
+     */
+    static final String TERMS_FILE = "terms.dat";
+    /**
+     * Name of the manifest, which is only written once the corpus is completely built.
+     * It holds a magic number, format version, page size, amount of documents and
+     * a description of the source the corpus was built from.
+     */
+    static final String MANIFEST_FILE = "corpus.dat";
+    /**
+     * Number the manifest starts with, "CRPS".
+     */
+    static final int MANIFEST_MAGIC = 0x43525053;
+    /**
+     * Version of the format of the manifest.
+     */
+    static final int MANIFEST_VERSION = 3;
+    /**
+     * Amount of direct memory the page cache shared by the b-trees of the pages takes.
+     */
+    static final long DEFAULT_CACHE_BYTES = 64L << 20;
+    /**
+     * The webpages in the corpus, a page's index is its document id.
+     */
+    ArrayList<Webpage> pages;
+    /**
+     * Inverted index over the words of every page in the corpus.
+     */
+    InvertedIndex index;
+    /**
+     * Dictionary giving the words of every page in the corpus their term ids.
+     */
+    TermDictionary dictionary;
+    /**
+     * The store the b-trees of the pages live in.
+     */
+    SegmentStore segments;
+    /**
+     * TF-IDF vectors of the pages by document id, built from the index when
+     * they are first needed and built again once the corpus has grown.
+     */
+    TermVector[] vectors;
+    /**
+     * LSH index over the MinHash signatures of the pages, or null to always rank every
+     * page that shares a term with a query. Pages are added to it as they are indexed.
+     */
+    LshIndex lsh;
+
+    Corpus(InvertedIndex aIndex, TermDictionary aDictionary, SegmentStore aSegments) {
+        pages = new ArrayList<>();
+        index = aIndex;
+        dictionary = aDictionary;
+        segments = aSegments;
+    }
+
+    /**
+     * Method to start a new corpus in a directory, removing any corpus that was built there before.
+     * @param dir the directory of the corpus' files.
+     * @param pageSize the page size of the b-trees, one of PersistentStatics.PAGE_SIZES.
+     * @return the empty corpus.
+     * @throws IOException if the files of the corpus could not be created.
+     */
+    static Corpus create(File dir, int pageSize) throws IOException {
+        new File(dir, MANIFEST_FILE).delete(); // first, so that a half built corpus is never opened
+        new File(dir, INDEX_FILE).delete();
+        new File(dir, TERMS_FILE).delete();
+        SegmentStore.delete(dir);
+        return new Corpus(new InvertedIndex(new File(dir, INDEX_FILE)), new TermDictionary(new File(dir, TERMS_FILE)),
+                new SegmentStore(dir, pageSize, new PageCache(DEFAULT_CACHE_BYTES, pageSize)));
+    }
+
+    /**
+     * Method to open the corpus that was built in a directory before. The index, dictionary
+     * and catalog are read back, the b-trees of the pages are only opened when they are needed.
+     * @param dir the directory of the corpus' files.
+     * @param source description of the source the corpus should have been built from.
+     * @return the corpus, or null if no corpus was completely built from that source in the directory.
+     * @throws IOException if the files of the corpus could not be read.
+     */
+    static Corpus open(File dir, String source) throws IOException {
+        File manifest = new File(dir, MANIFEST_FILE);
+        if (!manifest.exists()) return null;
+        int pageSize, numDocs;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(manifest)))) {
+            if (in.readInt() != MANIFEST_MAGIC || in.readInt() != MANIFEST_VERSION) return null;
+            pageSize = in.readInt();
+            numDocs = in.readInt();
+            if (!in.readUTF().equals(source)) return null;
+        }
+        Corpus corpus = new Corpus(new InvertedIndex(new File(dir, INDEX_FILE)), new TermDictionary(new File(dir, TERMS_FILE)),
+                new SegmentStore(dir, pageSize, new PageCache(DEFAULT_CACHE_BYTES, pageSize)));
+        boolean complete = corpus.index.numDocs() == numDocs;
+        for (int d = 0; complete && d < numDocs; d++) {
+            CatalogEntry entry = corpus.segments.document(d);
+            if (entry == null) complete = false;
+            else corpus.pages.add(new Webpage(entry, corpus.segments.open(entry.tree), corpus.dictionary, corpus.index));
+        }
+        if (!complete) {
+            corpus.close();
+            return null;
+        }
+        return corpus;
+    }
+
+    /**
+     * Method to write the manifest of a corpus that is completely built, so that it can be opened again.
+     * The manifest is written to a temporary file first and then moved over the old one.
+     * @param dir the directory of the corpus' files.
+     * @param source description of the source the corpus was built from.
+     * @throws IOException if the manifest could not be written.
+     */
+    synchronized void writeManifest(File dir, String source) throws IOException {
+        dictionary.flush();
+        segments.flush();
+        File tmp = new File(dir, MANIFEST_FILE + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)))) {
+            out.writeInt(MANIFEST_MAGIC);
+            out.writeInt(MANIFEST_VERSION);
+            out.writeInt(segments.pageSize);
+            out.writeInt(pages.size());
+            out.writeUTF(source);
+        }
+        Files.move(tmp.toPath(), new File(dir, MANIFEST_FILE).toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Method to close the files of the corpus.
+     * @throws IOException if a file could not be closed.
+     */
+    synchronized void close() throws IOException {
+        index.close();
+        dictionary.close();
+        if (segments != null) segments.close();
+    }
+
+    /**
+     * Method to add an indexed webpage to the corpus, pages may be added from several threads.
+     * @param page the webpage being added.
+     * @param counts the count of every word in the webpage, by term id.
+     * @throws IOException if the inverted index could not be persisted.
+     */
+    synchronized void add(Webpage page, Map<Integer, Integer> counts) throws IOException {
+        add(page, counts, null, false);
+    }
+
+    /**
+     * Method to add an indexed webpage to the corpus and record its b-tree in the catalog, pages may
+     * be added from several threads. The page only gets its document id once everything is written:
+     * the catalog record goes before the inverted index's, and if the index's could not be written,
+     * the next page gets the same document id and its catalog record replaces the one left behind.
+     * @param page the webpage being added, whose index is already on disk.
+     * @param counts the count of every word in the webpage, by term id.
+     * @param store the page store of the webpage's b-tree, or null to leave the page out of the catalog.
+     * @param inTree whether the counts of the webpage are in its b-tree, or only in the inverted index.
+     * @throws IOException if the catalog or the inverted index could not be persisted, the page is not added then.
+     */
+    synchronized void add(Webpage page, Map<Integer, Integer> counts, SegmentPageStore store, boolean inTree) throws IOException {
+        int docId = pages.size();
+        dictionary.flush(); // the terms have to be on disk before the index refers to them
+        if (store != null) segments.register(store, docId, page.title, page.link, page.filter, inTree);
+        index.addDocument(docId, counts);
+        page.docId = docId;
+        pages.add(page);
+        if (lsh != null) {
+            int[] terms = new int[counts.size()];
+            int i = 0;
+            for (int term : counts.keySet()) terms[i++] = term;
+            lsh.add(page.docId, terms);
+        }
+    }
+
+    /**
+     * Method to rank pages approximately from now on, by only scoring the pages an LSH
+     * index finds for a query. The pages already in the corpus are added to the index,
+     * the pages indexed afterwards are added as they come.
+     * @param bands the amount of bands the signatures are cut into.
+     * @param rows the amount of values in a band.
+     * @return the index.
+     */
+    synchronized LshIndex enableLsh(int bands, int rows) {
+        LshIndex l = new LshIndex(bands, rows);
+        TermVector[] v = vectors();
+        for (int d = 0; d < v.length; d++) l.add(d, v[d].terms);
+        lsh = l;
+        return l;
+    }
+
+    /**
+     * Method to go back to ranking every page that shares a term with a query.
+     */
+    synchronized void disableLsh() {
+        lsh = null;
+    }
+
+    /**
+     * Method to get a webpage by its document id.
+     * @param docId the document id of the webpage.
+     * @return the webpage.
+     */
+    synchronized Webpage get(int docId) {
+        return pages.get(docId);
+    }
+
+    /**
+     * Method to get the TF-IDF vector of a webpage.
+     * @param docId the document id of the webpage.
+     * @return the vector of the webpage.
+     */
+    TermVector vector(int docId) {
+        return vectors()[docId];
+    }
+
+    /**
+     * Method to get the TF-IDF vectors of every webpage, building them if the
+     * corpus has grown since they were last built. The vectors are never changed
+     * once built, so they can be shared between scoring threads.
+     * @return the vectors by document id.
+     */
+    synchronized TermVector[] vectors() {
+        if (vectors == null || vectors.length != index.numDocs()) buildVectors();
+        return vectors;
+    }
+
+    /**
+     * Method to build the vectors of every webpage from the index. The terms are
+     * visited in order of id, so each vector comes out already sorted. The index is
+     * held while it is read, so no document is added to it in the meantime.
+     */
+    void buildVectors() {
+        synchronized (index) {
+            int[] sizes = new int[index.numDocs];
+            for (Postings p : index.terms) { // counting the terms of every page first
+                if (p == null) continue;
+                for (int i = 0; i < p.size; i++) sizes[p.docs[i]]++;
+            }
+            int[][] docTerms = new int[index.numDocs][];
+            double[][] docWeights = new double[index.numDocs][];
+            for (int d = 0; d < index.numDocs; d++) {
+                docTerms[d] = new int[sizes[d]];
+                docWeights[d] = new double[sizes[d]];
+                sizes[d] = 0;
+            }
+            for (int term = 0; term < index.terms.length; term++) {
+                Postings p = index.terms[term];
+                if (p == null) continue;
+                double idf = index.idf(term);
+                for (int i = 0; i < p.size; i++) {
+                    int d = p.docs[i];
+                    docTerms[d][sizes[d]] = term;
+                    docWeights[d][sizes[d]++] = TermVector.weight(p.counts[i], idf);
+                }
+            }
+            vectors = new TermVector[index.numDocs];
+            for (int d = 0; d < vectors.length; d++) vectors[d] = new TermVector(docTerms[d], docWeights[d]);
+        }
+    }
+
+    /**
+     * Method to get the count of a term in every webpage. The lookups of all of the pages'
+     * b-trees are started before waiting for any of them, so their reads overlap instead
+     * of going down one tree after the other.
+     * @param term the id of the term.
+     * @return the count of the term by document id.
+     * @throws IOException if a b-tree could not be read.
+     */
+    int[] counts(int term) throws IOException {
+        ArrayList<Webpage> added;
+        synchronized (this) {
+            added = new ArrayList<>(pages); // the corpus is not held while waiting for the lookups
+        }
+        ArrayList<CompletableFuture<Integer>> lookups = new ArrayList<>(added.size());
+        for (Webpage w : added) lookups.add(w.countAsync(term));
+        int[] counts = new int[lookups.size()];
+        for (int d = 0; d < counts.length; d++) counts[d] = BTree.await(lookups.get(d));
+        return counts;
+    }
+
+    /**
+     * Method to get the amount of webpages in the corpus.
+     * @return the size of the corpus.
+     */
+    synchronized int size() {
+        return pages.size();
+    }
+}
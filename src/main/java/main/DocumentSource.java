@@ -0,0 +1,48 @@
+package main;
+
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Document;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * A source of HTML documents to build a corpus from. Loading a document and
+ * parsing it are separate steps, so that the IO and the parsing can be done
+ * by different threads, but each document is loaded and parsed only once.
+ */
+public interface DocumentSource {
+    /**
+     * Method to get the locations of the documents in the source.
+     * @return the locations, in the order the documents should be loaded.
+     * @throws IOException if the documents could not be listed.
+     */
+    List<String> locations() throws IOException;
+
+    /**
+     * Method to load the HTML of a document.
+     * @param location the location of the document.
+     * @return the unparsed document.
+     * @throws IOException if the document could not be loaded.
+     */
+    RawDocument load(String location) throws IOException;
+
+    /**
+     * Method to parse a loaded document.
+     * @param raw the unparsed document.
+     * @return the parsed document, whose location is the document's link.
+     */
+    default Document parse(RawDocument raw) {
+        return Jsoup.parse(raw.html, raw.location);
+    }
+
+    /**
+     * Method to load and parse a document.
+     * @param location the location of the document.
+     * @return the parsed document.
+     * @throws IOException if the document could not be loaded.
+     */
+    default Document fetch(String location) throws IOException {
+        return parse(load(location));
+    }
+}
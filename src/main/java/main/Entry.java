@@ -1,21 +1,21 @@
 package main;
 
 /**
- * An object which will consist of both the word and the
- * frequency of the word in the document.
+ * An object which will consist of both the term and the
+ * frequency of the term in the document.
  */
 public class Entry {
     /**
-     * The word in the document.
+     * The id of the term in the corpus' term dictionary.
      */
-    String word;
+    int term;
     /**
-     * The amount of times this word has appeared in the document.
+     * The amount of times this term has appeared in the document.
      */
     int count;
 
-    Entry(String aWord) {
-        word = aWord;
+    Entry(int aTerm) {
+        term = aTerm;
         count = 1;
     }
 }
@@ -0,0 +1,146 @@
+package main;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Term index kept in memory, as an open addressing hash table with linear probing.
+ * The term ids and counts are kept in two int arrays, so there is no object per
+ * term and no boxing, and looking up a count takes constant time. The table
+ * doubles once it is three quarters full.
+ */
+public class HashTermIndex implements TermIndex {
+    /**
+     * Amount of slots a table starts with when no size is given.
+     */
+    static final int DEFAULT_CAPACITY = 16;
+    /**
+     * Term id of an empty slot, term ids are never negative.
+     */
+    static final int EMPTY = -1;
+    /**
+     * The term id in every slot, or EMPTY.
+     */
+    int[] keys;
+    /**
+     * The count of the term in every slot.
+     */
+    int[] counts;
+    /**
+     * Amount of slots in use.
+     */
+    int size;
+
+    HashTermIndex() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Constructor for a table with room for a number of terms before it has to grow.
+     * @param expected the amount of terms expected.
+     */
+    HashTermIndex(int expected) {
+        int capacity = Integer.highestOneBit(Math.max(expected * 4 / 3, DEFAULT_CAPACITY - 1)) << 1;
+        keys = new int[capacity];
+        Arrays.fill(keys, EMPTY);
+        counts = new int[capacity];
+    }
+
+    /**
+     * Method to get the amount of bytes a table of a given size takes.
+     * @param terms the amount of terms in the table.
+     * @return the size of its arrays in bytes.
+     */
+    static long bytesFor(int terms) {
+        long capacity = Integer.highestOneBit(Math.max(terms * 4 / 3, DEFAULT_CAPACITY - 1)) << 1;
+        return 2 * PersistentStatics.INT_WIDTH * capacity;
+    }
+
+    /**
+     * Method to get the amount of bytes the table takes.
+     * @return the size of its arrays in bytes.
+     */
+    synchronized long bytes() {
+        return 2L * PersistentStatics.INT_WIDTH * keys.length;
+    }
+
+    /**
+     * Method to find the slot of a term, the term ids given out in order are spread over the table.
+     * @param keys the table.
+     * @param term the id of the term.
+     * @return the slot holding the term, or the empty slot it would go in.
+     */
+    private static int slot(int[] keys, int term) {
+        int mask = keys.length - 1;
+        int h = term * 0x9e3779b9;
+        int i = (h ^ (h >>> 16)) & mask;
+        while (keys[i] != EMPTY && keys[i] != term) i = (i + 1) & mask;
+        return i;
+    }
+
+    @Override
+    public synchronized void insert(int term, int amount) {
+        int i = slot(keys, term);
+        if (keys[i] == term) {
+            counts[i] += amount;
+            return;
+        }
+        keys[i] = term;
+        counts[i] = amount;
+        if (++size > keys.length / 4 * 3) grow();
+    }
+
+    /**
+     * Method to double the size of the table.
+     */
+    private void grow() {
+        int[] oldKeys = keys;
+        int[] oldCounts = counts;
+        keys = new int[oldKeys.length * 2];
+        Arrays.fill(keys, EMPTY);
+        counts = new int[keys.length];
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] == EMPTY) continue;
+            int j = slot(keys, oldKeys[i]);
+            keys[j] = oldKeys[i];
+            counts[j] = oldCounts[i];
+        }
+    }
+
+    @Override
+    public synchronized int count(int term) {
+        int i = slot(keys, term);
+        return keys[i] == term ? counts[i] : 0;
+    }
+
+    @Override
+    public synchronized void forEach(TermCountSink sink) throws IOException {
+        for (int i = 0; i < keys.length; i++) {
+            if (keys[i] != EMPTY) sink.term(keys[i], counts[i]);
+        }
+    }
+
+    /**
+     * Method to get the term ids in the table in increasing order.
+     * @return the term ids.
+     */
+    synchronized int[] sortedTerms() {
+        int[] terms = new int[size];
+        int n = 0;
+        for (int k : keys) {
+            if (k != EMPTY) terms[n++] = k;
+        }
+        Arrays.sort(terms);
+        return terms;
+    }
+
+    @Override
+    public synchronized long size() {
+        return size;
+    }
+
+    @Override
+    public void flush() {
+        // nothing to write, the table only lives in memory
+    }
+}
@@ -0,0 +1,69 @@
+package main;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Document source of HTML files on disk, either a single file or a directory
+ * such as a dump of saved wikipedia pages, which is searched recursively.
+ */
+public class HtmlFileSource implements DocumentSource {
+    /**
+     * The file or directory the documents are read from.
+     */
+    File root;
+    /**
+     * Pattern for the canonical link of a saved page, found without parsing the page.
+     */
+    static final Pattern CANONICAL = Pattern.compile("<link\\s+rel=\"canonical\"\\s+href=\"([^\"]+)\"");
+
+    HtmlFileSource(File aRoot) {
+        root = aRoot;
+    }
+
+    @Override
+    public List<String> locations() throws IOException {
+        if (!root.exists()) throw new IOException("no such file or directory: " + root);
+        ArrayList<String> locations = new ArrayList<>();
+        collect(root, locations);
+        Collections.sort(locations); // so the corpus is the same every run
+        return locations;
+    }
+
+    /**
+     * Method to add the paths of all HTML files under a file to a list.
+     * @param f the file or directory.
+     * @param locations the list the paths are added to.
+     */
+    private static void collect(File f, List<String> locations) {
+        if (f.isDirectory()) {
+            File[] children = f.listFiles();
+            if (children == null) return;
+            for (File child : children) collect(child, locations);
+        } else {
+            String name = f.getName().toLowerCase();
+            if (name.endsWith(".html") || name.endsWith(".htm")) locations.add(f.getPath());
+        }
+    }
+
+    @Override
+    public RawDocument load(String location) throws IOException {
+        File f = new File(location);
+        String html = new String(Files.readAllBytes(f.toPath()), StandardCharsets.UTF_8);
+        Matcher canonical = CANONICAL.matcher(html);
+        if (canonical.find()) return new RawDocument(canonical.group(1), html); // a saved page keeps its link
+        return new RawDocument(f.toURI().toString(), html);
+    }
+
+    @Override
+    public String toString() {
+        return "saved pages in " + root.getAbsolutePath();
+    }
+}
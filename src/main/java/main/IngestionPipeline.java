@@ -0,0 +1,259 @@
+package main;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Pipeline that builds a corpus in three stages running at the same time:
+ * loading the documents, parsing them and counting their words, and writing
+ * the words to each page's b-tree. The stages are connected by bounded queues,
+ * so a fast stage waits for a slow one instead of filling up memory.
+ */
+public class IngestionPipeline {
+    /**
+     * Default amount of threads loading documents, these mostly wait on IO.
+     */
+    static final int DEFAULT_LOADERS = 16;
+    /**
+     * Default amount of documents that may wait between two stages.
+     */
+    static final int DEFAULT_QUEUE_CAPACITY = 32;
+    /**
+     * Default amount of bytes the word counts of a page may take in memory,
+     * pages with a larger vocabulary only keep their counts in their b-tree.
+     */
+    static final long DEFAULT_SPILL_BYTES = 1 << 14;
+    /**
+     * Marker put in a queue to tell the next stage that nothing else is coming.
+     */
+    private static final Object DONE = new Object();
+    /**
+     * How often in milliseconds the thread waiting for the pipeline checks whether a stage failed.
+     */
+    static final long FAILURE_CHECK_MS = 100;
+
+    /**
+     * Callback for the progress of the pipeline.
+     */
+    interface ProgressListener {
+        /**
+         * Method called every time a page has been added to the corpus.
+         * @param page the page that was added.
+         * @param done the amount of documents that have gone through the pipeline, including failed ones.
+         * @param total the amount of documents in the source.
+         */
+        void indexed(Webpage page, int done, int total);
+
+        /**
+         * Method called when a document could not go through the pipeline, it is left out of the corpus.
+         * @param location the location of the document.
+         * @param e the reason it failed.
+         */
+        default void failed(String location, Exception e) {
+        }
+
+        /**
+         * Method called once every document has gone through the pipeline.
+         * @param corpus the corpus that was built.
+         */
+        default void completed(Corpus corpus) {
+        }
+    }
+
+    /**
+     * The source of the documents.
+     */
+    DocumentSource source;
+    /**
+     * Amount of threads loading documents.
+     */
+    int loaders;
+    /**
+     * Amount of threads parsing documents and counting their words.
+     */
+    int parsers;
+    /**
+     * Amount of threads writing pages to their b-trees.
+     */
+    int indexers;
+    /**
+     * Amount of documents that may wait between two stages.
+     */
+    int queueCapacity;
+    /**
+     * Amount of bytes the word counts of a page may take in memory, or 0 to only keep them in its b-tree.
+     */
+    long spillBytes;
+    /**
+     * Share of absent words the Bloom filter of a page may say are on the page.
+     */
+    double falsePositiveRate;
+    /**
+     * Callback for the progress of the pipeline.
+     */
+    ProgressListener listener;
+
+    IngestionPipeline(DocumentSource aSource, ProgressListener aListener) {
+        this(aSource, aListener, DEFAULT_LOADERS, Runtime.getRuntime().availableProcessors(), 1, DEFAULT_QUEUE_CAPACITY);
+    }
+
+    IngestionPipeline(DocumentSource aSource, ProgressListener aListener,
+                      int aLoaders, int aParsers, int aIndexers, int aQueueCapacity) {
+        source = aSource;
+        listener = aListener;
+        loaders = aLoaders;
+        parsers = aParsers;
+        indexers = aIndexers;
+        queueCapacity = aQueueCapacity;
+        spillBytes = DEFAULT_SPILL_BYTES;
+        falsePositiveRate = BloomFilter.DEFAULT_FALSE_POSITIVE_RATE;
+    }
+
+    /**
+     * Method to run every document of the source through the pipeline.
+     * @param corpus the corpus the pages are added to, their b-trees are created in its segment store.
+     * @return the corpus, once every document has gone through the pipeline.
+     * @throws IOException if the documents of the source could not be listed.
+     * @throws InterruptedException if the thread is interrupted while waiting for the pipeline.
+     * @throws RuntimeException the first exception a thread of the pipeline died of, once the pipeline
+     * is shut down. An Error a thread died of is thrown the same way.
+     */
+    Corpus run(Corpus corpus) throws IOException, InterruptedException {
+        List<String> locations = source.locations();
+        int total = locations.size();
+        BlockingQueue<Object> loaded = new ArrayBlockingQueue<>(queueCapacity);
+        BlockingQueue<Object> parsed = new ArrayBlockingQueue<>(queueCapacity);
+        AtomicInteger next = new AtomicInteger();
+        AtomicInteger done = new AtomicInteger();
+        AtomicInteger activeLoaders = new AtomicInteger(loaders);
+        AtomicInteger activeParsers = new AtomicInteger(parsers);
+        AtomicInteger activeIndexers = new AtomicInteger(indexers);
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        // the loaders would be virtual threads on a newer JDK, here they are a fixed pool of platform threads
+        ExecutorService loaderPool = Executors.newFixedThreadPool(loaders);
+        ExecutorService parserPool = Executors.newFixedThreadPool(parsers);
+        ExecutorService indexerPool = Executors.newFixedThreadPool(indexers);
+        try {
+            for (int i = 0; i < loaders; i++) {
+                loaderPool.execute(() -> stage(() -> {
+                    int n;
+                    while ((n = next.getAndIncrement()) < total) {
+                        String location = locations.get(n);
+                        try {
+                            loaded.put(source.load(location));
+                        } catch (IOException | RuntimeException e) {
+                            fail(location, e, done);
+                        }
+                    }
+                }, activeLoaders, loaded, parsers, failure));
+            }
+            for (int i = 0; i < parsers; i++) {
+                parserPool.execute(() -> stage(() -> {
+                    Object item;
+                    while ((item = loaded.take()) != DONE) {
+                        RawDocument raw = (RawDocument) item;
+                        try {
+                            parsed.put(new ParsedPage(source.parse(raw), corpus.dictionary));
+                        } catch (IOException | RuntimeException e) {
+                            fail(raw.location, e, done);
+                        }
+                    }
+                }, activeParsers, parsed, indexers, failure));
+            }
+            for (int i = 0; i < indexers; i++) {
+                indexerPool.execute(() -> stage(() -> {
+                    Object item;
+                    while ((item = parsed.take()) != DONE) {
+                        ParsedPage page = (ParsedPage) item;
+                        try {
+                            SegmentPageStore store = corpus.segments.create();
+                            SpillingTermIndex.TreeFactory trees = () -> new BTree(store, corpus.dictionary, BufferPool.MIN_CAPACITY); // the pages are cached by the segment store
+                            TermIndex terms = spillBytes > 0 ? new SpillingTermIndex(trees, spillBytes) : trees.create();
+                            Webpage w = new Webpage(terms, corpus.dictionary, page, null);
+                            terms.flush(); // the tree, if there is one, is on disk before the catalog refers to it
+                            boolean inTree = !(terms instanceof SpillingTermIndex) || !((SpillingTermIndex) terms).inMemory();
+                            w.buildFilter(page.counts, falsePositiveRate);
+                            corpus.add(w, page.counts, store, inTree); // only now does the page get a document id
+                            listener.indexed(w, done.incrementAndGet(), total);
+                        } catch (IOException | RuntimeException e) {
+                            fail(page.link, e, done);
+                        }
+                    }
+                }, activeIndexers, null, 0, failure));
+            }
+            loaderPool.shutdown();
+            parserPool.shutdown();
+            indexerPool.shutdown();
+            while (!indexerPool.awaitTermination(FAILURE_CHECK_MS, TimeUnit.MILLISECONDS)) {
+                if (failure.get() != null) break; // a stage may be missing a thread, so the rest are shut down
+            }
+        } finally {
+            loaderPool.shutdownNow();
+            parserPool.shutdownNow();
+            indexerPool.shutdownNow();
+        }
+        Throwable t = failure.get();
+        if (t instanceof RuntimeException) throw (RuntimeException) t;
+        if (t instanceof Error) throw (Error) t;
+        listener.completed(corpus);
+        return corpus;
+    }
+
+    /**
+     * Work done by the threads of one stage, which may be interrupted while waiting on a queue.
+     */
+    private interface StageWork {
+        /**
+         * Method doing the work.
+         * @throws InterruptedException if the thread is interrupted while waiting on a queue.
+         */
+        void run() throws InterruptedException;
+    }
+
+    /**
+     * Method to run the work of one thread of a stage, the last thread of the stage to
+     * finish tells every thread of the next stage that nothing else is coming, even if
+     * the work died of an exception, so that the next stage never waits forever.
+     * @param work the work of the thread.
+     * @param active the amount of threads of the stage that are still running.
+     * @param out the queue of the next stage, or null for the last stage.
+     * @param consumers the amount of threads of the next stage.
+     * @param failure the first exception a thread of the pipeline died of, set if this one is the first.
+     */
+    private static void stage(StageWork work, AtomicInteger active, BlockingQueue<Object> out, int consumers,
+                              AtomicReference<Throwable> failure) {
+        try {
+            work.run();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt(); // the pipeline is being shut down
+        } catch (RuntimeException | Error e) {
+            failure.compareAndSet(null, e);
+        } finally {
+            if (active.decrementAndGet() == 0 && out != null) {
+                try {
+                    for (int i = 0; i < consumers; i++) out.put(DONE);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }
+    }
+
+    /**
+     * Method to report a document that could not go through the pipeline.
+     * @param location the location of the document.
+     * @param e the reason it failed.
+     * @param done the amount of documents that have gone through the pipeline.
+     */
+    private void fail(String location, Exception e, AtomicInteger done) {
+        done.incrementAndGet();
+        listener.failed(location, e);
+    }
+}
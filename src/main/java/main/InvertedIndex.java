@@ -0,0 +1,238 @@
+package main;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Corpus wide inverted index, mapping the id of every term to the documents it
+ * appears in. It is kept in memory, and persisted as a log that every
+ * indexed document is appended to, which is replayed when the index is opened.
+ * A record of the log holds the document id, the amount of terms, and the id and
+ * count of each term, so the counts of a single document can also be read back.
+ * Documents may be added while other threads read the index: every method holds the
+ * index, and postings are handed out as snapshots that later documents are not added to.
+ */
+public class InvertedIndex {
+    /**
+     * The postings of every term in the corpus by term id, null for ids that
+     * no document has been indexed with yet.
+     */
+    Postings[] terms;
+    /**
+     * Amount of documents that have been indexed.
+     */
+    int numDocs;
+    /**
+     * The log documents are appended to, or null if the index is only in memory.
+     */
+    DataOutputStream log;
+    /**
+     * The file the index is persisted to, or null if the index is only in memory.
+     */
+    File file;
+    /**
+     * Where the record of every document starts in the log by document id, -1 for documents not in it.
+     */
+    long[] offsets;
+    /**
+     * Length of the log, where the next record starts.
+     */
+    long length;
+
+    InvertedIndex() {
+        terms = new Postings[64];
+        numDocs = 0;
+        offsets = new long[64];
+        Arrays.fill(offsets, -1);
+    }
+
+    /**
+     * Constructor for an index persisted to a file, the documents already
+     * in the file are loaded back into the index. A document that was only partly
+     * written is cut off the end of the file, so new documents follow the last whole one.
+     * @param file the file the index is persisted to.
+     * @throws IOException if the file could not be read, cut or opened for appending.
+     */
+    InvertedIndex(File file) throws IOException {
+        this();
+        this.file = file;
+        if (file.exists()) replay(file);
+        openLog();
+    }
+
+    /**
+     * Method to cut the log back to where the last whole document ends, and open it for appending.
+     * @throws IOException if the file could not be cut or opened.
+     */
+    private void openLog() throws IOException {
+        try (RandomAccessFile out = new RandomAccessFile(file, "rw")) {
+            out.getChannel().truncate(length);
+        }
+        log = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file, true)));
+    }
+
+    /**
+     * Method to load the documents of a log into the index, after which length is
+     * where the last whole document ends. A document that was only partly written
+     * when the log was last closed is ignored.
+     * @param file the log being read.
+     * @throws IOException if the file could not be read.
+     */
+    void replay(File file) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            while (true) {
+                HashMap<Integer, Integer> counts = new HashMap<>();
+                int doc, numTerms;
+                try {
+                    doc = in.readInt();
+                    numTerms = in.readInt();
+                    for (int i = 0; i < numTerms; i++) counts.put(in.readInt(), in.readInt());
+                } catch (EOFException e) {
+                    return;
+                }
+                index(doc, counts);
+                setOffset(doc, length);
+                length += 8 + 8L * numTerms; // what was read, even if a term id came up twice
+            }
+        }
+    }
+
+    /**
+     * Method to record where the record of a document starts in the log.
+     * @param doc the id of the document.
+     * @param offset the position of the record.
+     */
+    private void setOffset(int doc, long offset) {
+        if (doc >= offsets.length) {
+            int old = offsets.length;
+            offsets = Arrays.copyOf(offsets, Math.max(doc + 1, old * 2));
+            Arrays.fill(offsets, old, offsets.length, -1);
+        }
+        offsets[doc] = offset;
+    }
+
+    /**
+     * Method to append a document to the log and then add it to the index, so that a
+     * document whose record could not be written is not in the index either. The part of
+     * the record that was written is cut off the log, so the next record starts where it did.
+     * @param doc the id of the document.
+     * @param counts the count of every term in the document, by term id.
+     * @throws IOException if the document could not be appended to the log.
+     */
+    synchronized void addDocument(int doc, Map<Integer, Integer> counts) throws IOException {
+        if (log != null) {
+            try {
+                log.writeInt(doc);
+                log.writeInt(counts.size());
+                for (Map.Entry<Integer, Integer> c : counts.entrySet()) {
+                    log.writeInt(c.getKey());
+                    log.writeInt(c.getValue());
+                }
+                log.flush();
+            } catch (IOException e) {
+                try {
+                    log.close(); // whatever it still buffers is cut off with the rest of the record
+                } catch (IOException ignored) {
+                    // the log is opened again below
+                }
+                openLog();
+                throw e;
+            }
+            setOffset(doc, length);
+            length += 8 + 8L * counts.size();
+        }
+        index(doc, counts);
+    }
+
+    /**
+     * Method to read the counts of a document back from the log.
+     * @param doc the id of the document.
+     * @return the count of every term of the document, in an in-memory index.
+     * @throws IOException if the log could not be read, or does not hold the document.
+     */
+    synchronized HashTermIndex counts(int doc) throws IOException {
+        if (file == null || doc < 0 || doc >= offsets.length || offsets[doc] < 0) throw new IOException("document " + doc + " is not in the index's log");
+        try (RandomAccessFile in = new RandomAccessFile(file, "r")) {
+            in.seek(offsets[doc] + 4);
+            int numTerms = in.readInt();
+            byte[] record = new byte[8 * numTerms];
+            in.readFully(record);
+            ByteBuffer pairs = ByteBuffer.wrap(record);
+            HashTermIndex counts = new HashTermIndex(numTerms);
+            for (int i = 0; i < numTerms; i++) counts.insert(pairs.getInt(), pairs.getInt());
+            return counts;
+        }
+    }
+
+    /**
+     * Method to add the postings of a document to the in memory index.
+     * @param doc the id of the document.
+     * @param counts the count of every term in the document, by term id.
+     */
+    private void index(int doc, Map<Integer, Integer> counts) {
+        for (Map.Entry<Integer, Integer> c : counts.entrySet()) {
+            int term = c.getKey();
+            if (term >= terms.length) terms = Arrays.copyOf(terms, Math.max(term + 1, terms.length * 2));
+            if (terms[term] == null) terms[term] = new Postings();
+            terms[term].add(doc, c.getValue());
+        }
+        numDocs++;
+    }
+
+    /**
+     * Method to get the documents a term appears in.
+     * @param term the id of the term, or -1 for a term that has no id.
+     * @return a snapshot of the postings of the term, or null if no document contains it.
+     */
+    synchronized Postings postings(int term) {
+        if (term < 0 || term >= terms.length || terms[term] == null) return null;
+        return terms[term].snapshot();
+    }
+
+    /**
+     * Method to get the amount of documents a term appears in.
+     * @param term the id of the term, or -1 for a term that has no id.
+     * @return the document frequency of the term.
+     */
+    synchronized int documentFrequency(int term) {
+        if (term < 0 || term >= terms.length || terms[term] == null) return 0;
+        return terms[term].size;
+    }
+
+    /**
+     * Method to calculate the inverse document frequency of a term.
+     * @param term the id of the term we are calculating the IDF for, or -1 for a term that has no id.
+     * @return log((# of documents + 1) / (document frequency + 1)).
+     */
+    synchronized double idf(int term) {
+        return Math.log10((numDocs + 1.0) / (documentFrequency(term) + 1.0));
+    }
+
+    /**
+     * Method to get the amount of documents that have been indexed.
+     * @return the amount of documents.
+     */
+    synchronized int numDocs() {
+        return numDocs;
+    }
+
+    /**
+     * Method to close the log of the index.
+     * @throws IOException if the log could not be closed.
+     */
+    void close() throws IOException {
+        if (log != null) log.close();
+    }
+}
@@ -0,0 +1,96 @@
+package main;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Histogram of latencies in nanoseconds, which may be recorded to from several
+ * threads at once. Bucket i holds the latencies below 2^i nanoseconds that did not
+ * fit in bucket i - 1, so a percentile is known to within a factor of two, and
+ * recording a latency is a few atomic adds without any allocation or lock.
+ */
+public class LatencyHistogram {
+    /**
+     * Amount of buckets, one for every bit of a long.
+     */
+    static final int BUCKETS = 64;
+    /**
+     * Amount of latencies recorded in each bucket.
+     */
+    AtomicLongArray buckets;
+    /**
+     * Amount of latencies recorded.
+     */
+    LongAdder count;
+    /**
+     * Total of the latencies recorded.
+     */
+    LongAdder total;
+
+    LatencyHistogram() {
+        buckets = new AtomicLongArray(BUCKETS);
+        count = new LongAdder();
+        total = new LongAdder();
+    }
+
+    /**
+     * Method to record a latency.
+     * @param nanos the latency in nanoseconds, negative latencies are counted as 0.
+     */
+    void record(long nanos) {
+        nanos = Math.max(nanos, 0);
+        buckets.incrementAndGet(BUCKETS - Long.numberOfLeadingZeros(nanos)); // 0 for a latency of 0
+        count.increment();
+        total.add(nanos);
+    }
+
+    /**
+     * Method to get the amount of latencies recorded.
+     * @return the amount.
+     */
+    long count() {
+        return count.sum();
+    }
+
+    /**
+     * Method to get the mean of the latencies recorded.
+     * @return the mean in nanoseconds, or 0 if nothing was recorded.
+     */
+    double mean() {
+        long n = count.sum();
+        return n == 0 ? 0 : (double) total.sum() / n;
+    }
+
+    /**
+     * Method to get a percentile of the latencies recorded.
+     * @param p the percentile, from 0 to 100.
+     * @return the upper bound in nanoseconds of the bucket the percentile falls in, or 0 if nothing was recorded.
+     */
+    long percentile(double p) {
+        long n = 0;
+        long[] counts = new long[BUCKETS];
+        for (int i = 0; i < BUCKETS; i++) n += counts[i] = buckets.get(i);
+        long rank = (long) Math.ceil(p / 100 * n);
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += counts[i];
+            if (seen >= Math.max(rank, 1)) return i == BUCKETS - 1 ? Long.MAX_VALUE : 1L << i;
+        }
+        return 0;
+    }
+
+    /**
+     * Method to forget every latency recorded.
+     */
+    void reset() {
+        for (int i = 0; i < BUCKETS; i++) buckets.set(i, 0);
+        count.reset();
+        total.reset();
+    }
+
+    @Override
+    public String toString() {
+        return "count=" + count() + " mean=" + Math.round(mean()) + "ns p50<" + percentile(50) + "ns p99<"
+                + percentile(99) + "ns p999<" + percentile(99.9) + "ns";
+    }
+}
@@ -0,0 +1,389 @@
+package main;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
+/**
+ * Page store that puts a write-ahead log in front of another page store, so that
+ * a crash leaves the tree as it was at its last commit instead of half written.
+ * A written page is only appended to the log, and is kept in memory until a
+ * checkpoint copies it into the underlying store. BTree.flush commits, and the
+ * log is only forced to disk once enough bytes were logged since it was last forced,
+ * or by a background thread once every sync interval if anything was logged since
+ * (group commit), so a commit does not cost an fsync but is durable at most one
+ * sync interval after it returns. When the store is opened, the pages of every commit that made it to the
+ * log are copied into the underlying store and the rest of the log is dropped.
+ * The log starts with a magic number and format version, followed by page records
+ * (type, id, length, page, CRC) and commit records (type, sequence number, CRC),
+ * where the CRC covers every field of the record before it.
+ * For example: BTree.open(new LoggedPageStore(new ChannelPageStore(file, pageSize), logFile), dictionary).
+ */
+public class LoggedPageStore implements PageStore {
+    /**
+     * Default longest time after a commit before the log is forced to disk.
+     */
+    static final long DEFAULT_SYNC_INTERVAL_MS = 100;
+    /**
+     * Default amount of bytes logged after which the log is forced to disk.
+     */
+    static final long DEFAULT_SYNC_BYTES = 1 << 20;
+    /**
+     * Default amount of committed bytes kept in memory before a checkpoint.
+     */
+    static final long DEFAULT_CHECKPOINT_BYTES = 16 << 20;
+    /**
+     * Number the log starts with, "WLOG".
+     */
+    static final int MAGIC = 0x574c4f47;
+    /**
+     * Version of the format of the log.
+     */
+    static final int VERSION = 2;
+    /**
+     * Type of a log record holding a page.
+     */
+    static final byte PAGE_RECORD = 1;
+    /**
+     * Type of a log record ending a commit.
+     */
+    static final byte COMMIT_RECORD = 2;
+    /**
+     * The page store the pages end up in.
+     */
+    PageStore store;
+    /**
+     * The log file.
+     */
+    File file;
+    /**
+     * Stream appending to the log file.
+     */
+    FileOutputStream logFile;
+    /**
+     * Buffered stream records are written through.
+     */
+    DataOutputStream log;
+    /**
+     * Pages written since the last commit, by id.
+     */
+    LinkedHashMap<Long, byte[]> pending;
+    /**
+     * Pages committed since the last checkpoint, by id, not in the underlying store yet.
+     */
+    LinkedHashMap<Long, byte[]> committed;
+    /**
+     * Amount of bytes of the pages in committed.
+     */
+    long committedBytes;
+    /**
+     * Sequence number of the last commit.
+     */
+    long commits;
+    /**
+     * Amount of bytes logged since the log was last forced.
+     */
+    long unsyncedBytes;
+    /**
+     * Time the log was last forced, from System.nanoTime.
+     */
+    long lastSync;
+    /**
+     * Longest time in nanoseconds a commit waits before the log is forced.
+     */
+    long syncInterval;
+    /**
+     * Amount of bytes logged after which the log is forced.
+     */
+    long syncBytes;
+    /**
+     * Amount of committed bytes kept in memory before a checkpoint.
+     */
+    long checkpointBytes;
+    /**
+     * Amount of times the log was forced to disk.
+     */
+    long syncs;
+    /**
+     * Thread forcing the log once every sync interval if anything was logged since it was last forced.
+     */
+    ScheduledExecutorService syncer;
+    /**
+     * The error the background force last ran into, thrown by the next commit or sync.
+     */
+    IOException syncFailure;
+
+    LoggedPageStore(PageStore aStore, File aFile) throws IOException {
+        this(aStore, aFile, DEFAULT_SYNC_INTERVAL_MS, DEFAULT_SYNC_BYTES, DEFAULT_CHECKPOINT_BYTES);
+    }
+
+    /**
+     * Constructor for a logged store, which first recovers the underlying store from the log if needed.
+     * @param aStore the page store the pages end up in.
+     * @param aFile the log file.
+     * @param syncIntervalMs longest time in milliseconds after a commit before the log is forced to disk.
+     * @param aSyncBytes amount of bytes logged after which the log is forced to disk.
+     * @param aCheckpointBytes amount of committed bytes kept in memory before a checkpoint.
+     * @throws IOException if the log could not be read or the recovered pages could not be written.
+     */
+    LoggedPageStore(PageStore aStore, File aFile, long syncIntervalMs, long aSyncBytes, long aCheckpointBytes) throws IOException {
+        store = aStore;
+        file = aFile;
+        syncInterval = TimeUnit.MILLISECONDS.toNanos(syncIntervalMs);
+        syncBytes = aSyncBytes;
+        checkpointBytes = aCheckpointBytes;
+        pending = new LinkedHashMap<>();
+        committed = new LinkedHashMap<>();
+        if (file.length() > 0) recover();
+        startLog();
+        syncer = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "wal-sync");
+            thread.setDaemon(true);
+            return thread;
+        });
+        syncer.scheduleWithFixedDelay(this::syncIfNeeded, syncInterval, syncInterval, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Method run by the background thread to force the log if anything was logged since it was last forced.
+     */
+    private synchronized void syncIfNeeded() {
+        if (unsyncedBytes == 0) return;
+        try {
+            forceLog();
+        } catch (IOException e) {
+            syncFailure = e;
+        }
+    }
+
+    /**
+     * Method to throw the error the background force last ran into, if any.
+     * @throws IOException the error.
+     */
+    private void checkSyncFailure() throws IOException {
+        if (syncFailure == null) return;
+        IOException e = syncFailure;
+        syncFailure = null;
+        throw e;
+    }
+
+    /**
+     * Method to copy the pages of every complete commit in the log into the underlying store.
+     * Reading stops at the first record that is cut off or whose CRC does not match.
+     * @throws IOException if the log could not be read or the pages could not be written.
+     */
+    private void recover() throws IOException {
+        HashMap<Long, byte[]> batch = new HashMap<>();
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            if (in.readInt() != MAGIC) throw new IOException(file + " is not a write-ahead log");
+            int version = in.readInt();
+            if (version != VERSION) throw new IOException("unsupported write-ahead log version: " + version);
+            CRC32 crc = new CRC32();
+            int pageSize = store.pageSize();
+            while (true) {
+                byte type = in.readByte();
+                long id = in.readLong();
+                crc.reset();
+                crc.update(type);
+                updateLong(crc, id);
+                if (type == PAGE_RECORD) {
+                    int length = in.readInt();
+                    if (length != pageSize) break; // a torn length, the record cannot be trusted
+                    updateInt(crc, length);
+                    byte[] page = new byte[length];
+                    in.readFully(page);
+                    crc.update(page);
+                    if (in.readInt() != (int) crc.getValue()) break; // torn write
+                    batch.put(id, page);
+                } else if (type == COMMIT_RECORD) {
+                    if (in.readInt() != (int) crc.getValue()) break;
+                    for (Map.Entry<Long, byte[]> p : batch.entrySet()) store.write(p.getKey(), ByteBuffer.wrap(p.getValue()));
+                    batch.clear();
+                    commits = id;
+                } else {
+                    break;
+                }
+            }
+        } catch (EOFException e) {
+            // reached the end of the log, whatever was not committed is dropped
+        }
+        store.sync();
+    }
+
+    /**
+     * Method to start an empty log, holding only its header.
+     * @throws IOException if the log could not be written.
+     */
+    private void startLog() throws IOException {
+        logFile = new FileOutputStream(file, false);
+        log = new DataOutputStream(new BufferedOutputStream(logFile));
+        log.writeInt(MAGIC);
+        log.writeInt(VERSION);
+        forceLog();
+    }
+
+    /**
+     * Method to add a long to a CRC, in the order it is written to the log.
+     * @param crc the CRC.
+     * @param v the long.
+     */
+    private static void updateLong(CRC32 crc, long v) {
+        for (int shift = 56; shift >= 0; shift -= 8) crc.update((int) (v >>> shift));
+    }
+
+    /**
+     * Method to add an int to a CRC, in the order it is written to the log.
+     * @param crc the CRC.
+     * @param v the int.
+     */
+    private static void updateInt(CRC32 crc, int v) {
+        for (int shift = 24; shift >= 0; shift -= 8) crc.update(v >>> shift);
+    }
+
+    /**
+     * Method to append a page record to the log.
+     * @param id the id of the page.
+     * @param page the bytes of the page.
+     * @throws IOException if the log could not be written.
+     */
+    private void appendPage(long id, byte[] page) throws IOException {
+        CRC32 crc = new CRC32();
+        crc.update(PAGE_RECORD);
+        updateLong(crc, id);
+        updateInt(crc, page.length);
+        crc.update(page);
+        log.writeByte(PAGE_RECORD);
+        log.writeLong(id);
+        log.writeInt(page.length);
+        log.write(page);
+        log.writeInt((int) crc.getValue());
+        unsyncedBytes += page.length + 17;
+    }
+
+    /**
+     * Method to force everything appended to the log to disk.
+     * @throws IOException if the log could not be forced.
+     */
+    private void forceLog() throws IOException {
+        log.flush();
+        logFile.getChannel().force(false);
+        unsyncedBytes = 0;
+        lastSync = System.nanoTime();
+        ++syncs;
+    }
+
+    @Override
+    public void read(long id, ByteBuffer page) throws IOException {
+        byte[] logged;
+        synchronized (this) {
+            logged = pending.get(id);
+            if (logged == null) logged = committed.get(id);
+        }
+        if (logged == null) { // a page only leaves the maps once it is in the underlying store
+            store.read(id, page);
+            return;
+        }
+        page.put(logged, 0, Math.min(logged.length, page.remaining()));
+    }
+
+    /**
+     * Method to log a page, which only reaches the underlying store once it is committed.
+     * @param id the id of the page.
+     * @param page the buffer holding the page, from its position up to its limit.
+     * @throws IOException if the log could not be written.
+     * @throws IllegalArgumentException if the buffer does not hold exactly one page.
+     */
+    @Override
+    public synchronized void write(long id, ByteBuffer page) throws IOException {
+        if (page.remaining() != store.pageSize()) throw new IllegalArgumentException("not a whole page: " + page.remaining() + " bytes");
+        byte[] bytes = new byte[page.remaining()];
+        page.get(bytes);
+        appendPage(id, bytes);
+        pending.put(id, bytes);
+    }
+
+    /**
+     * Method to end a commit. The log is forced to disk if the last force was long
+     * enough ago or enough was logged since, and otherwise by the background thread
+     * within one sync interval, so several commits share one force.
+     * @throws IOException if the log could not be written, or the background force failed.
+     */
+    @Override
+    public synchronized void commit() throws IOException {
+        checkSyncFailure();
+        CRC32 crc = new CRC32();
+        crc.update(COMMIT_RECORD);
+        updateLong(crc, ++commits);
+        log.writeByte(COMMIT_RECORD);
+        log.writeLong(commits);
+        log.writeInt((int) crc.getValue());
+        unsyncedBytes += 13;
+        for (Map.Entry<Long, byte[]> p : pending.entrySet()) {
+            byte[] old = committed.put(p.getKey(), p.getValue());
+            committedBytes += p.getValue().length - (old == null ? 0 : old.length);
+        }
+        pending.clear();
+        if (unsyncedBytes >= syncBytes || System.nanoTime() - lastSync >= syncInterval) forceLog();
+        if (committedBytes >= checkpointBytes) checkpoint();
+    }
+
+    /**
+     * Method to copy the committed pages into the underlying store and start the log over.
+     * Pages that were written but not committed yet are logged again in the new log.
+     * @throws IOException if the pages or the log could not be written.
+     */
+    synchronized void checkpoint() throws IOException {
+        forceLog(); // the commits are durable before the store is changed
+        for (Map.Entry<Long, byte[]> p : committed.entrySet()) store.write(p.getKey(), ByteBuffer.wrap(p.getValue()));
+        store.sync();
+        committed.clear();
+        committedBytes = 0;
+        log.close();
+        startLog();
+        for (Map.Entry<Long, byte[]> p : pending.entrySet()) appendPage(p.getKey(), p.getValue());
+    }
+
+    /**
+     * Method to force the log to disk, which makes every commit so far durable.
+     * The underlying store is only forced at a checkpoint.
+     * @throws IOException if the log could not be forced, or the background force failed.
+     */
+    @Override
+    public synchronized void sync() throws IOException {
+        checkSyncFailure();
+        forceLog();
+    }
+
+    @Override
+    public int pageSize() {
+        return store.pageSize();
+    }
+
+    /**
+     * Method to checkpoint and close the log and the underlying store.
+     * Pages that were not committed are dropped.
+     * @throws IOException if the pages could not be written or a file could not be closed.
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        syncer.shutdownNow();
+        pending.clear();
+        checkpoint();
+        log.close();
+        store.close();
+    }
+}
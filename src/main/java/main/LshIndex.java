@@ -0,0 +1,128 @@
+package main;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+
+/**
+ * Locality sensitive hashing index over the MinHash signatures of the pages of a corpus,
+ * used to find the pages that are likely similar to a query without scoring all of them.
+ * A signature is cut into bands of a few values, and a page lands in one bucket per band,
+ * keyed by the values of the band. The pages sharing a bucket with a query are its candidates,
+ * so a page whose terms have a Jaccard similarity s with the query is a candidate with a
+ * probability of 1 - (1 - s^rows)^bands. More bands, or fewer rows in each, find more of the
+ * similar pages (a higher recall) at the cost of more candidates to score.
+ */
+public class LshIndex {
+    /**
+     * Default amount of bands a signature is cut into.
+     */
+    static final int DEFAULT_BANDS = 64;
+    /**
+     * Default amount of values in a band.
+     */
+    static final int DEFAULT_ROWS = 2;
+    /**
+     * Seed the hash functions of the signatures are drawn from.
+     */
+    static final long SEED = 0x5eed;
+    /**
+     * Amount of bands a signature is cut into.
+     */
+    int bands;
+    /**
+     * Amount of values in a band.
+     */
+    int rows;
+    /**
+     * The hash functions of the signatures.
+     */
+    MinHash minHash;
+    /**
+     * The buckets of each band, by the hash of the band's values.
+     */
+    ArrayList<HashMap<Long, ArrayList<Integer>>> buckets;
+    /**
+     * Amount of pages in the index.
+     */
+    int size;
+
+    /**
+     * Constructor for an empty index.
+     * @param aBands the amount of bands a signature is cut into.
+     * @param aRows the amount of values in a band.
+     * @throws IllegalArgumentException if there are no bands or no rows.
+     */
+    LshIndex(int aBands, int aRows) {
+        if (aBands < 1 || aRows < 1) throw new IllegalArgumentException("bands and rows must be positive: " + aBands + "x" + aRows);
+        bands = aBands;
+        rows = aRows;
+        minHash = new MinHash(bands * rows, SEED);
+        buckets = new ArrayList<>(bands);
+        for (int b = 0; b < bands; b++) buckets.add(new HashMap<>());
+    }
+
+    /**
+     * Method to get the probability that a page is a candidate for a query.
+     * @param similarity the Jaccard similarity of the terms of the page and the query.
+     * @param bands the amount of bands a signature is cut into.
+     * @param rows the amount of values in a band.
+     * @return the probability that they share a bucket in at least one band.
+     */
+    static double probability(double similarity, int bands, int rows) {
+        return 1 - Math.pow(1 - Math.pow(similarity, rows), bands);
+    }
+
+    /**
+     * Method to get the key of the bucket a band of a signature lands in.
+     * @param sig the signature.
+     * @param band the band.
+     * @return the key.
+     */
+    private long key(int[] sig, int band) {
+        long h = band;
+        for (int i = band * rows; i < (band + 1) * rows; i++) h = h * 0x9e3779b97f4a7c15L + sig[i];
+        return h;
+    }
+
+    /**
+     * Method to add a page to the index, pages are added from several threads.
+     * A page without terms is never a candidate, so it is left out.
+     * @param doc the document id of the page.
+     * @param terms the ids of the terms of the page, each once.
+     */
+    synchronized void add(int doc, int[] terms) {
+        ++size;
+        if (terms.length == 0) return;
+        int[] sig = minHash.signature(terms);
+        for (int b = 0; b < bands; b++) buckets.get(b).computeIfAbsent(key(sig, b), k -> new ArrayList<>(2)).add(doc);
+    }
+
+    /**
+     * Method to get the pages that share a bucket with a query in at least one band.
+     * @param terms the ids of the terms of the query, each once.
+     * @param excludeDoc the document id of the query if it is in the corpus, or -1.
+     * @return the document ids of the pages, in increasing order.
+     */
+    synchronized int[] candidates(int[] terms, int excludeDoc) {
+        if (terms.length == 0) return new int[0];
+        int[] sig = minHash.signature(terms);
+        int[] found = new int[16];
+        int n = 0;
+        for (int b = 0; b < bands; b++) {
+            ArrayList<Integer> bucket = buckets.get(b).get(key(sig, b));
+            if (bucket == null) continue;
+            for (int doc : bucket) {
+                if (n == found.length) found = Arrays.copyOf(found, 2 * n);
+                found[n++] = doc;
+            }
+        }
+        Arrays.sort(found, 0, n);
+        int unique = 0;
+        for (int i = 0; i < n; i++) { // dropping the pages found in more than one band
+            if (found[i] == excludeDoc || (unique > 0 && found[unique - 1] == found[i])) continue;
+            found[unique++] = found[i];
+        }
+        return Arrays.copyOf(found, unique);
+    }
+}
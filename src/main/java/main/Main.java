@@ -4,41 +4,96 @@ import javafx.scene.Scene;
 import javafx.scene.control.*;
 import javafx.scene.layout.VBox;
 import javafx.stage.Stage;
-import org.jsoup.Jsoup;
-import org.jsoup.nodes.Document;
+import java.io.File;
 import java.io.IOException;
-import java.io.RandomAccessFile;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
 import javafx.application.Application;
 
 public class Main extends Application {
-    static Webpage[] getRandomPages(int size) throws IOException {
-        String randomWiki = "http://en.wikipedia.org/wiki/Special:Random";
-        Webpage[] pages = new Webpage[size];
-        for (int i = 0; i < pages.length; i++) {
-            Document d = Jsoup.connect(randomWiki).get();
-            String link = d.location();
-            String title = d.title();
-            RandomAccessFile file = new RandomAccessFile("/Users/jamielafarr/Java/365/projects/persistent/src/main/files/" + title + ".txt", "rw");
-            BTree tree = new BTree(file);
-            pages[i] = new Webpage(file, tree, link);
+    /**
+     * Directory holding the files of the pages and the corpus.
+     */
+    static final String FILES_DIR = "/Users/jamielafarr/Java/365/projects/persistent/src/main/files/";
+    /**
+     * Amount of related pages shown for a link.
+     */
+    static final int RELATED_PAGES = 10;
+    /**
+     * Amount of random pages in the corpus when no saved pages are given.
+     */
+    static final int CORPUS_SIZE = 100;
+
+    /**
+     * Method to get where the corpus is read from.
+     * @param args the command line arguments, the first of which may be
+     * an HTML file or a directory of saved pages.
+     * @return a source of the saved pages if one is given, or of random wikipedia pages otherwise.
+     */
+    static DocumentSource getSource(List<String> args) {
+        if (args.isEmpty()) return new WikipediaSource(CORPUS_SIZE);
+        return new HtmlFileSource(new File(args.get(0)));
+    }
+
+    /**
+     * Method to get the corpus of a source, opening the one built by an earlier run
+     * if there is one, so that the pages do not have to be fetched again.
+     * @param source the source of the pages.
+     * @return the corpus of the pages.
+     * @throws IOException if the corpus could not be opened or built.
+     */
+    static Corpus loadCorpus(DocumentSource source) throws IOException {
+        Corpus corpus = Corpus.open(new File(FILES_DIR), source.toString());
+        if (corpus != null) return corpus;
+        return buildCorpus(source);
+    }
+
+    /**
+     * Method to build a corpus, where every page is fetched and parsed once.
+     * @param source the source of the pages.
+     * @return the corpus of the pages.
+     * @throws IOException if the pages could not be listed or the index could not be written.
+     */
+    static Corpus buildCorpus(DocumentSource source) throws IOException {
+        File dir = new File(FILES_DIR);
+        Corpus corpus = Corpus.create(dir, PersistentStatics.DEFAULT_PAGE_SIZE); // the pages are fetched again, so everything starts over
+        IngestionPipeline pipeline = new IngestionPipeline(source, new IngestionPipeline.ProgressListener() {
+            @Override
+            public void indexed(Webpage page, int done, int total) {
+                System.out.println("Indexed " + done + "/" + total + ": " + page.title);
+            }
+
+            @Override
+            public void failed(String location, Exception e) {
+                System.out.println("Skipped " + location + ": " + e);
+            }
+        });
+        try {
+            pipeline.run(corpus);
+            corpus.writeManifest(dir, source.toString());
+            return corpus;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("building the corpus was interrupted");
         }
-        return pages;
     }
     Stage curr;
     Scene s1, s2;
     public static void main(String[] args) throws IOException {
-        Webpage[] pages = getRandomPages(100);
-        for (Webpage w : pages) {
+        Corpus corpus = loadCorpus(getSource(Arrays.asList(args)));
+        for (Webpage w : corpus.pages) {
             System.out.println("Title: " + w.title);
             System.out.println("Link: " + w.link);
-            w.addAllWordsToTree();
         }
 //        Application.launch(args);
     }
 
     @Override
     public void start(Stage stage) throws Exception {
-        Webpage[] pages = getRandomPages(100);
+        Corpus corpus = loadCorpus(getSource(getParameters().getRaw()));
         stage.setTitle("TF-IDF");
         curr = stage;
         Label link = new Label("Link");
@@ -50,18 +105,20 @@ public class Main extends Application {
         b.setOnAction(e -> {
             String l = f.getText();
             try {
-                RandomAccessFile inputFile = new RandomAccessFile("/Users/jamielafarr/Java/365/projects/persistent/src/main/files/" + l + ".txt", "rw");
-                BTree t = new BTree(inputFile);
-                Webpage userInput = new Webpage(inputFile, t, l); // need file, tree, link
-                Webpage w = userInput.getBestMatch(pages);
-                Hyperlink hp = new Hyperlink();
-                hp.setText(w.link);
-                hp.setContentDisplay(ContentDisplay.BOTTOM);
-                Label after  = new Label("Try this page: ");
+                // the input is not part of the corpus, so its counts are only kept in memory and its new words get no id
+                Webpage userInput = new Webpage(new HashTermIndex(), corpus.dictionary, l);
+                ArrayList<Match> matches = userInput.getBestMatches(corpus, RELATED_PAGES, ForkJoinPool.commonPool());
+                Label after  = new Label(matches.isEmpty() ? "No similar page found" : "Try these pages: ");
                 after.setContentDisplay(ContentDisplay.TOP);
                 VBox v2 = new VBox();
-                v2.getChildren().addAll(after, hp);
-                s2 = new Scene(v2, 200, 200);
+                v2.getChildren().add(after);
+                for (Match m : matches) {
+                    Hyperlink hp = new Hyperlink();
+                    hp.setText(m.page.link);
+                    hp.setContentDisplay(ContentDisplay.BOTTOM);
+                    v2.getChildren().add(hp);
+                }
+                s2 = new Scene(v2, 400, 400);
                 curr.setScene(s2);
             } catch (IOException ex) {
                 ex.printStackTrace();
@@ -0,0 +1,124 @@
+package main;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+
+/**
+ * Page store that memory maps the file in fixed size segments, so that pages
+ * are copied straight out of and into the OS page cache without a system call.
+ * The file grows by a whole segment the first time a page past its end is touched.
+ */
+public class MappedPageStore implements PageStore {
+    /**
+     * Default amount of pages in one mapped segment.
+     */
+    static final int DEFAULT_SEGMENT_PAGES = 1024;
+    /**
+     * The file on disk that will contain the pages.
+     */
+    RandomAccessFile file;
+    /**
+     * The file channel the segments are mapped from.
+     */
+    FileChannel channel;
+    /**
+     * Size of a page in bytes.
+     */
+    int pageSize;
+    /**
+     * Amount of pages in one segment.
+     */
+    int segmentPages;
+    /**
+     * The segments that have been mapped so far, segment i holds the
+     * pages from i * segmentPages up to (i + 1) * segmentPages.
+     */
+    ArrayList<MappedByteBuffer> segments;
+
+    MappedPageStore(RandomAccessFile aFile, int aPageSize) throws IOException {
+        this(aFile, aPageSize, DEFAULT_SEGMENT_PAGES);
+    }
+
+    MappedPageStore(RandomAccessFile aFile, int aPageSize, int aSegmentPages) throws IOException {
+        file = aFile;
+        channel = file.getChannel();
+        pageSize = aPageSize;
+        segmentPages = aSegmentPages;
+        segments = new ArrayList<>();
+        long existing = (channel.size() + segmentBytes() - 1) / segmentBytes();
+        for (int i = 0; i < existing; i++) segments.add(mapSegment(i)); // mapping what is already in the file
+    }
+
+    /**
+     * Method to get the size of one segment in bytes.
+     * @return the size of a segment.
+     */
+    long segmentBytes() {
+        return (long) segmentPages * pageSize;
+    }
+
+    /**
+     * Method to map a segment of the file, growing the file if it is not long enough.
+     * @param index the index of the segment.
+     * @return the mapping of the segment.
+     * @throws IOException if the file could not be mapped.
+     */
+    MappedByteBuffer mapSegment(int index) throws IOException {
+        return channel.map(FileChannel.MapMode.READ_WRITE, index * segmentBytes(), segmentBytes());
+    }
+
+    /**
+     * Method to get the part of a segment that holds a page.
+     * @param id the id of the page.
+     * @return a buffer over the page, starting at index 0.
+     * @throws IOException if a new segment had to be mapped and could not be.
+     */
+    ByteBuffer slice(long id) throws IOException {
+        int offset = (int) (id % segmentPages) * pageSize;
+        return segment((int) (id / segmentPages)).slice(offset, pageSize); // a slice has its own position, so threads do not share one
+    }
+
+    /**
+     * Method to get a segment, mapping it and every segment before it that is not mapped yet.
+     * @param index the index of the segment.
+     * @return the mapping of the segment.
+     * @throws IOException if a new segment had to be mapped and could not be.
+     */
+    synchronized MappedByteBuffer segment(int index) throws IOException {
+        while (segments.size() <= index) segments.add(mapSegment(segments.size()));
+        return segments.get(index);
+    }
+
+    @Override
+    public void read(long id, ByteBuffer page) throws IOException {
+        ByteBuffer src = slice(id);
+        src.limit(page.remaining());
+        page.put(src);
+    }
+
+    @Override
+    public void write(long id, ByteBuffer page) throws IOException {
+        slice(id).put(page);
+    }
+
+    @Override
+    public int pageSize() {
+        return pageSize;
+    }
+
+    @Override
+    public synchronized void sync() {
+        for (MappedByteBuffer segment : segments) segment.force();
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        for (MappedByteBuffer segment : segments) segment.force();
+        segments.clear();
+        file.close();
+    }
+}
@@ -0,0 +1,20 @@
+package main;
+
+/**
+ * A webpage from the corpus along with how similar it is to a query.
+ */
+public class Match {
+    /**
+     * The matching webpage.
+     */
+    Webpage page;
+    /**
+     * The cosine similarity between the webpage and the query.
+     */
+    double score;
+
+    Match(Webpage aPage, double aScore) {
+        page = aPage;
+        score = aScore;
+    }
+}
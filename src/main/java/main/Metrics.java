@@ -0,0 +1,161 @@
+package main;
+
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counters and latency histograms of the b-trees and the ranking, kept with
+ * striped adders so that they are cheap to update from many threads at once.
+ * Every tree and ranker reports to GLOBAL unless it is given its own instance,
+ * so the counters of a corpus add up the trees of all of its pages.
+ * See TreeEvents for the per operation events given to the flight recorder.
+ */
+public class Metrics {
+    /**
+     * The metrics trees and rankers report to by default.
+     */
+    static final Metrics GLOBAL = new Metrics();
+    /**
+     * Amount of nodes read from their page.
+     */
+    LongAdder diskReads;
+    /**
+     * Amount of nodes written to their page.
+     */
+    LongAdder diskWrites;
+    /**
+     * Amount of bytes read from pages.
+     */
+    LongAdder bytesRead;
+    /**
+     * Amount of bytes written to pages.
+     */
+    LongAdder bytesWritten;
+    /**
+     * Amount of buffer pool lookups that found the node in the pool.
+     */
+    LongAdder cacheHits;
+    /**
+     * Amount of buffer pool lookups that had to read the node.
+     */
+    LongAdder cacheMisses;
+    /**
+     * Amount of nodes evicted from a buffer pool.
+     */
+    LongAdder evictions;
+    /**
+     * Amount of page reads that found the page in a page cache.
+     */
+    LongAdder pageCacheHits;
+    /**
+     * Amount of page reads that did not find the page in a page cache.
+     */
+    LongAdder pageCacheMisses;
+    /**
+     * Amount of nodes split, root splits included.
+     */
+    LongAdder splits;
+    /**
+     * Amount of times a root was split, each of which made its tree one level taller.
+     */
+    LongAdder rootSplits;
+    /**
+     * Amount of pages scored against a query.
+     */
+    LongAdder scored;
+    /**
+     * Amount of term lookups a Bloom filter answered without going to the term's index.
+     */
+    LongAdder filtered;
+    /**
+     * Height of the tallest tree an operation has gone down, in levels.
+     */
+    LongAccumulator height;
+    /**
+     * Latencies of BTree.insert.
+     */
+    LatencyHistogram insert;
+    /**
+     * Latencies of BTree.search.
+     */
+    LatencyHistogram search;
+    /**
+     * Latencies of finding the best matches of a query, as done by Webpage.getBestMatch.
+     */
+    LatencyHistogram match;
+
+    Metrics() {
+        diskReads = new LongAdder();
+        diskWrites = new LongAdder();
+        bytesRead = new LongAdder();
+        bytesWritten = new LongAdder();
+        cacheHits = new LongAdder();
+        cacheMisses = new LongAdder();
+        evictions = new LongAdder();
+        pageCacheHits = new LongAdder();
+        pageCacheMisses = new LongAdder();
+        splits = new LongAdder();
+        rootSplits = new LongAdder();
+        scored = new LongAdder();
+        filtered = new LongAdder();
+        height = new LongAccumulator(Math::max, 0);
+        insert = new LatencyHistogram();
+        search = new LatencyHistogram();
+        match = new LatencyHistogram();
+    }
+
+    /**
+     * Method to get the share of buffer pool lookups that found the node in the pool.
+     * @return the hit ratio, or 0 if nothing was looked up.
+     */
+    double hitRatio() {
+        long hits = cacheHits.sum();
+        long lookups = hits + cacheMisses.sum();
+        return lookups == 0 ? 0 : (double) hits / lookups;
+    }
+
+    /**
+     * Method to set every counter and histogram back to zero.
+     */
+    void reset() {
+        diskReads.reset();
+        diskWrites.reset();
+        bytesRead.reset();
+        bytesWritten.reset();
+        cacheHits.reset();
+        cacheMisses.reset();
+        evictions.reset();
+        pageCacheHits.reset();
+        pageCacheMisses.reset();
+        splits.reset();
+        rootSplits.reset();
+        scored.reset();
+        filtered.reset();
+        height.reset();
+        insert.reset();
+        search.reset();
+        match.reset();
+    }
+
+    /**
+     * Method to describe the metrics, one line for the counters and one for each histogram.
+     * @return the description.
+     */
+    String report() {
+        return "diskReads=" + diskReads.sum() + " diskWrites=" + diskWrites.sum()
+                + " bytesRead=" + bytesRead.sum() + " bytesWritten=" + bytesWritten.sum()
+                + " cacheHits=" + cacheHits.sum() + " cacheMisses=" + cacheMisses.sum()
+                + " hitRatio=" + String.format("%.3f", hitRatio()) + " evictions=" + evictions.sum()
+                + " pageCacheHits=" + pageCacheHits.sum() + " pageCacheMisses=" + pageCacheMisses.sum()
+                + " splits=" + splits.sum() + " rootSplits=" + rootSplits.sum()
+                + " height=" + height.get() + " scored=" + scored.sum() + " filtered=" + filtered.sum() + "\n"
+                + "insert: " + insert + "\n"
+                + "search: " + search + "\n"
+                + "match: " + match;
+    }
+
+    @Override
+    public String toString() {
+        return report();
+    }
+}
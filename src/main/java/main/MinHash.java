@@ -0,0 +1,81 @@
+package main;
+
+import java.util.Random;
+
+/**
+ * MinHash signatures of sets of term ids. Every one of the hash functions maps the
+ * terms of a set to 32 bit values and keeps the smallest, so two sets agree on a
+ * value of their signatures about as often as their Jaccard similarity.
+ */
+public class MinHash {
+    /**
+     * Multipliers of the hash functions, all odd.
+     */
+    long[] multipliers;
+    /**
+     * Values added by the hash functions.
+     */
+    long[] offsets;
+
+    /**
+     * Constructor for a family of hash functions drawn from a seed, signatures are only
+     * comparable between instances built with the same amount of functions and seed.
+     * @param numHashes the amount of values of a signature.
+     * @param seed the seed the hash functions are drawn from.
+     */
+    MinHash(int numHashes, long seed) {
+        Random random = new Random(seed);
+        multipliers = new long[numHashes];
+        offsets = new long[numHashes];
+        for (int i = 0; i < numHashes; i++) {
+            multipliers[i] = random.nextLong() | 1;
+            offsets[i] = random.nextLong();
+        }
+    }
+
+    /**
+     * Method to get the amount of values of a signature.
+     * @return the amount of hash functions.
+     */
+    int size() {
+        return multipliers.length;
+    }
+
+    /**
+     * Method to get the signature of a set of terms.
+     * @param terms the ids of the terms, each once.
+     * @return the smallest value of every hash function over the terms,
+     * all Integer.MAX_VALUE for an empty set.
+     */
+    int[] signature(int[] terms) {
+        int[] sig = new int[multipliers.length];
+        for (int i = 0; i < sig.length; i++) {
+            long a = multipliers[i];
+            long b = offsets[i];
+            int min = Integer.MAX_VALUE;
+            for (int term : terms) {
+                long h = term * a + b;
+                h ^= h >>> 29;
+                h *= 0xbf58476d1ce4e5b9L;
+                int v = (int) (h >>> 33); // the upper bits mix best, and stay positive
+                if (v < min) min = v;
+            }
+            sig[i] = min;
+        }
+        return sig;
+    }
+
+    /**
+     * Method to estimate the Jaccard similarity of two sets from their signatures.
+     * @param a the signature of the first set.
+     * @param b the signature of the second set.
+     * @return the share of values the signatures agree on.
+     */
+    static double similarity(int[] a, int[] b) {
+        int same = 0;
+        for (int i = 0; i < a.length; i++) {
+            if (a[i] == b[i]) same++;
+        }
+        return (double) same / a.length;
+    }
+}
@@ -4,19 +4,6 @@ package main;
  * Object that will act as the blocks of the b-tree.
  */
 public class Node {
-    /**
-     * T in the function for both max keys (2T - 1) and max children (2T)
-     * for any given node in the tree.
-     */
-    static final int T = 16;
-    /**
-     * Maximum amount of children any given node may have.
-     */
-    static final int MAX_CHILDREN = 2 * T;
-    /**
-     * Maximum entries (keys) any given node may have.
-     */
-    static final int MAX_ENTRIES = (2 * T) - 1;
     /**
      * Array for the entries (keys) that a node contains.
      */
@@ -38,9 +25,14 @@ public class Node {
      */
     int numEntries;
 
-    Node(long aId) {
-        entries = new Entry[MAX_ENTRIES];
-        children = new Node[MAX_CHILDREN];
+    /**
+     * Constructor for an empty leaf node.
+     * @param aId the id of the node.
+     * @param t T of the tree, the node has room for 2T - 1 entries and 2T children.
+     */
+    Node(long aId, int t) {
+        entries = new Entry[(2 * t) - 1];
+        children = new Node[2 * t];
         leaf = true;
         numEntries = 0;
         id = aId;
@@ -48,4 +40,41 @@ public class Node {
 
     Node() { // only being used for disk read.
     }
+
+    /**
+     * Method to copy the node, so that it can be used after its latch is let go.
+     * @return a node with copies of the entries, and the same children.
+     */
+    Node copy() {
+        Node c = new Node();
+        c.id = id;
+        c.leaf = leaf;
+        c.numEntries = numEntries;
+        c.entries = new Entry[entries.length];
+        for (int i = 0; i < numEntries; i++) {
+            c.entries[i] = new Entry(entries[i].term);
+            c.entries[i].count = entries[i].count;
+        }
+        c.children = children.clone(); // a child only holds the id of the node it stands for
+        return c;
+    }
+
+    /**
+     * Method to binary search the entries of the node for a term.
+     * @param term the id of the term.
+     * @return the index of the entry holding the term, or -(i + 1) where i is the
+     * index the term would be inserted at, which is also the index of the child it would be under.
+     */
+    int find(int term) {
+        int lo = 0;
+        int hi = numEntries - 1;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            int key = entries[mid].term;
+            if (key < term) lo = mid + 1;
+            else if (key > term) hi = mid - 1;
+            else return mid;
+        }
+        return -(lo + 1);
+    }
 }
@@ -0,0 +1,149 @@
+package main;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Class that converts a node to and from its page on disk, so that
+ * a whole node can be written or read with a single IO call.
+ * The header of the page is the one described in PersistentStatics, the
+ * fanout of the tree is the largest that fits in the page size after it.
+ */
+public class NodeCodec {
+    /**
+     * Key that is written in place of an empty entry.
+     */
+    static final int NO_KEY = -1;
+    /**
+     * Id that is written in place of a missing child.
+     */
+    static final long NO_CHILD = -2;
+    /**
+     * Size of the pages in bytes.
+     */
+    int pageSize;
+    /**
+     * T of the tree, a node has at most 2T - 1 entries and 2T children.
+     */
+    int t;
+    /**
+     * Maximum amount of entries in a node.
+     */
+    int maxEntries;
+    /**
+     * Maximum amount of children of a node.
+     */
+    int maxChildren;
+    /**
+     * Starting index of a node's key array.
+     */
+    int keyOffset;
+    /**
+     * Starting index of a node's count array.
+     */
+    int countOffset;
+    /**
+     * Starting index of a node's children array.
+     */
+    int childrenOffset;
+
+    /**
+     * Constructor for the codec of pages of a given size.
+     * @param aPageSize the size of the pages, one of PersistentStatics.PAGE_SIZES.
+     * @throws IllegalArgumentException if the page size is not supported.
+     */
+    NodeCodec(int aPageSize) {
+        if (!isPageSize(aPageSize)) throw new IllegalArgumentException("unsupported page size: " + aPageSize);
+        pageSize = aPageSize;
+        t = fanout(aPageSize);
+        maxEntries = 2 * t - 1;
+        maxChildren = 2 * t;
+        keyOffset = PersistentStatics.HEADER_SIZE;
+        countOffset = keyOffset + PersistentStatics.INT_WIDTH * maxEntries;
+        childrenOffset = countOffset + PersistentStatics.INT_WIDTH * maxEntries;
+    }
+
+    /**
+     * Method to check whether a tree may be created with a page size.
+     * @param pageSize the page size.
+     * @return true if it is one of PersistentStatics.PAGE_SIZES, false otherwise.
+     */
+    static boolean isPageSize(int pageSize) {
+        for (int size : PersistentStatics.PAGE_SIZES) {
+            if (size == pageSize) return true;
+        }
+        return false;
+    }
+
+    /**
+     * Method to get the largest T whose full node still fits in a page.
+     * @param pageSize the page size.
+     * @return T for the page size.
+     */
+    static int fanout(int pageSize) {
+        // header + (2T - 1) entries + 2T children <= page size
+        int room = pageSize - PersistentStatics.HEADER_SIZE + PersistentStatics.ENTRY_SIZE;
+        return room / (2 * (PersistentStatics.ENTRY_SIZE + PersistentStatics.CHILD_SIZE));
+    }
+
+    /**
+     * Method to write the fields of the node into a page buffer.
+     * Will be in the order of header, keys, counts, children.
+     * @param n the node being encoded.
+     * @param page the buffer of pageSize bytes the node is
+     * written into, its position and limit are left untouched.
+     */
+    void encode(Node n, ByteBuffer page) {
+        page.putInt(PersistentStatics.MAGIC_OFFSET, PersistentStatics.PAGE_MAGIC);
+        page.putShort(PersistentStatics.VERSION_OFFSET, PersistentStatics.FORMAT_VERSION);
+        page.putShort(PersistentStatics.FLAGS_OFFSET, n.leaf ? PersistentStatics.LEAF_FLAG : 0);
+        page.putInt(PersistentStatics.PAGE_SIZE_OFFSET, pageSize);
+        page.putInt(PersistentStatics.NUM_ENTRIES_OFFSET, n.numEntries);
+        page.putLong(PersistentStatics.ID_OFFSET, n.id);
+        for (int i = 0; i < maxEntries; i++) {
+            Entry e = n.entries[i];
+            page.putInt(keyOffset + (PersistentStatics.INT_WIDTH * i), e == null ? NO_KEY : e.term);
+            page.putInt(countOffset + (PersistentStatics.INT_WIDTH * i), e == null ? 0 : e.count);
+        }
+        for (int k = 0; k < maxChildren; k++) {
+            int childOffset = childrenOffset + (PersistentStatics.LONG_WIDTH * k);
+            if (n.children[k] == null) page.putLong(childOffset, NO_CHILD);
+            else page.putLong(childOffset, n.children[k].id);
+        }
+    }
+
+    /**
+     * Method to read the fields of a node from a page buffer.
+     * @param page the buffer of pageSize bytes holding the node.
+     * @return a copy of the node stored in the page.
+     * @throws IOException if the page is not a node of this format and page size.
+     */
+    Node decode(ByteBuffer page) throws IOException {
+        if (page.getInt(PersistentStatics.MAGIC_OFFSET) != PersistentStatics.PAGE_MAGIC)
+            throw new IOException("not a b-tree page");
+        short version = page.getShort(PersistentStatics.VERSION_OFFSET);
+        if (version != PersistentStatics.FORMAT_VERSION)
+            throw new IOException("unsupported page format version: " + version);
+        int size = page.getInt(PersistentStatics.PAGE_SIZE_OFFSET);
+        if (size != pageSize) throw new IOException("page size is " + size + ", expected " + pageSize);
+        Node n = new Node();
+        n.id = page.getLong(PersistentStatics.ID_OFFSET);
+        n.numEntries = page.getInt(PersistentStatics.NUM_ENTRIES_OFFSET);
+        n.leaf = (page.getShort(PersistentStatics.FLAGS_OFFSET) & PersistentStatics.LEAF_FLAG) != 0;
+        n.entries = new Entry[maxEntries];
+        for (int i = 0; i < n.numEntries; i++) {
+            int term = page.getInt(keyOffset + (PersistentStatics.INT_WIDTH * i));
+            if (term == NO_KEY) continue;
+            n.entries[i] = new Entry(term);
+            n.entries[i].count = page.getInt(countOffset + (PersistentStatics.INT_WIDTH * i));
+        }
+        n.children = new Node[maxChildren];
+        for (int k = 0; !n.leaf && k < maxChildren; k++) {
+            long childId = page.getLong(childrenOffset + (PersistentStatics.LONG_WIDTH * k));
+            if (childId == NO_CHILD) continue;
+            n.children[k] = new Node();
+            n.children[k].id = childId;
+        }
+        return n;
+    }
+}
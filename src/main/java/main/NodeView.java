@@ -0,0 +1,98 @@
+package main;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Flyweight view over the page of a node, so that a lookup can go down the tree
+ * without decoding any node: the keys are binary searched where they are in the
+ * key area of the page, and a child's id is read straight from the children area.
+ * Each thread reuses one view and its page buffer for every lookup, so a lookup
+ * allocates nothing. The view is only valid until the next page is read into it.
+ */
+public class NodeView {
+    /**
+     * Codec giving the layout of the pages.
+     */
+    NodeCodec codec;
+    /**
+     * Buffer holding the page being viewed.
+     */
+    ByteBuffer page;
+    /**
+     * Amount of entries in the node being viewed.
+     */
+    int numEntries;
+    /**
+     * Whether the node being viewed is a leaf.
+     */
+    boolean leaf;
+
+    NodeView(NodeCodec aCodec) {
+        codec = aCodec;
+        page = ByteBuffer.allocate(codec.pageSize);
+    }
+
+    /**
+     * Method to read a page into the view.
+     * @param store the page store holding the page.
+     * @param id the id of the node.
+     * @throws IOException if the page could not be read or is not a node of this format and page size.
+     */
+    void read(PageStore store, long id) throws IOException {
+        page.clear();
+        store.read(id, page);
+        if (page.getInt(PersistentStatics.MAGIC_OFFSET) != PersistentStatics.PAGE_MAGIC
+                || page.getShort(PersistentStatics.VERSION_OFFSET) != PersistentStatics.FORMAT_VERSION
+                || page.getInt(PersistentStatics.PAGE_SIZE_OFFSET) != codec.pageSize)
+            throw new IOException("page " + id + " is not a b-tree page of this format");
+        numEntries = page.getInt(PersistentStatics.NUM_ENTRIES_OFFSET);
+        leaf = (page.getShort(PersistentStatics.FLAGS_OFFSET) & PersistentStatics.LEAF_FLAG) != 0;
+    }
+
+    /**
+     * Method to get the term id of an entry.
+     * @param i the index of the entry.
+     * @return the term id.
+     */
+    int key(int i) {
+        return page.getInt(codec.keyOffset + PersistentStatics.INT_WIDTH * i);
+    }
+
+    /**
+     * Method to get the count of an entry.
+     * @param i the index of the entry.
+     * @return the count.
+     */
+    int count(int i) {
+        return page.getInt(codec.countOffset + PersistentStatics.INT_WIDTH * i);
+    }
+
+    /**
+     * Method to get the id of a child.
+     * @param i the index of the child.
+     * @return the id of the child.
+     */
+    long child(int i) {
+        return page.getLong(codec.childrenOffset + PersistentStatics.LONG_WIDTH * i);
+    }
+
+    /**
+     * Method to binary search the keys of the node for a term.
+     * @param term the id of the term.
+     * @return the index of the entry holding the term, or -(i + 1) where i is the
+     * index of the child the term would be under.
+     */
+    int find(int term) {
+        int lo = 0;
+        int hi = numEntries - 1;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            int key = key(mid);
+            if (key < term) lo = mid + 1;
+            else if (key > term) hi = mid - 1;
+            else return mid;
+        }
+        return -(lo + 1);
+    }
+}
@@ -0,0 +1,252 @@
+package main;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * Cache of raw pages kept in direct memory, outside of the Java heap, so that the
+ * amount of pages cached is set by a byte budget and costs the garbage collector
+ * nothing. The memory is allocated up front as slabs of fixed size slots, each
+ * holding one page, and a page is only decoded into a node when it is read.
+ * Pages are looked up in an open addressing table of primitive longs and ints,
+ * and the slot to reuse is picked with the clock algorithm.
+ * A cache may be shared by several page stores, each keeps its pages under its own
+ * namespace (see register). Every method is synchronized, a page is copied in or
+ * out while holding the cache's lock.
+ */
+public class PageCache {
+    /**
+     * Largest size of one slab of direct memory.
+     */
+    static final int SLAB_BYTES = 1 << 26;
+    /**
+     * Bits of a key left for the id of the page, the namespace is in the bits above them.
+     */
+    static final int PAGE_BITS = 40;
+    /**
+     * Key of a slot or table entry that holds nothing.
+     */
+    static final long NO_KEY = -1;
+    /**
+     * Size of a page in bytes.
+     */
+    int pageSize;
+    /**
+     * Amount of slots in every slab.
+     */
+    int slotsPerSlab;
+    /**
+     * The slabs of direct memory.
+     */
+    ArrayList<ByteBuffer> slabs;
+    /**
+     * The key of the page in every slot, or NO_KEY.
+     */
+    long[] slotKeys;
+    /**
+     * Whether every slot was used since the clock hand last went past it.
+     */
+    boolean[] referenced;
+    /**
+     * The next slot the clock hand looks at.
+     */
+    int hand;
+    /**
+     * Keys of the lookup table, or NO_KEY.
+     */
+    long[] keys;
+    /**
+     * Slots of the lookup table, by the index of their key.
+     */
+    int[] slots;
+    /**
+     * The last namespace handed out.
+     */
+    long namespaces;
+    /**
+     * Amount of reads that found the page in the cache.
+     */
+    long hits;
+    /**
+     * Amount of reads that did not find the page in the cache.
+     */
+    long misses;
+    /**
+     * Counters the cache reports its hits and misses to.
+     */
+    Metrics metrics;
+
+    /**
+     * Constructor for a cache taking up to a budget of direct memory.
+     * @param budgetBytes the amount of direct memory the pages may take.
+     * @param aPageSize the size of the pages, one of PersistentStatics.PAGE_SIZES.
+     * @throws IllegalArgumentException if the page size is not supported, or the budget is less than a page.
+     */
+    PageCache(long budgetBytes, int aPageSize) {
+        if (!NodeCodec.isPageSize(aPageSize)) throw new IllegalArgumentException("unsupported page size: " + aPageSize);
+        if (budgetBytes < aPageSize) throw new IllegalArgumentException("budget smaller than a page: " + budgetBytes);
+        pageSize = aPageSize;
+        slotsPerSlab = SLAB_BYTES / pageSize;
+        int numSlots = (int) Math.min(budgetBytes / pageSize, Integer.MAX_VALUE / 2);
+        slabs = new ArrayList<>();
+        for (int left = numSlots; left > 0; left -= slotsPerSlab) {
+            slabs.add(ByteBuffer.allocateDirect(Math.min(left, slotsPerSlab) * pageSize));
+        }
+        slotKeys = new long[numSlots];
+        Arrays.fill(slotKeys, NO_KEY);
+        referenced = new boolean[numSlots];
+        int tableSize = Integer.highestOneBit(numSlots) << 2; // at most half full
+        keys = new long[tableSize];
+        Arrays.fill(keys, NO_KEY);
+        slots = new int[tableSize];
+        metrics = Metrics.GLOBAL;
+    }
+
+    /**
+     * Method to get a namespace for the pages of a page store.
+     * @return the namespace, to be passed to key.
+     */
+    synchronized long register() {
+        return ++namespaces;
+    }
+
+    /**
+     * Method to get the key of a page.
+     * @param namespace the namespace of the page store.
+     * @param id the id of the page in the store.
+     * @return the key of the page in the cache.
+     */
+    static long key(long namespace, long id) {
+        return namespace << PAGE_BITS | id;
+    }
+
+    /**
+     * Method to get the amount of pages the cache can hold.
+     * @return the amount of slots.
+     */
+    int capacity() {
+        return slotKeys.length;
+    }
+
+    /**
+     * Method to find the index of a key in the lookup table.
+     * @param key the key.
+     * @return the index holding the key, or the empty index it would go in.
+     */
+    private int find(long key) {
+        int mask = keys.length - 1;
+        long h = key * 0x9e3779b97f4a7c15L;
+        int i = (int) (h ^ (h >>> 32)) & mask;
+        while (keys[i] != NO_KEY && keys[i] != key) i = (i + 1) & mask;
+        return i;
+    }
+
+    /**
+     * Method to remove a key from the lookup table, moving back the keys after it
+     * so that none of them is cut off from where its probe started.
+     * @param i the index of the key.
+     */
+    private void removeAt(int i) {
+        int mask = keys.length - 1;
+        int j = i;
+        while (true) {
+            j = (j + 1) & mask;
+            if (keys[j] == NO_KEY) break;
+            long h = keys[j] * 0x9e3779b97f4a7c15L;
+            int home = (int) (h ^ (h >>> 32)) & mask;
+            if (((j - home) & mask) >= ((j - i) & mask)) { // the key at j may move back to i
+                keys[i] = keys[j];
+                slots[i] = slots[j];
+                i = j;
+            }
+        }
+        keys[i] = NO_KEY;
+    }
+
+    /**
+     * Method to get a view of the memory of a slot.
+     * @param slot the slot.
+     * @return a buffer over the slot, from its first to its last byte.
+     */
+    private ByteBuffer slot(int slot) {
+        ByteBuffer slab = slabs.get(slot / slotsPerSlab).duplicate();
+        int start = (slot % slotsPerSlab) * pageSize;
+        slab.limit(start + pageSize).position(start);
+        return slab;
+    }
+
+    /**
+     * Method to copy a page out of the cache.
+     * @param key the key of the page.
+     * @param page the buffer the page is copied into, filled from its position up to its limit.
+     * @return true if the page was in the cache, false if the buffer was left as it was.
+     */
+    synchronized boolean read(long key, ByteBuffer page) {
+        int i = find(key);
+        if (keys[i] == NO_KEY) {
+            ++misses;
+            metrics.pageCacheMisses.increment();
+            return false;
+        }
+        ++hits;
+        metrics.pageCacheHits.increment();
+        int s = slots[i];
+        referenced[s] = true;
+        ByteBuffer src = slot(s);
+        src.limit(src.position() + Math.min(pageSize, page.remaining()));
+        page.put(src);
+        return true;
+    }
+
+    /**
+     * Method to copy a page into the cache, replacing the copy that was there or
+     * the page in the first slot the clock hand finds not used since it last went past.
+     * @param key the key of the page.
+     * @param page the buffer holding the page, from its position up to its limit, which is left unchanged.
+     */
+    synchronized void put(long key, ByteBuffer page) {
+        int i = find(key);
+        int s;
+        if (keys[i] != NO_KEY) {
+            s = slots[i];
+        } else {
+            s = victim();
+            if (slotKeys[s] != NO_KEY) removeAt(find(slotKeys[s]));
+            i = find(key); // the table may have moved since the first look
+            keys[i] = key;
+            slots[i] = s;
+            slotKeys[s] = key;
+        }
+        referenced[s] = true;
+        ByteBuffer dst = slot(s);
+        dst.put(page.duplicate());
+        while (dst.hasRemaining()) dst.put((byte) 0); // a short page reads back zero filled
+    }
+
+    /**
+     * Method to pick the slot a new page goes in.
+     * @return the slot.
+     */
+    private int victim() {
+        while (true) {
+            int s = hand;
+            hand = (hand + 1) % slotKeys.length;
+            if (slotKeys[s] == NO_KEY || !referenced[s]) return s;
+            referenced[s] = false; // a second chance
+        }
+    }
+
+    /**
+     * Method to drop a page from the cache.
+     * @param key the key of the page.
+     */
+    synchronized void invalidate(long key) {
+        int i = find(key);
+        if (keys[i] == NO_KEY) return;
+        int s = slots[i];
+        removeAt(i);
+        slotKeys[s] = NO_KEY;
+        referenced[s] = false;
+    }
+}
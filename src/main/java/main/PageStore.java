@@ -0,0 +1,55 @@
+package main;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Storage engine that the b-tree reads and writes its pages through.
+ * Every page has the same fixed size, and a node with a given id lives
+ * in the page with that id.
+ */
+public interface PageStore {
+    /**
+     * Method to read a page into a buffer.
+     * @param id the id of the page being read.
+     * @param page the buffer the page is read into, filled from its position
+     * up to its limit. Bytes past the end of the store read as zero.
+     * @throws IOException if there is an issue with reading the page.
+     */
+    void read(long id, ByteBuffer page) throws IOException;
+
+    /**
+     * Method to write a page from a buffer.
+     * @param id the id of the page being written.
+     * @param page the buffer holding the page, written from its position
+     * up to its limit.
+     * @throws IOException if there is an issue with writing the page.
+     */
+    void write(long id, ByteBuffer page) throws IOException;
+
+    /**
+     * Method to get the size of the pages of the store.
+     * @return the size of a page in bytes.
+     */
+    int pageSize();
+
+    /**
+     * Method to make sure every page written so far is on the disk.
+     * @throws IOException if the pages could not be forced to the disk.
+     */
+    void sync() throws IOException;
+
+    /**
+     * Method to mark the pages written so far as a consistent state of the tree,
+     * which is what a crash is recovered to. Stores without a log do nothing.
+     * @throws IOException if the commit could not be recorded.
+     */
+    default void commit() throws IOException {
+    }
+
+    /**
+     * Method to release the resources held by the store.
+     * @throws IOException if there is an issue with closing the underlying file.
+     */
+    void close() throws IOException;
+}
@@ -0,0 +1,55 @@
+package main;
+
+import org.jsoup.nodes.Document;
+
+import java.io.IOException;
+import java.util.TreeMap;
+
+/**
+ * A page that has been parsed and whose words have been counted,
+ * but that has not been written to a b-tree yet.
+ */
+public class ParsedPage {
+    /**
+     * The link to the page.
+     */
+    String link;
+    /**
+     * The title of the page.
+     */
+    String title;
+    /**
+     * The text of the paragraphs of the page.
+     */
+    String text;
+    /**
+     * The count of every normalized word in the body of the page, by term id.
+     */
+    TreeMap<Integer, Integer> counts;
+
+    /**
+     * Constructor for a page, whose words are given term ids as they are counted.
+     * @param doc the parsed page.
+     * @param dictionary the dictionary the words are given term ids by.
+     * @throws IOException if the dictionary could not save a new term.
+     */
+    ParsedPage(Document doc, TermDictionary dictionary) throws IOException {
+        this(doc, dictionary, true);
+    }
+
+    /**
+     * Constructor for a page, whose words may be left out if they do not have a term id yet.
+     * @param doc the parsed page.
+     * @param dictionary the dictionary the words are given term ids by.
+     * @param newTerms true to give the words without a term id one, false to only count
+     * the words that have one, so that the dictionary is left as it is.
+     * @throws IOException if the dictionary could not save a new term.
+     */
+    ParsedPage(Document doc, TermDictionary dictionary, boolean newTerms) throws IOException {
+        link = doc.location();
+        title = doc.title();
+        text = doc.getElementsByTag("p").text();
+        String body = doc.body().text();
+        counts = newTerms ? Tokenizer.count(body, dictionary) : Tokenizer.countKnown(body, dictionary);
+    }
+}
@@ -3,16 +3,22 @@ package main;
 /**
  * A container class for all the static variables having to do
  * with the persistent b-tree.
+ * The first page of a tree is its superblock, every other page holds a node and
+ * starts with a header of magic, format version, flags, page size,
+ * number of entries and id, followed by the key, count and children areas.
+ * The size of those areas depends on the page size the tree was created with,
+ * so their offsets are worked out by NodeCodec.
  */
 public class PersistentStatics {
     /**
-     * Fixed size of a given word on disk.
+     * Maximum length of a word, longer words are cut to this length when tokenized.
+     * Only there to keep junk such as encoded data out of the dictionary.
      */
-    static final int MAX_WORD_LEN = 32;
+    static final int MAX_WORD_LEN = 255;
     /**
-     * Maximum amount of entries in a Node's Entry[].
+     * The size of a short in bytes.
      */
-    static final int MAX_ENTRIES = 31;
+    static final int SHORT_WIDTH = 2;
     /**
      * The size of an int in bytes.
      */
@@ -22,59 +28,93 @@ public class PersistentStatics {
      */
     static final int LONG_WIDTH = 8;
     /**
-     * Maximum amount of children any give node may have (2T).
+     * Number every page starts with, "BTPG".
      */
-    static final int MAX_CHILDREN = 32;
+    static final int PAGE_MAGIC = 0x42545047;
     /**
-     * Size of a node's id array on disk.
+     * Version of the page format, the first format had no header.
      */
-    static final int ID_ARR_SIZE = LONG_WIDTH;
+    static final short FORMAT_VERSION = 2;
     /**
-     * Size of a node's number of entries array on disk.
+     * Flag set in a page's flags when its node is a leaf.
      */
-    static final int NUM_ENTRIES_ARR_SIZE = INT_WIDTH;
+    static final short LEAF_FLAG = 1;
     /**
-     * Size of a node's leaf array on disk.
+     * Page sizes a tree may be created with, each a multiple of the OS page
+     * so that no node straddles two OS pages.
      */
-    static final int LEAF_ARR_SIZE = INT_WIDTH;
+    static final int[] PAGE_SIZES = {4096, 8192, 16384};
     /**
-     * Size of a node's word array on disk.
+     * Page size of a tree when none is given.
      */
-    static final int WORD_ARR_SIZE = MAX_WORD_LEN * MAX_ENTRIES;
+    static final int DEFAULT_PAGE_SIZE = 4096;
     /**
-     * Size of a node's count array on disk.
+     * Starting index of a page's magic number.
      */
-    static final int COUNT_ARR_SIZE = INT_WIDTH * MAX_ENTRIES;
+    static final int MAGIC_OFFSET = 0;
     /**
-     * Size of a node's children array on disk.
+     * Starting index of a page's format version.
      */
-    static final int CHILDREN_ARR_SIZE = LONG_WIDTH * MAX_CHILDREN;
+    static final int VERSION_OFFSET = MAGIC_OFFSET + INT_WIDTH;
     /**
-     * Starting index of a node's id array on disk.
+     * Starting index of a page's flags.
      */
-    static final int ID_ARR_OFFSET = 0;
+    static final int FLAGS_OFFSET = VERSION_OFFSET + SHORT_WIDTH;
     /**
-     * Starting index of a node's number of entries array on disk.
+     * Starting index of a page's size.
      */
-    static final int NUM_ENTRIES_ARR_OFFSET = ID_ARR_OFFSET + ID_ARR_SIZE;
+    static final int PAGE_SIZE_OFFSET = FLAGS_OFFSET + SHORT_WIDTH;
     /**
-     * Starting index of a node's leaf array on disk.
+     * Starting index of a node's number of entries.
      */
-    static final int LEAF_ARR_OFFSET = NUM_ENTRIES_ARR_OFFSET + NUM_ENTRIES_ARR_SIZE;
+    static final int NUM_ENTRIES_OFFSET = PAGE_SIZE_OFFSET + INT_WIDTH;
     /**
-     * Starting index of a node's word array on disk.
+     * Starting index of a node's id.
      */
-    static final int WORD_ARR_OFFSET = LEAF_ARR_OFFSET + LEAF_ARR_SIZE;
+    static final int ID_OFFSET = NUM_ENTRIES_OFFSET + INT_WIDTH;
     /**
-     * Starting index of a node's count array on disk.
+     * Size of the header of a page, the key area starts right after it.
      */
-    static final int COUNT_ARR_OFFSET = WORD_ARR_OFFSET + WORD_ARR_SIZE;
+    static final int HEADER_SIZE = ID_OFFSET + LONG_WIDTH;
     /**
-     * Starting index of a node's children array on disk.
+     * Number the superblock of a tree starts with, "BTSB".
      */
-    static final int CHILDREN_ARR_OFFSET = COUNT_ARR_OFFSET + COUNT_ARR_SIZE;
+    static final int SUPERBLOCK_MAGIC = 0x42545342;
     /**
-     * Total size of a node on disk.
+     * Id of the page holding the superblock, the first page of every tree.
      */
-    static final int TOTAL_SIZE = CHILDREN_ARR_OFFSET + CHILDREN_ARR_SIZE;
+    static final long SUPERBLOCK_ID = 0;
+    /**
+     * Id written as the head of the free list while no page is free.
+     */
+    static final long NO_PAGE = -1;
+    /**
+     * Starting index of the superblock's root id, the superblock shares the
+     * magic, version and page size offsets of a node's header.
+     */
+    static final int SUPER_ROOT_OFFSET = PAGE_SIZE_OFFSET + INT_WIDTH;
+    /**
+     * Starting index of the superblock's amount of nodes.
+     */
+    static final int SUPER_NODE_COUNT_OFFSET = SUPER_ROOT_OFFSET + LONG_WIDTH;
+    /**
+     * Starting index of the superblock's head of the free list.
+     */
+    static final int SUPER_FREE_LIST_OFFSET = SUPER_NODE_COUNT_OFFSET + LONG_WIDTH;
+    /**
+     * Starting index of the superblock's amount of distinct terms.
+     */
+    static final int SUPER_DISTINCT_TERMS_OFFSET = SUPER_FREE_LIST_OFFSET + LONG_WIDTH;
+    /**
+     * Starting index of the superblock's total of all term counts.
+     */
+    static final int SUPER_TOTAL_TERMS_OFFSET = SUPER_DISTINCT_TERMS_OFFSET + LONG_WIDTH;
+    /**
+     * Size of an entry on disk, a term id and its count.
+     */
+    static final int ENTRY_SIZE = INT_WIDTH + INT_WIDTH;
+    /**
+     * Size of a child on disk, its id.
+     */
+    static final int CHILD_SIZE = LONG_WIDTH;
 }
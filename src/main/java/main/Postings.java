@@ -0,0 +1,58 @@
+package main;
+
+import java.util.Arrays;
+
+/**
+ * The documents that a term appears in, along with how many times
+ * it appears in each of them, in the order the documents were indexed.
+ */
+public class Postings {
+    /**
+     * Ids of the documents containing the term.
+     */
+    int[] docs;
+    /**
+     * Count of the term in each of the documents.
+     */
+    int[] counts;
+    /**
+     * Amount of documents containing the term.
+     */
+    int size;
+
+    Postings() {
+        docs = new int[4];
+        counts = new int[4];
+        size = 0;
+    }
+
+    Postings(int[] aDocs, int[] aCounts, int aSize) {
+        docs = aDocs;
+        counts = aCounts;
+        size = aSize;
+    }
+
+    /**
+     * Method to get the postings as they are now, which later documents are not added to.
+     * The arrays are shared, since add only writes past the size of the copy or into new arrays.
+     * @return the copy.
+     */
+    Postings snapshot() {
+        return new Postings(docs, counts, size);
+    }
+
+    /**
+     * Method to record that the term appears in a document.
+     * @param doc the id of the document.
+     * @param count the amount of times the term appears in it.
+     */
+    void add(int doc, int count) {
+        if (size == docs.length) {
+            docs = Arrays.copyOf(docs, size * 2);
+            counts = Arrays.copyOf(counts, size * 2);
+        }
+        docs[size] = doc;
+        counts[size] = count;
+        size++;
+    }
+}
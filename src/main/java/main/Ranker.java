@@ -0,0 +1,233 @@
+package main;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.PriorityQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Class that ranks the pages of a corpus by the cosine similarity of
+ * their TF-IDF vectors to a query, keeping only the best K. The pages
+ * can be scored in parallel on a fork-join pool. If the corpus has an
+ * LSH index, only the pages it finds for the query are scored, which is
+ * approximate: the recall method measures how many of the exact matches are kept.
+ */
+public class Ranker {
+    /**
+     * Amount of pages below which a part of the corpus is scored
+     * on one thread instead of being split further.
+     */
+    static final int PARALLEL_THRESHOLD = 256;
+    /**
+     * The corpus being ranked.
+     */
+    Corpus corpus;
+    /**
+     * The pool the pages are scored on, or null to score them on the calling thread.
+     */
+    ForkJoinPool pool;
+    /**
+     * Counters and latency histograms the ranker reports to.
+     */
+    Metrics metrics;
+    /**
+     * LSH index the candidates are taken from, or null to score every page that shares a term with the query.
+     */
+    LshIndex lsh;
+
+    Ranker(Corpus aCorpus) {
+        this(aCorpus, null);
+    }
+
+    Ranker(Corpus aCorpus, ForkJoinPool aPool) {
+        corpus = aCorpus;
+        pool = aPool;
+        metrics = Metrics.GLOBAL;
+        lsh = aCorpus.lsh;
+    }
+
+    /**
+     * Method to find the pages most similar to a query. Only the pages that share a
+     * term with the query are scored, and the best of them are kept in a heap of size k,
+     * so the corpus is never sorted and its order is left untouched.
+     * @param query the TF-IDF vector of the query.
+     * @param k the amount of matches to return.
+     * @param excludeDoc the document id of the query if it is in the corpus, or -1.
+     * @return the k best matches, from most to least similar.
+     */
+    ArrayList<Match> topK(TermVector query, int k, int excludeDoc) {
+        TreeEvents.Match event = new TreeEvents.Match();
+        event.begin();
+        long start = System.nanoTime();
+        TermVector[] vectors = corpus.vectors(); // first, the pages added after them are left out
+        int[] candidates = lsh != null ? lsh.candidates(query.terms, excludeDoc) : candidates(query, excludeDoc);
+        int known = candidates.length;
+        while (known > 0 && candidates[known - 1] >= vectors.length) known--;
+        if (known < candidates.length) candidates = Arrays.copyOf(candidates, known);
+        PriorityQueue<Match> best;
+        if (pool == null || candidates.length <= PARALLEL_THRESHOLD) best = score(query, k, candidates, 0, candidates.length, vectors);
+        else best = pool.invoke(new ScoreTask(query, k, candidates, 0, candidates.length, vectors));
+        ArrayList<Match> matches = sorted(best);
+        metrics.scored.add(candidates.length);
+        metrics.match.record(System.nanoTime() - start);
+        if (event.shouldCommit()) {
+            event.docId = excludeDoc;
+            event.candidates = candidates.length;
+            event.k = k;
+            event.commit();
+        }
+        return matches;
+    }
+
+    /**
+     * Method to get the pages that share at least one term with a query.
+     * @param query the TF-IDF vector of the query.
+     * @param excludeDoc the document id of the query if it is in the corpus, or -1.
+     * @return the document ids of the pages, in increasing order.
+     */
+    int[] candidates(TermVector query, int excludeDoc) {
+        boolean[] seen = new boolean[corpus.size()];
+        int count = 0;
+        for (int term : query.terms) {
+            Postings p = corpus.index.postings(term);
+            if (p == null) continue;
+            for (int i = 0; i < p.size; i++) {
+                int doc = p.docs[i];
+                if (doc >= seen.length || seen[doc] || doc == excludeDoc) continue; // added since the size was read
+                seen[doc] = true;
+                count++;
+            }
+        }
+        int[] candidates = new int[count];
+        for (int doc = 0, i = 0; doc < seen.length; doc++) {
+            if (seen[doc]) candidates[i++] = doc;
+        }
+        return candidates;
+    }
+
+    /**
+     * Method to measure how many of the exact matches of pages of the corpus the ranker finds,
+     * by ranking them as queries both with the ranker and with every page that shares a term.
+     * @param docs the document ids of the pages used as queries.
+     * @param k the amount of matches of each query.
+     * @return the share of the exact matches found, over all of the queries, or 1 if there were none.
+     */
+    double recall(int[] docs, int k) {
+        Ranker exact = new Ranker(corpus, pool);
+        exact.lsh = null;
+        exact.metrics = new Metrics(); // the exact ranking is not counted in the metrics of the ranker
+        long expected = 0, found = 0;
+        for (int doc : docs) {
+            TermVector query = corpus.vector(doc);
+            boolean[] matched = new boolean[corpus.size()];
+            for (Match m : topK(query, k, doc)) matched[m.page.docId] = true;
+            for (Match m : exact.topK(query, k, doc)) {
+                ++expected;
+                if (matched[m.page.docId]) ++found;
+            }
+        }
+        return expected == 0 ? 1 : (double) found / expected;
+    }
+
+    /**
+     * Method to score a range of the candidates on the calling thread.
+     * @param query the TF-IDF vector of the query.
+     * @param k the amount of matches to keep.
+     * @param candidates the document ids of the pages being scored.
+     * @param from the index of the first candidate in the range.
+     * @param to the index after the last candidate in the range.
+     * @param vectors the vectors of the corpus by document id.
+     * @return a heap of the best k matches in the range.
+     */
+    PriorityQueue<Match> score(TermVector query, int k, int[] candidates, int from, int to, TermVector[] vectors) {
+        PriorityQueue<Match> best = new PriorityQueue<>(k + 1, (a, b) -> Double.compare(a.score, b.score));
+        for (int i = from; i < to; i++) {
+            int doc = candidates[i];
+            offer(best, new Match(corpus.get(doc), query.cosine(vectors[doc])), k);
+        }
+        return best;
+    }
+
+    /**
+     * Task that scores a range of the candidates, splitting it in half until
+     * it is small enough, and merges the best matches of the two halves.
+     */
+    class ScoreTask extends RecursiveTask<PriorityQueue<Match>> {
+        /**
+         * Version of the serialized form, which ForkJoinTask has.
+         */
+        private static final long serialVersionUID = 1L;
+        /**
+         * The TF-IDF vector of the query.
+         */
+        TermVector query;
+        /**
+         * The amount of matches to keep.
+         */
+        int k;
+        /**
+         * The document ids of the pages being scored.
+         */
+        int[] candidates;
+        /**
+         * The index of the first candidate in the range.
+         */
+        int from;
+        /**
+         * The index after the last candidate in the range.
+         */
+        int to;
+        /**
+         * The vectors of the corpus by document id.
+         */
+        TermVector[] vectors;
+
+        ScoreTask(TermVector aQuery, int aK, int[] aCandidates, int aFrom, int aTo, TermVector[] aVectors) {
+            query = aQuery;
+            k = aK;
+            candidates = aCandidates;
+            from = aFrom;
+            to = aTo;
+            vectors = aVectors;
+        }
+
+        @Override
+        protected PriorityQueue<Match> compute() {
+            if (to - from <= PARALLEL_THRESHOLD) return score(query, k, candidates, from, to, vectors);
+            int mid = (from + to) >>> 1;
+            ScoreTask left = new ScoreTask(query, k, candidates, from, mid, vectors);
+            left.fork();
+            PriorityQueue<Match> best = new ScoreTask(query, k, candidates, mid, to, vectors).compute();
+            for (Match m : left.join()) offer(best, m, k); // merging the best of both halves
+            return best;
+        }
+    }
+
+    /**
+     * Method to add a match to a bounded min-heap, replacing the worst match if the heap is full.
+     * @param best the heap of the best matches so far.
+     * @param m the match being offered.
+     * @param k the size of the heap.
+     */
+    static void offer(PriorityQueue<Match> best, Match m, int k) {
+        if (best.size() < k) best.add(m);
+        else if (k > 0 && m.score > best.peek().score) {
+            best.poll();
+            best.add(m);
+        }
+    }
+
+    /**
+     * Method to empty a heap of matches into a list.
+     * @param best the heap of matches.
+     * @return the matches, from most to least similar.
+     */
+    static ArrayList<Match> sorted(PriorityQueue<Match> best) {
+        ArrayList<Match> matches = new ArrayList<>(best.size());
+        while (!best.isEmpty()) matches.add(best.poll());
+        Collections.reverse(matches);
+        return matches;
+    }
+}
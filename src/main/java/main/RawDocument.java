@@ -0,0 +1,21 @@
+package main;
+
+/**
+ * The unparsed HTML of a document, along with where it was loaded from.
+ */
+public class RawDocument {
+    /**
+     * The location of the document, used as its link and as the base
+     * for resolving relative links when it is parsed.
+     */
+    String location;
+    /**
+     * The HTML of the document.
+     */
+    String html;
+
+    RawDocument(String aLocation, String aHtml) {
+        location = aLocation;
+        html = aHtml;
+    }
+}
@@ -0,0 +1,95 @@
+package main;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Page store of a single b-tree inside a segment store. The pages of the tree
+ * are kept in extents of SegmentStore.EXTENT_PAGES consecutive pages, which
+ * are handed out by the segment store as the tree grows, so the page with a
+ * given id is found by looking up its extent.
+ */
+public class SegmentPageStore implements PageStore {
+    /**
+     * The segment store the pages live in.
+     */
+    SegmentStore segments;
+    /**
+     * The id of the tree in the segment store.
+     */
+    int tree;
+    /**
+     * The first page of each extent of the tree, in the segment store's numbering.
+     */
+    long[] extents;
+    /**
+     * Amount of extents the tree has.
+     */
+    int numExtents;
+
+    SegmentPageStore(SegmentStore aSegments, int aTree) {
+        segments = aSegments;
+        tree = aTree;
+        extents = new long[1];
+        numExtents = 0;
+    }
+
+    /**
+     * Method to add an extent to the end of the tree's extents.
+     * @param first the first page of the extent.
+     */
+    synchronized void addExtent(long first) {
+        if (numExtents == extents.length) extents = Arrays.copyOf(extents, 2 * numExtents);
+        extents[numExtents++] = first;
+    }
+
+    /**
+     * Method to find where a page of the tree is in the segment store.
+     * @param id the id of the page in the tree.
+     * @param allocate whether extents are added until the page exists.
+     * @return the page in the segment store, or -1 if the tree has no such page and allocate is false.
+     * @throws IOException if a new extent could not be recorded in the catalog.
+     */
+    synchronized long page(long id, boolean allocate) throws IOException {
+        long extent = id / SegmentStore.EXTENT_PAGES;
+        while (extent >= numExtents) {
+            if (!allocate) return -1;
+            addExtent(segments.allocate(this));
+        }
+        return extents[(int) extent] + id % SegmentStore.EXTENT_PAGES;
+    }
+
+    @Override
+    public void read(long id, ByteBuffer page) throws IOException {
+        long p = page(id, false);
+        if (p < 0) { // never written, reads as zero like the end of a file
+            while (page.hasRemaining()) page.put((byte) 0);
+            return;
+        }
+        segments.read(p, page);
+    }
+
+    @Override
+    public void write(long id, ByteBuffer page) throws IOException {
+        segments.write(page(id, true), page);
+    }
+
+    @Override
+    public int pageSize() {
+        return segments.pageSize;
+    }
+
+    @Override
+    public void sync() throws IOException {
+        segments.sync();
+    }
+
+    /**
+     * The segment files are shared with the other trees, so they stay
+     * open until the segment store is closed.
+     */
+    @Override
+    public void close() {
+    }
+}
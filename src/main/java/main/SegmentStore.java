@@ -0,0 +1,371 @@
+package main;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.HashMap;
+
+/**
+ * Storage shared by the b-trees of every page of a corpus. Instead of a file
+ * per tree, the pages of all trees live in a few large segment files, and each
+ * tree is given extents of consecutive pages as it grows. A catalog file records
+ * which extents belong to which tree, and which tree holds which document.
+ * The catalog starts with a magic number and format version, followed by an
+ * extent record (tree, index, first page) every time an extent is handed out
+ * and a document record (tree, document id, title, link, Bloom filter of its terms,
+ * whether its counts are in its tree) for every indexed page, so the filters of a corpus are in memory once it is opened.
+ * The pages of every tree may be kept in a page cache shared by all of them.
+ */
+public class SegmentStore {
+    /**
+     * Amount of pages in a segment file, a multiple of EXTENT_PAGES.
+     */
+    static final int SEGMENT_PAGES = 1 << 16;
+    /**
+     * Amount of consecutive pages handed to a tree at a time.
+     */
+    static final int EXTENT_PAGES = 8;
+    /**
+     * Name of the catalog file.
+     */
+    static final String CATALOG_FILE = "catalog.dat";
+    /**
+     * Prefix of the names of the segment files, followed by the segment's number.
+     */
+    static final String SEGMENT_PREFIX = "segment-";
+    /**
+     * Number the catalog starts with, "CATG".
+     */
+    static final int MAGIC = 0x43415447;
+    /**
+     * Version of the format of the catalog.
+     */
+    static final int VERSION = 3;
+    /**
+     * Type of a catalog record handing an extent to a tree.
+     */
+    static final byte EXTENT_RECORD = 1;
+    /**
+     * Type of a catalog record tying a document to a tree.
+     */
+    static final byte DOCUMENT_RECORD = 2;
+    /**
+     * Directory the segment files and catalog are in.
+     */
+    File dir;
+    /**
+     * Size of a page in bytes.
+     */
+    int pageSize;
+    /**
+     * The segment files that have been opened, by number, null for those not opened yet.
+     */
+    ArrayList<RandomAccessFile> segments;
+    /**
+     * The first page that has not been handed to a tree yet.
+     */
+    long nextPage;
+    /**
+     * The page stores of the trees, by tree id.
+     */
+    ArrayList<SegmentPageStore> trees;
+    /**
+     * The catalog entries by document id.
+     */
+    HashMap<Integer, CatalogEntry> documents;
+    /**
+     * The catalog file new records are appended to.
+     */
+    DataOutputStream catalog;
+    /**
+     * The cache the pages are kept in, or null to always read them from the segment files.
+     */
+    PageCache cache;
+    /**
+     * The namespace of the store's pages in the cache.
+     */
+    long namespace;
+
+    SegmentStore(File aDir, int aPageSize) throws IOException {
+        this(aDir, aPageSize, null);
+    }
+
+    /**
+     * Constructor for the segment store in a directory, the trees and
+     * documents already in its catalog are found again.
+     * @param aDir the directory of the segment files and catalog.
+     * @param aPageSize the size of the pages, one of PersistentStatics.PAGE_SIZES.
+     * @param aCache the cache the pages are kept in, or null to always read them from the segment files.
+     * @throws IOException if the catalog could not be read or opened for appending,
+     * or is not a catalog of this format.
+     * @throws IllegalArgumentException if the page size is not supported, or the cache is for pages of another size.
+     */
+    SegmentStore(File aDir, int aPageSize, PageCache aCache) throws IOException {
+        if (!NodeCodec.isPageSize(aPageSize)) throw new IllegalArgumentException("unsupported page size: " + aPageSize);
+        if (aCache != null && aCache.pageSize != aPageSize) throw new IllegalArgumentException("cache is for pages of " + aCache.pageSize + " bytes");
+        dir = aDir;
+        pageSize = aPageSize;
+        cache = aCache;
+        if (cache != null) namespace = cache.register();
+        segments = new ArrayList<>();
+        trees = new ArrayList<>();
+        documents = new HashMap<>();
+        nextPage = 0;
+        File file = new File(dir, CATALOG_FILE);
+        boolean fresh = file.length() == 0;
+        if (!fresh) {
+            long good = replay(file);
+            try (RandomAccessFile out = new RandomAccessFile(file, "rw")) {
+                out.getChannel().truncate(good); // new records follow the last whole one
+            }
+            fresh = good == 0;
+        }
+        catalog = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file, true)));
+        if (fresh) {
+            catalog.writeInt(MAGIC);
+            catalog.writeInt(VERSION);
+            catalog.flush();
+        }
+    }
+
+    /**
+     * Method to read back the records of the catalog. A record that was only partly
+     * written when the catalog was last closed is ignored.
+     * @param file the catalog file.
+     * @return where the last whole record ends, 0 if not even the header was written.
+     * @throws IOException if the catalog could not be read or is not a catalog of this format.
+     */
+    private long replay(File file) throws IOException {
+        long good = 0;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            if (in.readInt() != MAGIC) throw new IOException(file + " is not a segment catalog");
+            int version = in.readInt();
+            if (version != VERSION) throw new IOException("unsupported catalog version: " + version);
+            good = 2 * PersistentStatics.INT_WIDTH;
+            while (true) {
+                byte type = in.readByte();
+                int tree = in.readInt();
+                if (type == EXTENT_RECORD) {
+                    in.readInt(); // the extents of a tree are recorded in order
+                    long first = in.readLong();
+                    tree(tree).addExtent(first);
+                    nextPage = Math.max(nextPage, first + EXTENT_PAGES);
+                    good += 1 + 2 * PersistentStatics.INT_WIDTH + PersistentStatics.LONG_WIDTH;
+                } else if (type == DOCUMENT_RECORD) {
+                    int docId = in.readInt();
+                    String title = in.readUTF();
+                    String link = in.readUTF();
+                    BloomFilter filter = BloomFilter.read(in);
+                    boolean inTree = in.readBoolean();
+                    tree(tree);
+                    documents.put(docId, new CatalogEntry(docId, tree, title, link, filter, inTree));
+                    good += 1 + 4 * PersistentStatics.INT_WIDTH + utfSize(title) + utfSize(link)
+                            + (long) filter.words.length * PersistentStatics.LONG_WIDTH + 1;
+                } else {
+                    throw new IOException("unknown catalog record: " + type);
+                }
+            }
+        } catch (EOFException e) {
+            // reached the end of the catalog
+        }
+        return good;
+    }
+
+    /**
+     * Method to get a tree while replaying the catalog, adding the trees up to it if needed.
+     * @param tree the number of the tree.
+     * @return the tree's page store.
+     */
+    private SegmentPageStore tree(int tree) {
+        while (trees.size() <= tree) trees.add(new SegmentPageStore(this, trees.size()));
+        return trees.get(tree);
+    }
+
+    /**
+     * Method to get the amount of bytes DataOutput.writeUTF writes a string in.
+     * @param s the string.
+     * @return two bytes for the length, then one to three bytes for every char.
+     */
+    static int utfSize(String s) {
+        int size = PersistentStatics.SHORT_WIDTH;
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c >= 0x0001 && c <= 0x007F) size += 1;
+            else if (c > 0x07FF) size += 3;
+            else size += 2;
+        }
+        return size;
+    }
+
+    /**
+     * Method to delete the segment files and catalog in a directory.
+     * @param dir the directory.
+     */
+    static void delete(File dir) {
+        new File(dir, CATALOG_FILE).delete();
+        File[] files = dir.listFiles((d, name) -> name.startsWith(SEGMENT_PREFIX));
+        if (files == null) return;
+        for (File f : files) f.delete();
+    }
+
+    /**
+     * Method to start a new, empty tree in the store.
+     * @return the page store of the new tree.
+     */
+    synchronized SegmentPageStore create() {
+        SegmentPageStore tree = new SegmentPageStore(this, trees.size());
+        trees.add(tree);
+        return tree;
+    }
+
+    /**
+     * Method to get the page store of a tree that is already in the store.
+     * @param tree the id of the tree.
+     * @return the page store of the tree.
+     */
+    synchronized SegmentPageStore open(int tree) {
+        return trees.get(tree);
+    }
+
+    /**
+     * Method to hand the next extent to a tree, and record it in the catalog.
+     * @param tree the tree the extent is for.
+     * @return the first page of the extent.
+     * @throws IOException if the catalog could not be written.
+     */
+    synchronized long allocate(SegmentPageStore tree) throws IOException {
+        long first = nextPage;
+        nextPage += EXTENT_PAGES;
+        catalog.writeByte(EXTENT_RECORD);
+        catalog.writeInt(tree.tree);
+        catalog.writeInt(tree.numExtents);
+        catalog.writeLong(first);
+        return first;
+    }
+
+    /**
+     * Method to record in the catalog which tree holds a document.
+     * @param tree the page store of the document's tree.
+     * @param docId the document id of the webpage.
+     * @param title the title of the webpage.
+     * @param link the link to the webpage.
+     * @param filter Bloom filter over the term ids of the webpage.
+     * @param inTree whether the counts of the webpage are in its b-tree, or only in the corpus' inverted index.
+     * @throws IOException if the catalog could not be written.
+     */
+    synchronized void register(SegmentPageStore tree, int docId, String title, String link, BloomFilter filter, boolean inTree) throws IOException {
+        catalog.writeByte(DOCUMENT_RECORD);
+        catalog.writeInt(tree.tree);
+        catalog.writeInt(docId);
+        catalog.writeUTF(title);
+        catalog.writeUTF(link);
+        filter.write(catalog);
+        catalog.writeBoolean(inTree);
+        catalog.flush(); // the document's extents are written before it, so they are flushed too
+        documents.put(docId, new CatalogEntry(docId, tree.tree, title, link, filter, inTree));
+    }
+
+    /**
+     * Method to get the catalog entry of a document.
+     * @param docId the document id of the webpage.
+     * @return the entry, or null if the document is not in the catalog.
+     */
+    synchronized CatalogEntry document(int docId) {
+        return documents.get(docId);
+    }
+
+    /**
+     * Method to get the channel of a segment file, opening it if needed.
+     * @param segment the number of the segment.
+     * @return the channel of the segment file.
+     * @throws IOException if the segment file could not be opened.
+     */
+    private synchronized FileChannel channel(int segment) throws IOException {
+        while (segments.size() <= segment) segments.add(null);
+        RandomAccessFile file = segments.get(segment);
+        if (file == null) {
+            file = new RandomAccessFile(new File(dir, SEGMENT_PREFIX + segment + ".dat"), "rw");
+            segments.set(segment, file);
+        }
+        return file.getChannel();
+    }
+
+    /**
+     * Method to read a page into a buffer.
+     * @param page the page in the store's numbering.
+     * @param buf the buffer the page is read into, filled from its position up to its limit.
+     * Bytes past the end of a segment file read as zero.
+     * @throws IOException if there is an issue with reading the page.
+     */
+    void read(long page, ByteBuffer buf) throws IOException {
+        if (cache != null && cache.read(PageCache.key(namespace, page), buf)) return;
+        int start = buf.position();
+        FileChannel channel = channel((int) (page / SEGMENT_PAGES));
+        long pos = (page % SEGMENT_PAGES) * pageSize;
+        while (buf.hasRemaining()) {
+            int read = channel.read(buf, pos);
+            if (read < 0) break; // past the end of the file, the rest of the page stays zeroed
+            pos += read;
+        }
+        while (buf.hasRemaining()) buf.put((byte) 0);
+        if (cache != null) {
+            ByteBuffer read = buf.duplicate();
+            read.limit(buf.position()).position(start);
+            cache.put(PageCache.key(namespace, page), read);
+        }
+    }
+
+    /**
+     * Method to write a page from a buffer.
+     * @param page the page in the store's numbering.
+     * @param buf the buffer holding the page, written from its position up to its limit.
+     * @throws IOException if there is an issue with writing the page.
+     */
+    void write(long page, ByteBuffer buf) throws IOException {
+        ByteBuffer written = cache != null ? buf.duplicate() : null;
+        FileChannel channel = channel((int) (page / SEGMENT_PAGES));
+        long pos = (page % SEGMENT_PAGES) * pageSize;
+        while (buf.hasRemaining()) pos += channel.write(buf, pos);
+        if (written != null) cache.put(PageCache.key(namespace, page), written);
+    }
+
+    /**
+     * Method to make sure the catalog is written to its file.
+     * @throws IOException if the catalog could not be written.
+     */
+    synchronized void flush() throws IOException {
+        catalog.flush();
+    }
+
+    /**
+     * Method to make sure the catalog and every page written so far are on the disk.
+     * @throws IOException if the files could not be forced to the disk.
+     */
+    synchronized void sync() throws IOException {
+        catalog.flush();
+        for (RandomAccessFile file : segments) {
+            if (file != null) file.getChannel().force(false);
+        }
+    }
+
+    /**
+     * Method to close the catalog and every segment file.
+     * @throws IOException if a file could not be closed.
+     */
+    synchronized void close() throws IOException {
+        catalog.close();
+        for (RandomAccessFile file : segments) {
+            if (file != null) file.close();
+        }
+    }
+}
@@ -0,0 +1,139 @@
+package main;
+
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Term index that keeps the counts in a hash table in memory while the table is
+ * small, and in a b-tree once the table would take more than a given amount of memory.
+ * The b-tree is only made when the index spills, so a document whose vocabulary fits
+ * in memory never writes a page, and as long as the table is kept lookups never go to
+ * a tree. Flushing only writes the tree of an index that has spilled.
+ */
+public class SpillingTermIndex implements TermIndex {
+    /**
+     * Maker of the b-tree the index spills to.
+     */
+    interface TreeFactory {
+        /**
+         * Method to make the tree.
+         * @return the new, empty tree.
+         * @throws IOException if the tree could not be made.
+         */
+        BTree create() throws IOException;
+    }
+
+    /**
+     * The counts of every term, or null once the index has spilled to the tree.
+     */
+    HashTermIndex memory;
+    /**
+     * Maker of the b-tree the index spills to.
+     */
+    TreeFactory factory;
+    /**
+     * The b-tree the counts are in, or null while they are kept in memory.
+     */
+    BTree tree;
+    /**
+     * Amount of bytes the table may take before the index spills to the tree.
+     */
+    long spillBytes;
+
+    SpillingTermIndex(BTree aTree, long aSpillBytes) {
+        this(() -> aTree, aSpillBytes);
+    }
+
+    /**
+     * Constructor for an index that starts out in memory.
+     * @param aFactory maker of the b-tree the index spills to, only called when it spills.
+     * @param aSpillBytes amount of bytes the table may take before the index spills to the tree.
+     */
+    SpillingTermIndex(TreeFactory aFactory, long aSpillBytes) {
+        factory = aFactory;
+        spillBytes = aSpillBytes;
+        memory = new HashTermIndex();
+    }
+
+    /**
+     * Method to check whether the counts are still kept in memory.
+     * @return true if lookups are answered from memory, false if they go to the tree.
+     */
+    synchronized boolean inMemory() {
+        return memory != null;
+    }
+
+    @Override
+    public synchronized void insert(int term, int amount) throws IOException {
+        if (memory == null) {
+            tree.insert(term, amount);
+            return;
+        }
+        memory.insert(term, amount);
+        if (memory.bytes() > spillBytes) spill();
+    }
+
+    @Override
+    public synchronized void insertAll(int[] terms, int[] counts) throws IOException {
+        if (memory != null && memory.size() == 0 && HashTermIndex.bytesFor(terms.length) > spillBytes) {
+            tree = factory.create(); // too large from the start, the empty tree is bulk loaded
+            memory = null;
+        }
+        if (memory == null) tree.insertAll(terms, counts);
+        else TermIndex.super.insertAll(terms, counts);
+    }
+
+    /**
+     * Method to move the counts from the table into a new tree and drop the table.
+     * @throws IOException if the tree could not be made or written.
+     */
+    private void spill() throws IOException {
+        int[] terms = memory.sortedTerms();
+        int[] counts = new int[terms.length];
+        for (int i = 0; i < terms.length; i++) counts[i] = memory.count(terms[i]);
+        tree = factory.create();
+        tree.insertAll(terms, counts); // the tree is empty, so it is bulk loaded
+        memory = null;
+    }
+
+    @Override
+    public synchronized int count(int term) throws IOException {
+        return memory != null ? memory.count(term) : tree.count(term);
+    }
+
+    /**
+     * Method to get the count of a term, on the tree's IO executor once the index has spilled.
+     * The index is not held while the tree is read, an index that has spilled keeps its tree.
+     * @param term the id of the term.
+     * @return the future count, or 0 if the term is not in the index.
+     */
+    @Override
+    public CompletableFuture<Integer> countAsync(int term) {
+        BTree spilled;
+        synchronized (this) {
+            if (memory != null) return TermIndex.super.countAsync(term);
+            spilled = tree;
+        }
+        return spilled.countAsync(term);
+    }
+
+    @Override
+    public synchronized void forEach(TermCountSink sink) throws IOException {
+        if (memory != null) memory.forEach(sink);
+        else tree.forEach(sink);
+    }
+
+    @Override
+    public synchronized long size() {
+        return memory != null ? memory.size() : tree.size();
+    }
+
+    /**
+     * Method to write the tree of an index that has spilled, an index kept in memory has nothing to write.
+     * @throws IOException if the tree could not be written.
+     */
+    @Override
+    public synchronized void flush() throws IOException {
+        if (tree != null) tree.flush();
+    }
+}
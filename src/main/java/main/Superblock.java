@@ -0,0 +1,77 @@
+package main;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * The first page of a tree, which records what is needed to open the tree
+ * again without reading any of its nodes: the format version and page size,
+ * the id of the root, the amount of nodes, the head of the list of free pages,
+ * and the amount of distinct terms and total of all term counts in the tree.
+ * The layout is the one described in PersistentStatics.
+ */
+public class Superblock {
+    /**
+     * Size of a page of the tree in bytes.
+     */
+    int pageSize;
+    /**
+     * The id of the root node.
+     */
+    long rootId;
+    /**
+     * Amount of nodes in the tree.
+     */
+    long nodeCount;
+    /**
+     * The id of the first free page, or PersistentStatics.NO_PAGE if there is none.
+     */
+    long freeList;
+    /**
+     * Amount of distinct terms in the tree.
+     */
+    long distinctTerms;
+    /**
+     * Total of the counts of every term in the tree.
+     */
+    long totalTerms;
+
+    /**
+     * Method to write the superblock into a page buffer.
+     * @param page the buffer of pageSize bytes the superblock is written into,
+     * its position and limit are left untouched.
+     */
+    void encode(ByteBuffer page) {
+        for (int i = 0; i < page.capacity(); i += PersistentStatics.LONG_WIDTH) page.putLong(i, 0);
+        page.putInt(PersistentStatics.MAGIC_OFFSET, PersistentStatics.SUPERBLOCK_MAGIC);
+        page.putShort(PersistentStatics.VERSION_OFFSET, PersistentStatics.FORMAT_VERSION);
+        page.putInt(PersistentStatics.PAGE_SIZE_OFFSET, pageSize);
+        page.putLong(PersistentStatics.SUPER_ROOT_OFFSET, rootId);
+        page.putLong(PersistentStatics.SUPER_NODE_COUNT_OFFSET, nodeCount);
+        page.putLong(PersistentStatics.SUPER_FREE_LIST_OFFSET, freeList);
+        page.putLong(PersistentStatics.SUPER_DISTINCT_TERMS_OFFSET, distinctTerms);
+        page.putLong(PersistentStatics.SUPER_TOTAL_TERMS_OFFSET, totalTerms);
+    }
+
+    /**
+     * Method to read a superblock from a page buffer.
+     * @param page the buffer holding the first page of a tree.
+     * @return the superblock stored in the page.
+     * @throws IOException if the page is not a superblock of this format.
+     */
+    static Superblock decode(ByteBuffer page) throws IOException {
+        if (page.getInt(PersistentStatics.MAGIC_OFFSET) != PersistentStatics.SUPERBLOCK_MAGIC)
+            throw new IOException("not a b-tree superblock");
+        short version = page.getShort(PersistentStatics.VERSION_OFFSET);
+        if (version != PersistentStatics.FORMAT_VERSION)
+            throw new IOException("unsupported page format version: " + version);
+        Superblock s = new Superblock();
+        s.pageSize = page.getInt(PersistentStatics.PAGE_SIZE_OFFSET);
+        s.rootId = page.getLong(PersistentStatics.SUPER_ROOT_OFFSET);
+        s.nodeCount = page.getLong(PersistentStatics.SUPER_NODE_COUNT_OFFSET);
+        s.freeList = page.getLong(PersistentStatics.SUPER_FREE_LIST_OFFSET);
+        s.distinctTerms = page.getLong(PersistentStatics.SUPER_DISTINCT_TERMS_OFFSET);
+        s.totalTerms = page.getLong(PersistentStatics.SUPER_TOTAL_TERMS_OFFSET);
+        return s;
+    }
+}
@@ -0,0 +1,228 @@
+package main;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+
+/**
+ * Corpus wide dictionary giving every normalized term a compact int id, so
+ * that the b-trees and the inverted index store and compare ids instead of
+ * strings. Ids are handed out in the order terms are first seen, starting at 0.
+ * Each term is appended to the dictionary's file once, when it gets its id,
+ * and the file is replayed when the dictionary is opened.
+ * The file starts with a magic number and format version, then holds one
+ * record per term: the amount of UTF-8 bytes it shares with the term before it,
+ * the amount of bytes that follow, and those bytes. Both amounts are varints.
+ */
+public class TermDictionary {
+    /**
+     * The id of every term.
+     */
+    HashMap<String, Integer> ids;
+    /**
+     * The terms by id.
+     */
+    ArrayList<String> terms;
+    /**
+     * The file new terms are appended to, or null if the dictionary is only in memory.
+     */
+    DataOutputStream log;
+    /**
+     * The UTF-8 bytes of the last term in the file, the next one is written as a suffix of it.
+     */
+    byte[] last;
+    /**
+     * Number the file starts with, "TDIC".
+     */
+    static final int MAGIC = 0x54444943;
+    /**
+     * Version of the format of the file.
+     */
+    static final int VERSION = 1;
+
+    TermDictionary() {
+        ids = new HashMap<>();
+        terms = new ArrayList<>();
+        last = new byte[0];
+    }
+
+    /**
+     * Constructor for a dictionary persisted to a file, the terms already in
+     * the file get back the ids they had. A term that was only partly written is
+     * cut off the end of the file, so new terms follow the last whole one.
+     * @param file the file the dictionary is persisted to.
+     * @throws IOException if the file could not be read, cut or opened for appending,
+     * or is not a dictionary of this format.
+     */
+    TermDictionary(File file) throws IOException {
+        this();
+        boolean fresh = file.length() == 0;
+        if (!fresh) {
+            long good = 0; // where the last whole record ends, 0 if the header itself is torn
+            try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+                if (in.readInt() != MAGIC) throw new IOException(file + " is not a term dictionary");
+                int version = in.readInt();
+                if (version != VERSION) throw new IOException("unsupported term dictionary version: " + version);
+                good = 2 * PersistentStatics.INT_WIDTH;
+                while (true) {
+                    int shared = readVarInt(in);
+                    int suffix = readVarInt(in);
+                    byte[] bytes = Arrays.copyOf(last, shared + suffix);
+                    in.readFully(bytes, shared, suffix);
+                    add(new String(bytes, StandardCharsets.UTF_8));
+                    last = bytes;
+                    good += varIntSize(shared) + varIntSize(suffix) + suffix;
+                }
+            } catch (EOFException e) {
+                // reached the end of the terms
+            }
+            try (RandomAccessFile out = new RandomAccessFile(file, "rw")) {
+                out.getChannel().truncate(good);
+            }
+            fresh = good == 0;
+        }
+        log = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file, true)));
+        if (fresh) {
+            log.writeInt(MAGIC);
+            log.writeInt(VERSION);
+        }
+    }
+
+    /**
+     * Method to give a term the next id.
+     * @param term the term.
+     * @return the id of the term.
+     */
+    private int add(String term) {
+        int id = terms.size();
+        terms.add(term);
+        ids.put(term, id);
+        return id;
+    }
+
+    /**
+     * Method to get the id of a term, giving it one if it does not have one yet.
+     * @param term the normalized term.
+     * @return the id of the term.
+     * @throws IOException if a new term could not be appended to the file.
+     */
+    synchronized int id(String term) throws IOException {
+        Integer id = ids.get(term);
+        if (id != null) return id;
+        if (log != null) append(term);
+        return add(term);
+    }
+
+    /**
+     * Method to write a term to the end of the file, as the part that differs from the term before it.
+     * @param term the term.
+     * @throws IOException if the file could not be written.
+     */
+    private void append(String term) throws IOException {
+        byte[] bytes = term.getBytes(StandardCharsets.UTF_8);
+        int shared = 0;
+        int max = Math.min(bytes.length, last.length);
+        while (shared < max && bytes[shared] == last[shared]) shared++;
+        writeVarInt(log, shared);
+        writeVarInt(log, bytes.length - shared);
+        log.write(bytes, shared, bytes.length - shared);
+        last = bytes;
+    }
+
+    /**
+     * Method to write a non negative int in as few bytes as it needs, seven bits per byte.
+     * @param out the stream it is written to.
+     * @param v the int.
+     * @throws IOException if the stream could not be written.
+     */
+    static void writeVarInt(DataOutputStream out, int v) throws IOException {
+        while ((v & ~0x7F) != 0) {
+            out.writeByte((v & 0x7F) | 0x80);
+            v >>>= 7;
+        }
+        out.writeByte(v);
+    }
+
+    /**
+     * Method to get the amount of bytes writeVarInt writes an int in.
+     * @param v the int.
+     * @return the amount of bytes, 1 to 5.
+     */
+    static int varIntSize(int v) {
+        int size = 1;
+        while ((v & ~0x7F) != 0) {
+            size++;
+            v >>>= 7;
+        }
+        return size;
+    }
+
+    /**
+     * Method to read an int written by writeVarInt.
+     * @param in the stream it is read from.
+     * @return the int.
+     * @throws IOException if the stream could not be read.
+     */
+    static int readVarInt(DataInputStream in) throws IOException {
+        int v = 0;
+        for (int shift = 0; ; shift += 7) {
+            byte b = in.readByte();
+            v |= (b & 0x7F) << shift;
+            if (b >= 0) return v;
+        }
+    }
+
+    /**
+     * Method to get the id of a term without giving it one.
+     * @param term the normalized term.
+     * @return the id of the term, or -1 if the term has never been seen.
+     */
+    synchronized int lookup(String term) {
+        Integer id = ids.get(term);
+        return id == null ? -1 : id;
+    }
+
+    /**
+     * Method to get the term with an id.
+     * @param id the id of the term.
+     * @return the term.
+     */
+    synchronized String term(int id) {
+        return terms.get(id);
+    }
+
+    /**
+     * Method to get the amount of terms in the dictionary.
+     * @return the size of the dictionary.
+     */
+    synchronized int size() {
+        return terms.size();
+    }
+
+    /**
+     * Method to make sure every term given an id so far is written to the file.
+     * @throws IOException if the file could not be written.
+     */
+    synchronized void flush() throws IOException {
+        if (log != null) log.flush();
+    }
+
+    /**
+     * Method to close the file of the dictionary.
+     * @throws IOException if the file could not be closed.
+     */
+    synchronized void close() throws IOException {
+        if (log != null) log.close();
+    }
+}
@@ -0,0 +1,83 @@
+package main;
+
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * The count of every term of a document, by term id. Implemented by the b-tree,
+ * which keeps the counts on disk, and by an in-memory hash table for documents
+ * whose vocabulary fits in memory.
+ */
+public interface TermIndex {
+    /**
+     * Receiver of the terms of an index and their counts.
+     */
+    interface TermCountSink {
+        /**
+         * Method called for every term of the index.
+         * @param term the id of the term.
+         * @param count the count of the term.
+         * @throws IOException if the receiver could not handle the term.
+         */
+        void term(int term, int count) throws IOException;
+    }
+
+    /**
+     * Method to add occurrences of a term, adding the term if it is not in the index yet.
+     * @param term the id of the term.
+     * @param amount how many times the term is being inserted.
+     * @throws IOException if the index could not be written.
+     */
+    void insert(int term, int amount) throws IOException;
+
+    /**
+     * Method to add occurrences of several terms at once.
+     * @param terms the ids of the terms, in increasing order without duplicates.
+     * @param counts how many times each term is being inserted.
+     * @throws IOException if the index could not be written.
+     */
+    default void insertAll(int[] terms, int[] counts) throws IOException {
+        for (int i = 0; i < terms.length; i++) insert(terms[i], counts[i]);
+    }
+
+    /**
+     * Method to get the count of a term.
+     * @param term the id of the term.
+     * @return the count, or 0 if the term is not in the index.
+     * @throws IOException if the index could not be read.
+     */
+    int count(int term) throws IOException;
+
+    /**
+     * Method to get the count of a term without waiting for it to be read, for indexes that
+     * can read in the background. By default the count is looked up on the calling thread.
+     * @param term the id of the term.
+     * @return the future count, or 0 if the term is not in the index.
+     */
+    default CompletableFuture<Integer> countAsync(int term) {
+        try {
+            return CompletableFuture.completedFuture(count(term));
+        } catch (IOException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    /**
+     * Method to go through every term of the index and its count, in no particular order.
+     * @param sink the receiver of the terms.
+     * @throws IOException if the index could not be read, or the receiver failed.
+     */
+    void forEach(TermCountSink sink) throws IOException;
+
+    /**
+     * Method to get the amount of distinct terms in the index.
+     * @return the amount of terms.
+     */
+    long size();
+
+    /**
+     * Method to make sure the counts are written to wherever the index keeps them.
+     * @throws IOException if the index could not be written.
+     */
+    void flush() throws IOException;
+}
@@ -0,0 +1,74 @@
+package main;
+
+import java.util.Arrays;
+import java.util.Map;
+
+/**
+ * Sparse TF-IDF vector of a document, holding a weight only for the
+ * terms that appear in it, sorted by term.
+ */
+public class TermVector {
+    /**
+     * The ids of the terms of the document, in increasing order.
+     */
+    int[] terms;
+    /**
+     * The TF-IDF weight of each term.
+     */
+    double[] weights;
+    /**
+     * The euclidean length of the vector.
+     */
+    double norm;
+
+    TermVector(int[] aTerms, double[] aWeights) {
+        terms = aTerms;
+        weights = aWeights;
+        double sum = 0;
+        for (double w : weights) sum += w * w;
+        norm = Math.sqrt(sum);
+    }
+
+    /**
+     * Method to build the vector of a document from the counts of its terms.
+     * @param counts the count of every term in the document, by term id.
+     * @param index the index the inverse document frequencies are taken from.
+     * @return the TF-IDF vector of the document.
+     */
+    static TermVector of(Map<Integer, Integer> counts, InvertedIndex index) {
+        int[] terms = new int[counts.size()];
+        int n = 0;
+        for (int term : counts.keySet()) terms[n++] = term;
+        Arrays.sort(terms);
+        double[] weights = new double[terms.length];
+        for (int i = 0; i < terms.length; i++) weights[i] = weight(counts.get(terms[i]), index.idf(terms[i]));
+        return new TermVector(terms, weights);
+    }
+
+    /**
+     * Method to calculate the TF-IDF weight of a term, the same way Webpage.tfidf does.
+     * @param count the count of the term in the document.
+     * @param idf the inverse document frequency of the term.
+     * @return log(count + 1) * idf.
+     */
+    static double weight(int count, double idf) {
+        return Math.log10(count + 1) * idf;
+    }
+
+    /**
+     * Method to calculate the cosine similarity between two vectors.
+     * @param other the vector being compared against.
+     * @return the cosine of the angle between the vectors, or 0 if either is empty.
+     */
+    double cosine(TermVector other) {
+        if (norm == 0 || other.norm == 0) return 0;
+        double dot = 0;
+        int i = 0, j = 0;
+        while (i < terms.length && j < other.terms.length) { // merging the two sorted term lists
+            if (terms[i] == other.terms[j]) dot += weights[i++] * other.weights[j++];
+            else if (terms[i] < other.terms[j]) i++;
+            else j++;
+        }
+        return dot / (norm * other.norm);
+    }
+}
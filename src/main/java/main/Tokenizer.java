@@ -0,0 +1,221 @@
+package main;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Tokenizer shared by indexing and scoring, so that the words looked up are
+ * always normalized the same way as the words that were indexed. The text is
+ * scanned once, a code point at a time: letters and digits of any script are
+ * kept in lower case, apostrophes are dropped, and any other character ends
+ * the word. Words longer than PersistentStatics.MAX_WORD_LEN are cut to that length.
+ */
+public class Tokenizer {
+    /**
+     * Receiver of the words of a text, in the order they appear.
+     */
+    interface TokenSink {
+        /**
+         * Method called for every word of the text.
+         * @param chars buffer holding the word, it is reused for the next word.
+         * @param len the length of the word.
+         */
+        void token(char[] chars, int len);
+    }
+
+    /**
+     * Count of every distinct word of a text, in a table with linear probing keyed by
+     * the characters of the word, so that a String is only made the first time a word
+     * comes up and every other occurrence only adds to an int.
+     */
+    static class WordCounts implements TokenSink {
+        /**
+         * The distinct words by slot, null for free slots. The length is a power of two.
+         */
+        String[] words;
+        /**
+         * Count of the word in each slot.
+         */
+        int[] counts;
+        /**
+         * Amount of distinct words.
+         */
+        int size;
+
+        WordCounts() {
+            words = new String[64];
+            counts = new int[64];
+        }
+
+        @Override
+        public void token(char[] chars, int len) {
+            int h = 0;
+            for (int i = 0; i < len; i++) h = 31 * h + chars[i]; // the same as String.hashCode
+            int mask = words.length - 1;
+            int slot = spread(h) & mask;
+            while (words[slot] != null) {
+                if (matches(words[slot], chars, len)) {
+                    counts[slot]++;
+                    return;
+                }
+                slot = (slot + 1) & mask;
+            }
+            words[slot] = new String(chars, 0, len);
+            counts[slot] = 1;
+            if (2 * ++size > words.length) grow();
+        }
+
+        /**
+         * Method to spread the bits of a hash over the low bits the slots are picked with.
+         * @param h the hash of a word.
+         * @return the spread hash.
+         */
+        private static int spread(int h) {
+            return h ^ (h >>> 16);
+        }
+
+        /**
+         * Method to check whether a word is the one in a buffer.
+         * @param word the word.
+         * @param chars buffer holding the other word.
+         * @param len the length of the other word.
+         * @return true if they have the same characters, false otherwise.
+         */
+        private static boolean matches(String word, char[] chars, int len) {
+            if (word.length() != len) return false;
+            for (int i = 0; i < len; i++) {
+                if (word.charAt(i) != chars[i]) return false;
+            }
+            return true;
+        }
+
+        /**
+         * Method to double the table, putting every word in its slot in the new one.
+         */
+        private void grow() {
+            String[] oldWords = words;
+            int[] oldCounts = counts;
+            words = new String[2 * oldWords.length];
+            counts = new int[2 * oldCounts.length];
+            int mask = words.length - 1;
+            for (int i = 0; i < oldWords.length; i++) {
+                if (oldWords[i] == null) continue;
+                int slot = spread(oldWords[i].hashCode()) & mask;
+                while (words[slot] != null) slot = (slot + 1) & mask;
+                words[slot] = oldWords[i];
+                counts[slot] = oldCounts[i];
+            }
+        }
+
+        /**
+         * Method to get the counts in order of the words.
+         * @return the count of every word.
+         */
+        TreeMap<String, Integer> sorted() {
+            TreeMap<String, Integer> sorted = new TreeMap<>();
+            for (int i = 0; i < words.length; i++) {
+                if (words[i] != null) sorted.put(words[i], counts[i]);
+            }
+            return sorted;
+        }
+    }
+
+    /**
+     * Size the word buffer starts at, enough for almost every word.
+     */
+    static final int INITIAL_WORD_LEN = 32;
+    /**
+     * Buffer the current word is built in, grown when a word does not fit.
+     */
+    char[] word;
+
+    Tokenizer() {
+        word = new char[INITIAL_WORD_LEN];
+    }
+
+    /**
+     * Method to split a text into normalized words.
+     * @param text the text.
+     * @param sink the receiver of the words.
+     */
+    void tokenize(CharSequence text, TokenSink sink) {
+        int len = 0;
+        boolean inWord = false;
+        for (int i = 0, n = text.length(); i < n; i++) {
+            int c = Character.codePointAt(text, i);
+            if (Character.isSupplementaryCodePoint(c)) ++i; // the low surrogate is part of c
+            if (Character.isLetterOrDigit(c)) {
+                int lower = Character.toLowerCase(c);
+                int width = Character.charCount(lower);
+                if (len + width <= PersistentStatics.MAX_WORD_LEN) {
+                    if (len + width > word.length) word = Arrays.copyOf(word, Math.min(2 * word.length, PersistentStatics.MAX_WORD_LEN));
+                    len += Character.toChars(lower, word, len);
+                }
+                inWord = true;
+            } else if (inWord && (c == '\'' || c == '\u2019')) {
+                continue; // "don't" is the word "dont"
+            } else if (inWord) {
+                sink.token(word, len);
+                len = 0;
+                inWord = false;
+            }
+        }
+        if (inWord) sink.token(word, len);
+    }
+
+    /**
+     * Method to count the normalized words of a text. Only a distinct word
+     * is made into a String, see WordCounts.
+     * @param text the text.
+     * @return the count of every word in the text.
+     */
+    static TreeMap<String, Integer> count(CharSequence text) {
+        WordCounts counts = new WordCounts();
+        new Tokenizer().tokenize(text, counts);
+        return counts.sorted();
+    }
+
+    /**
+     * Method to count the normalized words of a text by their term ids.
+     * @param text the text.
+     * @param dictionary the dictionary the words are given term ids by.
+     * @return the count of every word in the text, by term id.
+     * @throws IOException if the dictionary could not save a new term.
+     */
+    static TreeMap<Integer, Integer> count(CharSequence text, TermDictionary dictionary) throws IOException {
+        TreeMap<Integer, Integer> counts = new TreeMap<>();
+        for (Map.Entry<String, Integer> c : count(text).entrySet()) counts.put(dictionary.id(c.getKey()), c.getValue());
+        return counts;
+    }
+
+    /**
+     * Method to count the normalized words of a text that already have a term id,
+     * without giving the others one.
+     * @param text the text.
+     * @param dictionary the dictionary the term ids are looked up in.
+     * @return the count of every word in the text that is in the dictionary, by term id.
+     */
+    static TreeMap<Integer, Integer> countKnown(CharSequence text, TermDictionary dictionary) {
+        TreeMap<Integer, Integer> counts = new TreeMap<>();
+        for (Map.Entry<String, Integer> c : count(text).entrySet()) {
+            int id = dictionary.lookup(c.getKey());
+            if (id >= 0) counts.put(id, c.getValue()); // a word no page has cannot match one
+        }
+        return counts;
+    }
+
+    /**
+     * Method to normalize a single word the same way as the words of a text.
+     * @param s the word.
+     * @return the first normalized word in s, or null if it has none.
+     */
+    static String normalize(String s) {
+        String[] first = new String[1];
+        new Tokenizer().tokenize(s, (chars, len) -> {
+            if (first[0] == null) first[0] = new String(chars, 0, len);
+        });
+        return first[0];
+    }
+}
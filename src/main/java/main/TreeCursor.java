@@ -0,0 +1,269 @@
+package main;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.locks.Lock;
+import java.util.function.IntPredicate;
+
+/**
+ * Cursor going through the entries of a b-tree in order of term id, from the
+ * first entry at or after a starting term up to a term it stops before.
+ * The entries are copied a batch at a time: the cursor goes down from the root
+ * to the leaf holding the entry after the last one it returned, latch coupled like
+ * a search, notes the next sibling leaves while it holds the leaf's parent, and once
+ * it has let go of every latch reads them ahead, all at the same time on the tree's
+ * IO executor. The leaves read ahead are only kept if no node was split in the meantime,
+ * otherwise the batch ends with the first leaf. Only one batch is held at a time, so the
+ * tree is never loaded as a whole, and no latch is held between two calls.
+ * Nodes that are not in the buffer pool are read past it, so a scan does not evict
+ * the nodes other operations are using. A scan running while the tree is being
+ * inserted into returns every entry that was in the tree when the scan started,
+ * once and in order, but may miss entries inserted while it runs.
+ */
+public class TreeCursor {
+    /**
+     * Amount of sibling leaves read ahead in a batch.
+     */
+    static final int READ_AHEAD = 16;
+    /**
+     * The tree being scanned.
+     */
+    BTree tree;
+    /**
+     * The term id the scan stops before.
+     */
+    int to;
+    /**
+     * Test a term id has to pass to be returned, or null to return every term in the range.
+     */
+    IntPredicate filter;
+    /**
+     * Copies of the entries of the current batch, in order of term id.
+     */
+    ArrayList<Entry> batch;
+    /**
+     * Index of the next entry of the batch.
+     */
+    int pos;
+    /**
+     * The term id of the last entry gone past, the next batch starts after it.
+     */
+    long last;
+    /**
+     * Whether the current batch goes up to the end of the tree.
+     */
+    boolean lastBatch;
+    /**
+     * The entry returned by the next call to next, or null if it has not been found yet.
+     */
+    Entry next;
+    /**
+     * Whether the scan has reached its end.
+     */
+    boolean done;
+
+    /**
+     * Constructor for a cursor over a range of term ids.
+     * @param aTree the tree being scanned.
+     * @param from the smallest term id returned.
+     * @param aTo the term id the scan stops before.
+     * @param aFilter test a term id has to pass to be returned, or null to return every term in the range.
+     */
+    TreeCursor(BTree aTree, int from, int aTo, IntPredicate aFilter) {
+        tree = aTree;
+        to = aTo;
+        filter = aFilter;
+        batch = new ArrayList<>();
+        last = (long) from - 1;
+        done = from >= to;
+    }
+
+    /**
+     * Method to check whether there is another entry.
+     * @return true if next returns an entry, false once the scan has reached its end.
+     * @throws IOException if a node could not be read.
+     */
+    boolean hasNext() throws IOException {
+        if (next == null && !done) next = advance();
+        return next != null;
+    }
+
+    /**
+     * Method to get the next entry.
+     * @return a copy of the entry, or null once the scan has reached its end.
+     * @throws IOException if a node could not be read.
+     */
+    Entry next() throws IOException {
+        hasNext();
+        Entry e = next;
+        next = null;
+        return e;
+    }
+
+    /**
+     * Method to find the next entry in the range that passes the filter.
+     * @return the entry, or null if there is none left.
+     * @throws IOException if a node could not be read.
+     */
+    private Entry advance() throws IOException {
+        while (true) {
+            if (pos == batch.size()) {
+                if (lastBatch) break;
+                fill();
+                continue;
+            }
+            Entry e = batch.get(pos++);
+            if (e.term >= to) break;
+            last = e.term;
+            if (filter == null || filter.test(e.term)) return e;
+        }
+        done = true;
+        batch.clear();
+        return null;
+    }
+
+    /**
+     * Method to copy the next batch of entries, those after the last one gone past. The batch is
+     * the rest of the leaf holding the next entry, the leaves read ahead after it with the entries
+     * of their parent in between, and then the entry of an ancestor that comes right after them.
+     * @throws IOException if a node could not be read.
+     */
+    private void fill() throws IOException {
+        batch.clear();
+        pos = 0;
+        Entry bound = null; // the entry of an ancestor right after the leaves of the batch
+        long[] ahead = null; // the sibling leaves read ahead, and the entries of their parent before each of them
+        Entry[] between = null;
+        long treeSize = 0;
+        Lock held = tree.latch(BTree.ROOT_ID).readLock();
+        held.lock();
+        try {
+            Node n = read(BTree.ROOT_ID);
+            if (n.leaf) { // the root is the only node
+                copy(n);
+                lastBatch = true;
+                return;
+            }
+            while (true) {
+                int i = after(n);
+                long childId = n.children[i].id;
+                Lock child = tree.latch(childId).readLock();
+                if (!tree.latchChild(child, childId, n.id)) { // starting over from the root, which stays an internal node
+                    held.unlock();
+                    held = tree.latch(BTree.ROOT_ID).readLock();
+                    held.lock();
+                    n = read(BTree.ROOT_ID);
+                    bound = null;
+                    continue;
+                }
+                Node c;
+                try {
+                    c = read(childId);
+                    if (c.leaf) copy(c);
+                } catch (IOException | RuntimeException e) {
+                    child.unlock();
+                    throw e;
+                }
+                if (c.leaf) {
+                    child.unlock();
+                    int j = i;
+                    while (j < n.numEntries && j - i < READ_AHEAD && n.entries[j].term < to) j++;
+                    ahead = new long[j - i];
+                    between = new Entry[j - i];
+                    for (int k = 0; k < ahead.length; k++) {
+                        ahead[k] = n.children[i + 1 + k].id;
+                        between[k] = copy(n.entries[i + k]);
+                    }
+                    if (j < n.numEntries) bound = copy(n.entries[j]);
+                    treeSize = tree.treeSize.get(); // every split makes a node, so a split changes the size
+                    break;
+                }
+                if (i < n.numEntries) bound = copy(n.entries[i]);
+                held.unlock();
+                held = child;
+                n = c;
+            }
+        } finally {
+            held.unlock();
+        }
+        if (ahead.length > 0 && !readAhead(ahead, between, treeSize)) bound = between[0]; // the batch ends with the first leaf
+        if (bound == null) lastBatch = true;
+        else batch.add(bound);
+    }
+
+    /**
+     * Method to add leaves that came after the leaf of the batch in their parent, with the
+     * entries of the parent in between. It is called without holding any latch, so that the
+     * reads do not wait on the IO executor while others wait on the cursor. The reads are
+     * started in order of their pages, and run at the same time.
+     * @param ids the ids of the leaves, in order.
+     * @param between the entries of the parent before each of the leaves.
+     * @param treeSize the size of the tree while the parent was latched.
+     * @return true if the leaves were added, false if a node was split since the parent was
+     * let go of, in which case some of their entries may have moved to new leaves.
+     * @throws IOException if a leaf could not be read.
+     */
+    private boolean readAhead(long[] ids, Entry[] between, long treeSize) throws IOException {
+        ArrayList<CompletableFuture<Node>> leaves = new ArrayList<>(ids.length);
+        Integer[] order = new Integer[ids.length];
+        for (int k = 0; k < ids.length; k++) {
+            order[k] = k;
+            leaves.add(null);
+        }
+        Arrays.sort(order, (a, b) -> Long.compare(ids[a], ids[b]));
+        for (int k : order) leaves.set(k, tree.readAsync(ids[k])); // copies, read under their latches
+        ArrayList<Node> read = new ArrayList<>(ids.length);
+        for (CompletableFuture<Node> leaf : leaves) read.add(BTree.await(leaf));
+        if (tree.treeSize.get() != treeSize) return false;
+        for (int k = 0; k < ids.length; k++) {
+            batch.add(between[k]);
+            Node leaf = read.get(k);
+            for (int e = 0; e < leaf.numEntries; e++) batch.add(leaf.entries[e]);
+        }
+        return true;
+    }
+
+    /**
+     * Method to get the index of the first entry of a node after the last entry gone past,
+     * which is also the index of the child holding the entries between the two.
+     * @param n the node.
+     * @return the index.
+     */
+    private int after(Node n) {
+        int i = 0;
+        while (i < n.numEntries && n.entries[i].term <= last) i++;
+        return i;
+    }
+
+    /**
+     * Method to add copies of the entries of a leaf after the last entry gone past to the batch.
+     * @param leaf the leaf, whose latch is held by the caller.
+     */
+    private void copy(Node leaf) {
+        for (int i = after(leaf); i < leaf.numEntries; i++) batch.add(copy(leaf.entries[i]));
+    }
+
+    /**
+     * Method to copy an entry.
+     * @param e the entry.
+     * @return the copy.
+     */
+    private static Entry copy(Entry e) {
+        Entry c = new Entry(e.term);
+        c.count = e.count;
+        return c;
+    }
+
+    /**
+     * Method to get a node from the buffer pool if it is there and from its page otherwise.
+     * @param id the id of the node, whose latch is held by the caller.
+     * @return the node.
+     * @throws IOException if the node could not be read.
+     */
+    private Node read(long id) throws IOException {
+        Node n = tree.cache.peek(id);
+        return n != null ? n : tree.diskRead(id); // not cached, so the page holds the node as it is
+    }
+}
@@ -0,0 +1,111 @@
+package main;
+
+import jdk.jfr.Category;
+import jdk.jfr.Event;
+import jdk.jfr.EventType;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * A container class for the Java Flight Recorder events of the b-trees and the ranking.
+ * The events are only written while a recording with them enabled is running, for example
+ * java -XX:StartFlightRecording=settings=profile,filename=tree.jfr, and otherwise cost about
+ * as much as the check whether they are enabled. None of them record a stack trace.
+ */
+public class TreeEvents {
+    /**
+     * Event for a node being read from or written to its page.
+     */
+    @Name("main.NodeIo")
+    @Label("Node IO")
+    @Category({"B-tree"})
+    @StackTrace(false)
+    static class NodeIo extends Event {
+        /**
+         * The id of the node.
+         */
+        @Label("Node")
+        long id;
+        /**
+         * Amount of bytes read or written.
+         */
+        @Label("Bytes")
+        int bytes;
+        /**
+         * True for a write, false for a read.
+         */
+        @Label("Write")
+        boolean write;
+    }
+
+    /**
+     * Event for a full node being split in two.
+     */
+    @Name("main.Split")
+    @Label("Node Split")
+    @Category({"B-tree"})
+    @StackTrace(false)
+    static class Split extends Event {
+        /**
+         * The id of the node that was split.
+         */
+        @Label("Node")
+        long id;
+        /**
+         * The id of the new right sibling.
+         */
+        @Label("Sibling")
+        long sibling;
+    }
+
+    /**
+     * Event for an insert into or a search of a tree.
+     */
+    @Name("main.TreeOperation")
+    @Label("Tree Operation")
+    @Category({"B-tree"})
+    @StackTrace(false)
+    static class Operation extends Event {
+        /**
+         * "insert" or "search".
+         */
+        @Label("Operation")
+        String operation;
+        /**
+         * The id of the term inserted or searched for.
+         */
+        @Label("Term")
+        int term;
+    }
+
+    /**
+     * The type of the Operation events, to check whether they are enabled before making one.
+     */
+    static final EventType OPERATION = EventType.getEventType(Operation.class);
+
+    /**
+     * Event for the best matches of a query being found in a corpus.
+     */
+    @Name("main.Match")
+    @Label("Best Match")
+    @Category({"Ranking"})
+    @StackTrace(false)
+    static class Match extends Event {
+        /**
+         * The document id of the query, or -1 if it is not in the corpus.
+         */
+        @Label("Document")
+        int docId;
+        /**
+         * Amount of pages that shared a term with the query and were scored.
+         */
+        @Label("Candidates")
+        int candidates;
+        /**
+         * Amount of matches asked for.
+         */
+        @Label("K")
+        int k;
+    }
+}
@@ -1,11 +1,15 @@
 package main;
 
 import org.jsoup.Jsoup;
+import org.jsoup.nodes.Document;
 
 import java.io.IOException;
-import java.io.RandomAccessFile;
 import java.util.ArrayList;
-import java.util.StringTokenizer;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ForkJoinPool;
 
 /**
  * Object that will be representing each of the wikipedia
@@ -13,13 +17,23 @@ import java.util.StringTokenizer;
  */
 public class Webpage {
     /**
-     * The file that we will be writing the webpage's data to.
+     * The counts of the words of this webpage, null until they are first needed
+     * for a webpage of a corpus that was built before.
      */
-    RandomAccessFile file;
+    TermIndex terms;
     /**
-     * The b-tree associated with this webpage.
+     * The page store the webpage's b-tree is opened from when it is first needed, or null if its terms are already open.
      */
-    BTree tree;
+    PageStore store;
+    /**
+     * The inverted index the counts are read back from when they are first needed, for a webpage
+     * of a corpus that was built before whose counts were never written to its b-tree, or null.
+     */
+    InvertedIndex index;
+    /**
+     * The dictionary the words are given term ids by.
+     */
+    TermDictionary dictionary;
     /**
      * The link to this webpage.
      */
@@ -29,31 +43,175 @@ public class Webpage {
      */
     String title;
     /**
-     * The text of the body  of this wikipedia page.
+     * The text of the body  of this wikipedia page, null for a webpage of a corpus that was built before.
      */
     String text;
+    /**
+     * The id of this webpage in its corpus, or -1 if it is not in one.
+     */
+    int docId;
+    /**
+     * Bloom filter over the term ids of this webpage, checked before its index is,
+     * or null to always look a term up in the index.
+     */
+    BloomFilter filter;
+
+    /**
+     * Constructor for a webpage fetched from a link, such as a query, that is not added to a corpus.
+     * Only its words that already have a term id are counted, so the dictionary does not grow.
+     * @param aTerms the index for the counts of the webpage's words.
+     * @param aDictionary the dictionary the words are looked up in.
+     * @param aLink the link to the webpage.
+     * @throws IOException if the webpage could not be fetched or its words could not be written.
+     */
+    Webpage(TermIndex aTerms, TermDictionary aDictionary, String aLink) throws IOException {
+        this(aTerms, aDictionary, new ParsedPage(Jsoup.connect(aLink).get(), aDictionary, false), null);
+    }
+
+    /**
+     * Constructor for a webpage from a document that has already been fetched and parsed,
+     * which is added to a corpus once its words are indexed.
+     * @param aTerms the index for the counts of the webpage's words, such as its b-tree.
+     * @param aDictionary the dictionary the words are given term ids by.
+     * @param doc the parsed page, its location is used as the link to the webpage.
+     * @param corpus the corpus the webpage is added to, or null to not add it to one.
+     * @throws IOException if writing its words throws an IO exception.
+     */
+    Webpage(TermIndex aTerms, TermDictionary aDictionary, Document doc, Corpus corpus) throws IOException {
+        this(aTerms, aDictionary, new ParsedPage(doc, aDictionary), corpus);
+    }
+
+    /**
+     * Constructor for a webpage whose words have already been counted,
+     * which is added to a corpus once its words are indexed.
+     * @param aTerms the index for the counts of the webpage's words, such as its b-tree.
+     * @param aDictionary the dictionary the words were given term ids by.
+     * @param page the parsed page.
+     * @param corpus the corpus the webpage is added to, or null to not add it to one.
+     * @throws IOException if writing its words throws an IO exception.
+     */
+    Webpage(TermIndex aTerms, TermDictionary aDictionary, ParsedPage page, Corpus corpus) throws IOException {
+        docId = -1;
+        link = page.link;
+        title = page.title;
+        terms = aTerms;
+        dictionary = aDictionary;
+        text = page.text;
+        addAllWords(page.counts);
+        if (corpus != null) corpus.add(this, page.counts);
+    }
 
-    Webpage(RandomAccessFile aFile, BTree aTree, String aLink) throws IOException {
-        link = aLink;
-        title = Jsoup.connect(link).get().title();
-        file = aFile;
-        tree = aTree;
-        text = Jsoup.connect(link).get().getElementsByTag("p").text().replaceAll("\\p{Punct}",
-                "").toLowerCase();
-        addAllWordsToTree();
+    /**
+     * Constructor for a webpage of a corpus that was built before, whose
+     * counts are only read back when they are first needed.
+     * @param entry the catalog entry of the webpage.
+     * @param aStore the page store holding the webpage's b-tree.
+     * @param aDictionary the dictionary of the corpus.
+     * @param aIndex the inverted index of the corpus.
+     */
+    Webpage(CatalogEntry entry, PageStore aStore, TermDictionary aDictionary, InvertedIndex aIndex) {
+        docId = entry.docId;
+        link = entry.link;
+        title = entry.title;
+        store = aStore;
+        dictionary = aDictionary;
+        if (!entry.inTree) index = aIndex;
+        filter = entry.filter;
+    }
+
+    /**
+     * Method to get the word counts of this webpage, opening its b-tree, or reading
+     * them back from the inverted index if they were never written to the tree,
+     * if they are not open yet.
+     * @return the word counts.
+     * @throws IOException if the tree could not be opened or the index could not be read.
+     */
+    synchronized TermIndex terms() throws IOException {
+        if (terms != null) return terms;
+        if (index != null) terms = index.counts(docId);
+        else terms = BTree.open(store, dictionary, BufferPool.MIN_CAPACITY); // the pages are cached by the segment store
+        return terms;
     }
 
     /**
-     * Method to add all words on a wikipedia page to its b-tree.
+     * Method to add all words on a wikipedia page to its index.
+     * The words are counted beforehand, so that an empty tree can be
+     * bulk loaded and every word only goes into the index once.
+     * Nothing is flushed, an index on disk is flushed by whoever keeps it.
+     * @param counts the count of every word on the page, by term id.
      * @throws IOException if disk read or disk write throws an IO exception.
      */
-    void addAllWordsToTree() throws IOException {
-        String bText = Jsoup.connect(link).get().body().text();
-        StringTokenizer tz = new StringTokenizer(bText);
-        while (tz.hasMoreTokens()) {
-            String token = tz.nextToken();
-            tree.insert(token);
+    void addAllWords(TreeMap<Integer, Integer> counts) throws IOException {
+        int[] ids = new int[counts.size()];
+        int[] amounts = new int[counts.size()];
+        int i = 0;
+        for (Map.Entry<Integer, Integer> c : counts.entrySet()) {
+            ids[i] = c.getKey();
+            amounts[i++] = c.getValue();
+        }
+        terms.insertAll(ids, amounts);
+    }
+
+    /**
+     * Method to build the Bloom filter over the words of this webpage.
+     * @param counts the count of every word on the page, by term id.
+     * @param falsePositiveRate the share of absent words the filter may say are on the page.
+     * @return the filter, which is also kept by the webpage.
+     */
+    BloomFilter buildFilter(Map<Integer, Integer> counts, double falsePositiveRate) {
+        BloomFilter f = new BloomFilter(counts.size(), falsePositiveRate);
+        for (int term : counts.keySet()) f.add(term);
+        filter = f;
+        return f;
+    }
+
+    /**
+     * Method to get the count of a word in this webpage. The Bloom filter is checked
+     * first, so that a word that is not on the page costs no read of its index.
+     * @param term the term id of the word, or -1 if it is in no page.
+     * @return the count of the word.
+     * @throws IOException if the index could not be read.
+     */
+    int count(int term) throws IOException {
+        if (term < 0) return 0;
+        if (filter != null && !filter.mightContain(term)) {
+            Metrics.GLOBAL.filtered.increment();
+            return 0;
         }
+        return terms().count(term);
+    }
+
+    /**
+     * Method to get the count of a word in this webpage without waiting for its index to be read.
+     * @param term the term id of the word, or -1 if it is in no page.
+     * @return the future count of the word.
+     */
+    CompletableFuture<Integer> countAsync(int term) {
+        if (term < 0) return CompletableFuture.completedFuture(0);
+        if (filter != null && !filter.mightContain(term)) {
+            Metrics.GLOBAL.filtered.increment();
+            return CompletableFuture.completedFuture(0);
+        }
+        try {
+            return terms().countAsync(term);
+        } catch (IOException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    /**
+     * Method to get the counts of several words in this webpage. The lookups of all of them
+     * are started before waiting for any, so that the pages of a b-tree are read at the same time.
+     * @param terms the term ids of the words, -1 for a word that is in no page.
+     * @return the count of every word, in the order of terms.
+     * @throws IOException if the index could not be read.
+     */
+    int[] counts(int[] terms) throws IOException {
+        ArrayList<CompletableFuture<Integer>> lookups = new ArrayList<>(terms.length);
+        for (int term : terms) lookups.add(countAsync(term));
+        int[] counts = new int[terms.length];
+        for (int i = 0; i < counts.length; i++) counts[i] = BTree.await(lookups.get(i));
+        return counts;
     }
 
     /**
@@ -62,95 +220,111 @@ public class Webpage {
      * @return log(freq + 1).
      */
     double tf(String word) throws IOException {
-        double freq = tree.search(tree.root, word).count;
+        double freq = count(dictionary.lookup(word));
         return Math.log10(freq + 1);
     }
 
     /**
      * Method to calculate the inverse document frequency of the given word.
      * @param s the word we are calculating the IDF for.
-     * @param pages the corpus.
+     * @param corpus the corpus.
      * @return the IDF calculation.
      */
-    double idf(String s, Webpage pages[]) throws IOException {
-        double corpusSize = pages.length + 1;
-        double count = 0;
-        for (int i = 0; i < pages.length; i++) {
-            Node n = pages[i].tree.diskRead(0);
-            if (pages[i].tree.search(n, s) != null) ++count;
-        }
-        return Math.log10(corpusSize / (count + 1));
+    double idf(String s, Corpus corpus) {
+        return corpus.index.idf(corpus.dictionary.lookup(s));
     }
 
     /**
      * Method to calculate the TF-IDF of a given word.
      * @param s the word we are calculating the TF-IDF for.
-     * @param pages the corpus.
+     * @param corpus the corpus.
      * @return the TF-IDF calculation.
      * @throws IOException if disk read throws an IO exception.
      */
-    double tfidf(String s, Webpage[] pages) throws IOException {
-        return tf(s) * idf(s, pages);
+    double tfidf(String s, Corpus corpus) throws IOException {
+        return tf(s) * idf(s, corpus);
     }
 
     /**
      * Method to get the keywords of this document.
-     * @param pages the corpus.
+     * @param corpus the corpus.
      * @return a list of the keywords of this document.
      * @throws IOException if disk read or disk write throws an IO exception.
      */
-    ArrayList<String> getKeywords(Webpage[] pages) throws IOException {
+    ArrayList<String> getKeywords(Corpus corpus) throws IOException {
+        LinkedHashSet<String> words = new LinkedHashSet<>(); // each distinct word once, in the order they appear
+        if (text != null) {
+            new Tokenizer().tokenize(text, (chars, len) -> words.add(new String(chars, 0, len)));
+        } else { // the text was not kept, the words are those of the indexed page instead
+            for (int term : corpus.vector(docId).terms) words.add(dictionary.term(term));
+        }
+        ArrayList<String> candidates = new ArrayList<>(words);
+        int[] terms = new int[candidates.size()];
+        for (int i = 0; i < terms.length; i++) terms[i] = corpus.dictionary.lookup(candidates.get(i));
+        int[] counts = counts(terms);
         ArrayList<String> keywords = new ArrayList<>();
-        StringTokenizer tz = new StringTokenizer(text);
-        while (tz.hasMoreTokens()) {
-            String tok = tz.nextToken();
-            double tfidf = tfidf(tok, pages);
-            if (tfidf > .3 && !keywords.contains(tok)) keywords.add(tok);
+        for (int i = 0; i < terms.length; i++) {
+            if (Math.log10(counts[i] + 1) * corpus.index.idf(terms[i]) > .3) keywords.add(candidates.get(i)); // tfidf of the word
         }
         return keywords;
     }
 
     /**
-     * Method to sort the corpus based on their tf-idf for the keywords of the inputted document.
-     * @param scores the array containing the total score of the document.
+     * Method to count the words of this document, the counts of its body that were
+     * put in its index, so a page that is not in the corpus is counted the same way as those that are.
+     * @return the count of every word of this document, by term id.
+     * @throws IOException if the index could not be read.
+     */
+    TreeMap<Integer, Integer> wordCounts() throws IOException {
+        TreeMap<Integer, Integer> counts = new TreeMap<>();
+        terms().forEach(counts::put);
+        return counts;
+    }
+
+    /**
+     * Method to get the TF-IDF vector of this document.
      * @param corpus the corpus.
+     * @return the vector of this document.
+     * @throws IOException if the index of this webpage could not be read.
      */
-    static void bubbleSort(double[] scores, Webpage[] corpus) {
-        int len = scores.length;
-        for (int i = 0; i < len - 1; i++) {
-            for (int j = 0; j < len - i - 1; j++) {
-                if (scores[j] > scores[j + 1]) {
-                    // swap arr[j+1] and arr[j]
-                    double temp = scores[j];
-                    Webpage temp2 = corpus[j];
-                    scores[j] = scores[j + 1];
-                    corpus[j] = corpus[j + 1];
-                    scores[j + 1] = temp;
-                    corpus[j + 1] = temp2;
-                }
-            }
-        }
+    TermVector vector(Corpus corpus) throws IOException {
+        if (docId >= 0) return corpus.vector(docId);
+        return TermVector.of(wordCounts(), corpus.index);
+    }
+
+    /**
+     * Method to get the wikipedia pages from the corpus that are the most closely related to this one.
+     * @param corpus the corpus.
+     * @param k the amount of pages to get.
+     * @return up to k matches, from most to least similar.
+     * @throws IOException if the index of this webpage could not be read.
+     */
+    ArrayList<Match> getBestMatches(Corpus corpus, int k) throws IOException {
+        return getBestMatches(corpus, k, null);
+    }
+
+    /**
+     * Method to get the wikipedia pages from the corpus that are the most closely related
+     * to this one, scoring the corpus in parallel.
+     * @param corpus the corpus.
+     * @param k the amount of pages to get.
+     * @param pool the pool the corpus is scored on, or null to score it on this thread.
+     * @return up to k matches, from most to least similar.
+     * @throws IOException if the index of this webpage could not be read.
+     */
+    ArrayList<Match> getBestMatches(Corpus corpus, int k, ForkJoinPool pool) throws IOException {
+        return new Ranker(corpus, pool).topK(vector(corpus), k, docId);
     }
 
     /**
      * Method to get the most closely related wikipedia page from the corpus.
-     * @param pages the corpus.
-     * @return the webpage that is most closely related to the current one.
-     * @throws IOException disk read throws an IO exception.
-     */
-    Webpage getBestMatch(Webpage[] pages) throws IOException {
-        double[] results = new double[pages.length];
-        ArrayList<String> keywords = getKeywords(pages);
-        for (int i = 0; i < pages.length; i++) {
-            double total = 0;
-            for (int j = 0; j < keywords.size(); j++) {
-                if (pages[i].text.contains(keywords.get(j))) total += 1;
-                double tfidf = pages[i].tfidf(keywords.get(i), pages);
-                total += tfidf;
-            }
-            results[i] = total;
-        }
-        bubbleSort(results, pages);
-        return pages[pages.length - 1];
+     * @param corpus the corpus.
+     * @return the webpage that is most closely related to the current one,
+     * or null if no page shares a word with it.
+     * @throws IOException if the index of this webpage could not be read.
+     */
+    Webpage getBestMatch(Corpus corpus) throws IOException {
+        ArrayList<Match> best = getBestMatches(corpus, 1);
+        return best.isEmpty() ? null : best.get(0).page;
     }
 }
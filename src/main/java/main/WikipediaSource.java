@@ -0,0 +1,42 @@
+package main;
+
+import org.jsoup.Connection;
+import org.jsoup.Jsoup;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Document source of random pages fetched from wikipedia.
+ */
+public class WikipediaSource implements DocumentSource {
+    /**
+     * Link that redirects to a random wikipedia page.
+     */
+    static final String RANDOM_WIKI = "http://en.wikipedia.org/wiki/Special:Random";
+    /**
+     * Amount of pages to fetch.
+     */
+    int size;
+
+    WikipediaSource(int aSize) {
+        size = aSize;
+    }
+
+    @Override
+    public List<String> locations() {
+        return Collections.nCopies(size, RANDOM_WIKI);
+    }
+
+    @Override
+    public RawDocument load(String location) throws IOException {
+        Connection.Response response = Jsoup.connect(location).execute();
+        return new RawDocument(response.url().toString(), response.body()); // the link of the page it redirected to
+    }
+
+    @Override
+    public String toString() {
+        return size + " random pages of " + RANDOM_WIKI;
+    }
+}
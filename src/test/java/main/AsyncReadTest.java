@@ -0,0 +1,138 @@
+package main;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Tests of the asynchronous read path, whose results must be the same as those read on the calling thread.
+ */
+class AsyncReadTest {
+    /**
+     * Directory the trees and the corpus are made in.
+     */
+    @TempDir
+    File dir;
+
+    @Test
+    void asyncCountsMatchTheTree() throws IOException {
+        BTree tree = new BTree(new ChannelPageStore(new RandomAccessFile(new File(dir, "async.bt"), "rw"),
+                PersistentStatics.DEFAULT_PAGE_SIZE), new TermDictionary(), BufferPool.MIN_CAPACITY);
+        TreeMap<Integer, Integer> expected = new TreeMap<>();
+        Random random = new Random(25);
+        for (int i = 0; i < 20000; i++) {
+            int term = random.nextInt(30000);
+            tree.insert(term, 1);
+            expected.merge(term, 1, Integer::sum);
+        }
+        ArrayList<CompletableFuture<Integer>> lookups = new ArrayList<>();
+        for (int term = 0; term < 30000; term += 3) lookups.add(tree.countAsync(term)); // all started before any is awaited
+        for (int i = 0; i < lookups.size(); i++) {
+            assertEquals((int) expected.getOrDefault(3 * i, 0), (int) BTree.await(lookups.get(i)), "term " + 3 * i);
+        }
+        tree.close();
+    }
+
+    @Test
+    void asyncNodeIsACopyOfTheNode() throws IOException {
+        BTree tree = new BTree(new RandomAccessFile(new File(dir, "node.bt"), "rw"), new TermDictionary());
+        for (int term = 0; term < 2000; term++) tree.insert(term, term + 1);
+        Node root = BTree.await(tree.readAsync(BTree.ROOT_ID));
+        Node cached = tree.cache.peek(BTree.ROOT_ID);
+        assertEquals(cached.numEntries, root.numEntries);
+        for (int i = 0; i < root.numEntries; i++) assertEquals(cached.entries[i].term, root.entries[i].term);
+        int first = root.entries[0].term;
+        tree.insert(first, 5);
+        assertEquals(first + 1, root.entries[0].count); // the copy does not see later inserts
+        assertEquals(first + 6, tree.count(first));
+        tree.close();
+    }
+
+    @Test
+    void spilledIndexCountsOnItsTreesExecutor() throws Exception {
+        SpillingTermIndex index = new SpillingTermIndex(() -> new BTree(new RandomAccessFile(new File(dir, "spilled.bt"), "rw"),
+                new TermDictionary()), 1 << 10);
+        for (int term = 0; term < 300; term++) index.insert(term, 1);
+        assertEquals(1, (int) BTree.await(index.countAsync(5))); // kept in memory, answered right away
+        for (int term = 300; term < 3000; term++) index.insert(term, term % 4 + 1);
+        assertFalse(index.inMemory());
+
+        ExecutorService io = Executors.newSingleThreadExecutor();
+        CountDownLatch busy = new CountDownLatch(1);
+        io.execute(() -> {
+            try {
+                busy.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        index.tree.io = io;
+        ArrayList<CompletableFuture<Integer>> lookups = new ArrayList<>();
+        for (int term = 0; term < 3500; term += 7) lookups.add(index.countAsync(term));
+        for (CompletableFuture<Integer> lookup : lookups) assertFalse(lookup.isDone()); // waiting for the tree's executor
+        busy.countDown();
+        for (int i = 0; i < lookups.size(); i++) assertEquals(index.count(7 * i), (int) BTree.await(lookups.get(i)), "term " + 7 * i);
+        io.shutdown();
+        index.tree.close();
+    }
+
+    @Test
+    void failedReadIsThrownByAwait() {
+        CompletableFuture<Integer> failed = CompletableFuture.supplyAsync(() -> {
+            throw new IllegalStateException("broken page");
+        }, BTree.IO);
+        assertThrows(IllegalStateException.class, () -> BTree.await(failed));
+        assertThrows(IOException.class, () -> BTree.await(CompletableFuture.failedFuture(new IOException("torn"))));
+    }
+
+    @Test
+    void corpusCountsMatchEveryPage() throws Exception {
+        Corpus corpus = Corpus.create(dir, PersistentStatics.DEFAULT_PAGE_SIZE);
+        new IngestionPipeline(new IngestionPipelineTest.GeneratedSource(), (page, done, total) -> { }).run(corpus);
+        corpus.writeManifest(dir, "generated");
+        corpus.close();
+
+        Corpus reopened = Corpus.open(dir, "generated"); // the pages read their counts back from their trees
+        for (String word : new String[]{"every", "word3", "absent"}) {
+            int term = reopened.dictionary.lookup(word);
+            int[] counts = reopened.counts(term);
+            assertEquals(reopened.size(), counts.length);
+            for (Webpage page : reopened.pages) assertEquals(page.count(term), counts[page.docId], word + " in " + page.title);
+        }
+        reopened.close();
+    }
+
+    @Test
+    void keywordsMatchTheTfidfOfEveryWord() throws Exception {
+        Corpus corpus = Corpus.create(dir, PersistentStatics.DEFAULT_PAGE_SIZE);
+        new IngestionPipeline(new IngestionPipelineTest.GeneratedSource(), (page, done, total) -> { }).run(corpus);
+        corpus.writeManifest(dir, "generated");
+        corpus.close();
+
+        Corpus reopened = Corpus.open(dir, "generated");
+        for (Webpage page : reopened.pages) {
+            ArrayList<String> expected = new ArrayList<>();
+            for (int term : reopened.vector(page.docId).terms) {
+                String word = reopened.dictionary.term(term);
+                if (page.tfidf(word, reopened) > .3) expected.add(word);
+            }
+            assertFalse(expected.isEmpty());
+            assertEquals(expected, page.getKeywords(reopened), page.title);
+        }
+        reopened.close();
+    }
+}
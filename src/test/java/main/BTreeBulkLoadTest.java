@@ -0,0 +1,145 @@
+package main;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests of BTree.bulkLoad, which must build the same kind of tree inserting the keys one by one would.
+ */
+class BTreeBulkLoadTest {
+    /**
+     * Directory the tree files are made in.
+     */
+    @TempDir
+    File dir;
+
+    /**
+     * Smallest amount of entries in a node below the root of the tree being checked.
+     */
+    int min;
+    /**
+     * Largest amount of entries in a node below the root of the tree being checked.
+     */
+    int max;
+
+    /**
+     * Method to get an iterator over the sorted entries 1, 3, 5 and so on.
+     * @param size the amount of entries.
+     * @return the iterator.
+     */
+    static Iterator<Entry> oddTerms(int size) {
+        ArrayList<Entry> entries = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) entries.add(new Entry(2 * i + 1));
+        return entries.iterator();
+    }
+
+    /**
+     * Method to check the keys of a subtree are sorted and between two bounds, and its leaves all at the same depth.
+     * @param tree the tree.
+     * @param id the id of the root of the subtree.
+     * @param root whether the node is the root of the tree, which may hold fewer entries.
+     * @param low every key must be greater than this.
+     * @param high every key must be smaller than this.
+     * @return the height of the subtree.
+     * @throws IOException if a node could not be read.
+     */
+    int check(BTree tree, long id, boolean root, long low, long high) throws IOException {
+        Node n = tree.cache.peek(id); // a node that was not written yet is only in the buffer pool
+        if (n == null) n = tree.diskRead(id);
+        if (!root) {
+            min = Math.min(min, n.numEntries);
+            max = Math.max(max, n.numEntries);
+        }
+        for (int i = 0; i < n.numEntries; i++) {
+            int term = n.entries[i].term;
+            assertTrue(term > low && term < high, "key " + term + " out of order in node " + id);
+            if (i > 0) assertTrue(term > n.entries[i - 1].term, "keys of node " + id + " not sorted");
+        }
+        if (n.leaf) return 1;
+        int height = -1;
+        for (int i = 0; i <= n.numEntries; i++) {
+            long from = i == 0 ? low : n.entries[i - 1].term;
+            long to = i == n.numEntries ? high : n.entries[i].term;
+            int h = check(tree, n.children[i].id, false, from, to);
+            if (height >= 0) assertEquals(height, h, "leaves of node " + id + " at different depths");
+            height = h;
+        }
+        return height + 1;
+    }
+
+    @Test
+    void everyNodeHoldsAtLeastTheMinimum() throws IOException {
+        int[] sizes = {0, 1, 100, 254, 255, 300, 508, 5000, 33334};
+        double[] fillFactors = {0, 0.5, 0.7, 1, 1.5, -1, Double.NaN};
+        for (int pageSize : PersistentStatics.PAGE_SIZES) {
+            for (int size : sizes) {
+                for (double fillFactor : fillFactors) {
+                    File file = new File(dir, "bulk-" + pageSize + "-" + size + ".bt");
+                    BTree tree = new BTree(new RandomAccessFile(file, "rw"), new TermDictionary(), pageSize);
+                    tree.bulkLoad(oddTerms(size), fillFactor);
+                    min = Integer.MAX_VALUE;
+                    max = 0;
+                    check(tree, BTree.ROOT_ID, true, Long.MIN_VALUE, Long.MAX_VALUE);
+                    String name = "page size " + pageSize + ", " + size + " keys, fill factor " + fillFactor;
+                    if (max > 0) {
+                        assertTrue(min >= tree.t - 1, name + ": a node holds " + min + " entries");
+                        assertTrue(max <= 2 * tree.t - 1, name + ": a node holds " + max + " entries");
+                    }
+                    assertEquals(size, tree.size(), name);
+                    for (int i = 0; i < size; i += 7) assertEquals(1, tree.count(2 * i + 1), name);
+                    assertEquals(0, tree.count(2), name);
+                    tree.close();
+                    file.delete();
+                }
+            }
+        }
+    }
+
+    @Test
+    void bulkLoadedTreeTakesInserts() throws IOException {
+        BTree tree = new BTree(new RandomAccessFile(new File(dir, "insert.bt"), "rw"), new TermDictionary());
+        tree.bulkLoad(oddTerms(2000), 0.7);
+        tree.insert(21, 1);
+        tree.insert(4, 3);
+        assertEquals(2, tree.search(21).count);
+        assertEquals(3, tree.search(4).count);
+        assertEquals(1, tree.search(3999).count);
+        tree.close();
+    }
+
+    @Test
+    void unsortedOrNonEmptyIsRejected() throws IOException {
+        BTree tree = new BTree(new RandomAccessFile(new File(dir, "reject.bt"), "rw"), new TermDictionary());
+        Iterator<Entry> unsorted = List.of(new Entry(2), new Entry(1)).iterator();
+        assertThrows(IllegalArgumentException.class, () -> tree.bulkLoad(unsorted, 1));
+        tree.insert(1, 1);
+        assertThrows(IllegalStateException.class, () -> tree.bulkLoad(oddTerms(10), 1));
+        tree.close();
+    }
+
+    @Test
+    void bulkLoadedTreeReopens() throws IOException {
+        File file = new File(dir, "reopen.bt");
+        TermDictionary dictionary = new TermDictionary();
+        BTree tree = new BTree(new RandomAccessFile(file, "rw"), dictionary);
+        tree.bulkLoad(oddTerms(10000), 0.7);
+        tree.close();
+        BTree reopened = BTree.open(new RandomAccessFile(file, "rw"), dictionary);
+        assertEquals(10000, reopened.size());
+        for (int i = 0; i < 10000; i++) assertEquals(1, reopened.count(2 * i + 1));
+        reopened.insert(4, 2);
+        assertEquals(2, reopened.count(4));
+        reopened.close();
+    }
+}
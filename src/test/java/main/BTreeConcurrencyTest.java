@@ -0,0 +1,212 @@
+package main;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests of the latch coupling of BTree, inserts and searches running at once must
+ * neither lose an insert, see a count go back, nor deadlock.
+ */
+class BTreeConcurrencyTest {
+    /**
+     * Amount of terms every writer inserts once each.
+     */
+    static final int TERMS = 3000;
+    /**
+     * Amount of threads inserting, and of threads searching.
+     */
+    static final int THREADS = 4;
+    /**
+     * Longest the threads may take before the tree is taken to deadlock.
+     */
+    static final Duration TIMEOUT = Duration.ofSeconds(60);
+
+    /**
+     * Directory the tree file is made in.
+     */
+    @TempDir
+    File dir;
+
+    /**
+     * Method to get the count of a term, or 0 if it is not in the tree.
+     * @param tree the tree.
+     * @param term the id of the term.
+     * @return the count of the term.
+     * @throws IOException if a node could not be read.
+     */
+    static int count(BTree tree, int term) throws IOException {
+        Entry e = tree.search(term);
+        return e == null ? 0 : e.count;
+    }
+
+    @Test
+    void concurrentInsertsAndSearchesAgree() {
+        assertTimeoutPreemptively(TIMEOUT, () -> {
+            // a pool this small makes nodes be evicted while other threads go down the tree
+            BTree tree = new BTree(new ChannelPageStore(new RandomAccessFile(new File(dir, "latch.bt"), "rw"),
+                    PersistentStatics.DEFAULT_PAGE_SIZE), new TermDictionary(), BufferPool.MIN_CAPACITY);
+            AtomicReference<Throwable> failure = new AtomicReference<>();
+            AtomicBoolean writing = new AtomicBoolean(true);
+            CountDownLatch start = new CountDownLatch(1);
+            ArrayList<Thread> writers = new ArrayList<>();
+            ArrayList<Thread> readers = new ArrayList<>();
+            for (int w = 0; w < THREADS; w++) {
+                List<Integer> order = new ArrayList<>();
+                for (int i = 0; i < TERMS; i++) order.add(i);
+                Collections.shuffle(order, new Random(w));
+                writers.add(new Thread(() -> {
+                    try {
+                        start.await();
+                        for (int term : order) tree.insert(term, 1);
+                    } catch (Throwable e) {
+                        failure.compareAndSet(null, e);
+                    }
+                }));
+            }
+            for (int r = 0; r < THREADS; r++) {
+                Random random = new Random(100 + r);
+                readers.add(new Thread(() -> {
+                    int[] seen = new int[TERMS];
+                    try {
+                        start.await();
+                        while (writing.get()) {
+                            int term = random.nextInt(TERMS);
+                            int c = count(tree, term);
+                            if (c < seen[term] || c > THREADS) throw new AssertionError("term " + term + " went from " + seen[term] + " to " + c);
+                            seen[term] = c;
+                        }
+                    } catch (Throwable e) {
+                        failure.compareAndSet(null, e);
+                    }
+                }));
+            }
+            for (Thread thread : writers) thread.start();
+            for (Thread thread : readers) thread.start();
+            start.countDown();
+            for (Thread thread : writers) thread.join();
+            writing.set(false);
+            for (Thread thread : readers) thread.join();
+            if (failure.get() != null) throw failure.get();
+
+            for (int term = 0; term < TERMS; term++) assertEquals(THREADS, count(tree, term), "term " + term);
+            assertEquals(0, count(tree, TERMS));
+            assertFalse(tree.isLatched(BTree.ROOT_ID));
+            tree.close();
+        });
+    }
+
+    @Test
+    void nodesSharingLatchesDoNotDeadlock() {
+        assertTimeoutPreemptively(TIMEOUT, () -> {
+            BTree tree = new BTree(new ChannelPageStore(new RandomAccessFile(new File(dir, "striped.bt"), "rw"),
+                    PersistentStatics.DEFAULT_PAGE_SIZE), new TermDictionary(), BufferPool.MIN_CAPACITY);
+            int terms = 60000; // many more nodes than latches
+            AtomicReference<Throwable> failure = new AtomicReference<>();
+            AtomicBoolean writing = new AtomicBoolean(true);
+            CountDownLatch start = new CountDownLatch(1);
+            ArrayList<Thread> writers = new ArrayList<>();
+            ArrayList<Thread> readers = new ArrayList<>();
+            for (int w = 0; w < THREADS; w++) {
+                List<Integer> order = new ArrayList<>();
+                for (int i = w; i < terms; i += THREADS) order.add(i);
+                Collections.shuffle(order, new Random(w));
+                writers.add(new Thread(() -> {
+                    try {
+                        start.await();
+                        for (int term : order) tree.insert(term, 1);
+                    } catch (Throwable e) {
+                        failure.compareAndSet(null, e);
+                    }
+                }));
+            }
+            for (int r = 0; r < THREADS; r++) {
+                Random random = new Random(200 + r);
+                boolean scanning = r == 0;
+                readers.add(new Thread(() -> {
+                    try {
+                        start.await();
+                        while (writing.get()) {
+                            if (scanning) {
+                                TreeCursor cursor = tree.cursor();
+                                long last = -1;
+                                while (cursor.hasNext()) {
+                                    Entry e = cursor.next();
+                                    if (e.term <= last || e.count != 1) throw new AssertionError(e.term + " came after " + last);
+                                    last = e.term;
+                                }
+                            } else {
+                                int c = count(tree, random.nextInt(terms));
+                                if (c > 1) throw new AssertionError("count went to " + c);
+                            }
+                        }
+                    } catch (Throwable e) {
+                        failure.compareAndSet(null, e);
+                    }
+                }));
+            }
+            for (Thread thread : writers) thread.start();
+            for (Thread thread : readers) thread.start();
+            start.countDown();
+            for (Thread thread : writers) thread.join();
+            writing.set(false);
+            for (Thread thread : readers) thread.join();
+            if (failure.get() != null) throw failure.get();
+
+            for (int term = 0; term < terms; term++) assertEquals(1, count(tree, term), "term " + term);
+            assertTrue(tree.treeSize.get() > 4 * BTree.LATCH_STRIPES);
+            assertEquals(BTree.LATCH_STRIPES, tree.latches.length);
+            for (long id = BTree.ROOT_ID; id < BTree.ROOT_ID + BTree.LATCH_STRIPES; id++) assertFalse(tree.isLatched(id));
+            tree.close();
+        });
+    }
+
+    @Test
+    void searchesWaitForABulkLoad() {
+        assertTimeoutPreemptively(TIMEOUT, () -> {
+            BTree tree = new BTree(new RandomAccessFile(new File(dir, "bulk.bt"), "rw"), new TermDictionary());
+            AtomicReference<Throwable> failure = new AtomicReference<>();
+            ArrayList<Entry> sorted = new ArrayList<>();
+            for (int i = 0; i < 20000; i++) {
+                Entry e = new Entry(i);
+                e.count = 2;
+                sorted.add(e);
+            }
+            Thread reader = new Thread(() -> {
+                try {
+                    // a search sees either the empty tree or the whole of it
+                    for (int i = 0; i < 2000; i++) {
+                        int c = count(tree, 19999);
+                        if (c == 2) return;
+                        if (c != 0) throw new AssertionError("half loaded tree gave " + c);
+                    }
+                } catch (Throwable e) {
+                    failure.compareAndSet(null, e);
+                }
+            });
+            reader.start();
+            tree.bulkLoad(sorted.iterator(), 1);
+            reader.join();
+            if (failure.get() != null) throw failure.get();
+            assertEquals(2, count(tree, 19999));
+            assertEquals(0, count(tree, 20000));
+            tree.close();
+        });
+    }
+}
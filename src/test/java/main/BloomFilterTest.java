@@ -0,0 +1,83 @@
+package main;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests of BloomFilter, which must never miss a term it was given and
+ * say absent terms are present at about the rate it was sized for.
+ */
+class BloomFilterTest {
+    /**
+     * Method to make a filter of the terms 0, 2, 4 and so on.
+     * @param size the amount of terms.
+     * @param falsePositiveRate the rate the filter is sized for.
+     * @return the filter.
+     */
+    static BloomFilter evenTerms(int size, double falsePositiveRate) {
+        BloomFilter filter = new BloomFilter(size, falsePositiveRate);
+        for (int i = 0; i < size; i++) filter.add(2 * i);
+        return filter;
+    }
+
+    /**
+     * Method to get the share of odd terms, none of which were added, that a filter says are present.
+     * @param filter the filter.
+     * @param probes the amount of terms tried.
+     * @return the share of false positives.
+     */
+    static double falsePositives(BloomFilter filter, int probes) {
+        int positives = 0;
+        for (int i = 0; i < probes; i++) if (filter.mightContain(2 * i + 1)) positives++;
+        return (double) positives / probes;
+    }
+
+    @Test
+    void addedTermsAreAlwaysFound() {
+        Random random = new Random(23);
+        BloomFilter filter = new BloomFilter(5000, 0.01);
+        int[] terms = new int[5000];
+        for (int i = 0; i < terms.length; i++) {
+            terms[i] = random.nextInt(Integer.MAX_VALUE);
+            filter.add(terms[i]);
+        }
+        for (int term : terms) assertTrue(filter.mightContain(term), "term " + term);
+    }
+
+    @Test
+    void falsePositiveRateIsNearWhatItWasSizedFor() {
+        for (double rate : new double[]{0.1, 0.01, 0.001}) {
+            double measured = falsePositives(evenTerms(20000, rate), 200000);
+            assertTrue(measured < 2 * rate, "sized for " + rate + " but measured " + measured);
+        }
+        assertTrue(falsePositives(evenTerms(0, 0.01), 1000) < 0.02); // an empty page matches next to nothing
+    }
+
+    @Test
+    void filterReadsBackTheSame() throws IOException {
+        BloomFilter filter = evenTerms(1000, 0.01);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        filter.write(new DataOutputStream(bytes));
+        BloomFilter read = BloomFilter.read(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+        assertEquals(filter.numHashes, read.numHashes);
+        assertEquals(filter.numBits, read.numBits);
+        for (int i = 0; i < 4000; i++) assertEquals(filter.mightContain(i), read.mightContain(i), "term " + i);
+    }
+
+    @Test
+    void rateOutsideZeroAndOneIsRejected() {
+        assertThrows(IllegalArgumentException.class, () -> new BloomFilter(10, 0));
+        assertThrows(IllegalArgumentException.class, () -> new BloomFilter(10, 1));
+        assertThrows(IllegalArgumentException.class, () -> new BloomFilter(10, Double.NaN));
+    }
+}
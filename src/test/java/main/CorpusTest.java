@@ -0,0 +1,106 @@
+package main;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests of opening a corpus again, which must give back the pages of a complete build
+ * and nothing for a build that was never finished.
+ */
+class CorpusTest {
+    /**
+     * Directory the corpus is made in.
+     */
+    @TempDir
+    File dir;
+
+    /**
+     * Method to build a corpus from the generated pages.
+     * @param manifest whether the build is finished by writing the manifest.
+     * @throws Exception if the corpus could not be built.
+     */
+    void build(boolean manifest) throws Exception {
+        Corpus corpus = Corpus.create(dir, PersistentStatics.DEFAULT_PAGE_SIZE);
+        new IngestionPipeline(new IngestionPipelineTest.GeneratedSource(), (page, done, total) -> { }).run(corpus);
+        if (manifest) corpus.writeManifest(dir, "generated");
+        corpus.close();
+    }
+
+    @Test
+    void builtCorpusIsOpenedAgain() throws Exception {
+        build(true);
+        Corpus corpus = Corpus.open(dir, "generated");
+        assertNotNull(corpus);
+        assertEquals(IngestionPipelineTest.DOCUMENTS, corpus.pages.size());
+        assertEquals(IngestionPipelineTest.DOCUMENTS, corpus.index.numDocs);
+        int every = corpus.dictionary.lookup("every");
+        int word0 = corpus.dictionary.lookup("word0");
+        for (Webpage page : corpus.pages) {
+            assertEquals(page, corpus.get(page.docId));
+            assertEquals(1, page.terms().count(every), page.title);
+            assertNotNull(page.filter, page.title);
+            assertTrue(page.filter.mightContain(every), page.title);
+            assertEquals(page.title.equals("page 0") ? 1 : 0, page.count(word0), page.title);
+        }
+        corpus.close();
+    }
+
+    @Test
+    void unfinishedOrOtherCorpusIsNotOpened() throws Exception {
+        build(false);
+        assertNull(Corpus.open(dir, "generated"));
+        build(true);
+        assertNull(Corpus.open(dir, "another source"));
+    }
+
+    @Test
+    void pageWhoseCatalogRecordFailedIsLeftOut() throws Exception {
+        int pageSize = PersistentStatics.DEFAULT_PAGE_SIZE;
+        SegmentStore segments = new SegmentStore(dir, pageSize, new PageCache(Corpus.DEFAULT_CACHE_BYTES, pageSize)) {
+            @Override
+            synchronized void register(SegmentPageStore tree, int docId, String title, String link, BloomFilter filter, boolean inTree) throws IOException {
+                if (title.equals("page 7")) throw new IOException("disk full");
+                super.register(tree, docId, title, link, filter, inTree);
+            }
+        };
+        Corpus corpus = new Corpus(new InvertedIndex(new File(dir, Corpus.INDEX_FILE)), new TermDictionary(new File(dir, Corpus.TERMS_FILE)), segments);
+        List<String> failed = Collections.synchronizedList(new ArrayList<>());
+        new IngestionPipeline(new IngestionPipelineTest.GeneratedSource(), new IngestionPipeline.ProgressListener() {
+            @Override
+            public void indexed(Webpage page, int done, int total) {
+            }
+
+            @Override
+            public void failed(String location, Exception e) {
+                failed.add(location);
+            }
+        }).run(corpus);
+        assertEquals(List.of("doc/7"), failed);
+        assertEquals(IngestionPipelineTest.DOCUMENTS - 1, corpus.pages.size());
+        assertEquals(IngestionPipelineTest.DOCUMENTS - 1, corpus.index.numDocs);
+        corpus.writeManifest(dir, "generated");
+        corpus.close();
+
+        Corpus reopened = Corpus.open(dir, "generated");
+        assertNotNull(reopened);
+        assertEquals(IngestionPipelineTest.DOCUMENTS - 1, reopened.pages.size());
+        for (Webpage page : reopened.pages) {
+            assertFalse(page.title.equals("page 7"));
+            String n = page.title.substring(page.title.indexOf(' ') + 1);
+            assertEquals(1, page.count(reopened.dictionary.lookup("word" + n)), page.title);
+        }
+        reopened.close();
+    }
+}
@@ -0,0 +1,115 @@
+package main;
+
+import org.jsoup.nodes.Document;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+
+/**
+ * Tests of IngestionPipeline, which must index every document it can and never hang when a thread dies.
+ */
+class IngestionPipelineTest {
+    /**
+     * Amount of documents of the source.
+     */
+    static final int DOCUMENTS = 40;
+    /**
+     * Longest a run may take before it is taken to hang.
+     */
+    static final Duration TIMEOUT = Duration.ofSeconds(30);
+
+    /**
+     * Directory the corpus is made in.
+     */
+    @TempDir
+    File dir;
+
+    /**
+     * Source of small generated pages, doc/0 to doc/39.
+     */
+    static class GeneratedSource implements DocumentSource {
+        @Override
+        public List<String> locations() {
+            List<String> locations = new ArrayList<>();
+            for (int i = 0; i < DOCUMENTS; i++) locations.add("doc/" + i);
+            return locations;
+        }
+
+        @Override
+        public RawDocument load(String location) throws IOException {
+            String n = location.substring(location.indexOf('/') + 1);
+            return new RawDocument(location, "<html><head><title>page " + n + "</title></head>"
+                    + "<body><p>every page has word" + n + " in it</p></body></html>");
+        }
+    }
+
+    @Test
+    void indexesEveryDocument() {
+        assertTimeoutPreemptively(TIMEOUT, () -> {
+            Corpus corpus = Corpus.create(dir, PersistentStatics.DEFAULT_PAGE_SIZE);
+            AtomicInteger indexed = new AtomicInteger();
+            new IngestionPipeline(new GeneratedSource(), (page, done, total) -> indexed.incrementAndGet(), 2, 2, 2, 4).run(corpus);
+            assertEquals(DOCUMENTS, indexed.get());
+            assertEquals(DOCUMENTS, corpus.pages.size());
+            corpus.close();
+        });
+    }
+
+    @Test
+    void failedDocumentIsReportedAndSkipped() {
+        assertTimeoutPreemptively(TIMEOUT, () -> {
+            Corpus corpus = Corpus.create(dir, PersistentStatics.DEFAULT_PAGE_SIZE);
+            DocumentSource source = new GeneratedSource() {
+                @Override
+                public RawDocument load(String location) throws IOException {
+                    if (location.equals("doc/7")) throw new IOException("not found");
+                    return super.load(location);
+                }
+            };
+            List<String> failed = Collections.synchronizedList(new ArrayList<>());
+            IngestionPipeline.ProgressListener listener = new IngestionPipeline.ProgressListener() {
+                @Override
+                public void indexed(Webpage page, int done, int total) {
+                }
+
+                @Override
+                public void failed(String location, Exception e) {
+                    failed.add(location);
+                }
+            };
+            new IngestionPipeline(source, listener, 2, 2, 1, 4).run(corpus);
+            assertEquals(List.of("doc/7"), failed);
+            assertEquals(DOCUMENTS - 1, corpus.pages.size());
+            corpus.close();
+        });
+    }
+
+    @Test
+    void errorInAStageIsThrownInsteadOfHanging() {
+        assertTimeoutPreemptively(TIMEOUT, () -> {
+            Corpus corpus = Corpus.create(dir, PersistentStatics.DEFAULT_PAGE_SIZE);
+            DocumentSource source = new GeneratedSource() {
+                @Override
+                public Document parse(RawDocument raw) {
+                    if (raw.location.equals("doc/3")) throw new Error("parser died");
+                    return super.parse(raw);
+                }
+            };
+            IngestionPipeline pipeline = new IngestionPipeline(source, (page, done, total) -> { }, 2, 2, 1, 2);
+            Error e = assertThrows(Error.class, () -> pipeline.run(corpus));
+            assertEquals("parser died", e.getMessage());
+            corpus.close();
+        });
+    }
+}
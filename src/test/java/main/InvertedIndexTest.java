@@ -0,0 +1,194 @@
+package main;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.util.HashMap;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests of InvertedIndex and its log, which must give back every whole document it was given.
+ */
+class InvertedIndexTest {
+    /**
+     * Directory the log is made in.
+     */
+    @TempDir
+    File dir;
+
+    /**
+     * Method to get the counts of a document with terms 0 to size - 1, term i appearing i + 1 times.
+     * @param size the amount of terms.
+     * @return the count of every term, by term id.
+     */
+    static HashMap<Integer, Integer> counts(int size) {
+        HashMap<Integer, Integer> counts = new HashMap<>();
+        for (int i = 0; i < size; i++) counts.put(i, i + 1);
+        return counts;
+    }
+
+    @Test
+    void postingsAndFrequencies() throws IOException {
+        InvertedIndex index = new InvertedIndex();
+        index.addDocument(0, counts(3));
+        index.addDocument(1, counts(5));
+        assertEquals(2, index.numDocs);
+        assertEquals(2, index.documentFrequency(2));
+        assertEquals(1, index.documentFrequency(4));
+        assertEquals(0, index.documentFrequency(1000));
+        Postings p = index.postings(4);
+        assertEquals(1, p.docs[0]);
+        assertEquals(5, p.counts[0]);
+        assertNull(index.postings(1000));
+        assertEquals(Math.log10(3.0 / 3.0), index.idf(0), 1e-12);
+        assertEquals(Math.log10(3.0 / 2.0), index.idf(4), 1e-12);
+    }
+
+    @Test
+    void replayGivesBackEveryDocument() throws IOException {
+        File file = new File(dir, "index.dat");
+        InvertedIndex index = new InvertedIndex(file);
+        index.addDocument(0, counts(3));
+        index.addDocument(1, counts(5));
+        index.close();
+        InvertedIndex reopened = new InvertedIndex(file);
+        assertEquals(2, reopened.numDocs);
+        assertEquals(2, reopened.documentFrequency(2));
+        assertEquals(1, reopened.documentFrequency(4));
+        assertEquals(5, reopened.counts(1).count(4));
+        assertEquals(3, reopened.counts(0).size());
+        assertThrows(IOException.class, () -> reopened.counts(2));
+        reopened.close();
+    }
+
+    @Test
+    void tornRecordIsCutOffBeforeAppending() throws IOException {
+        File file = new File(dir, "index.dat");
+        InvertedIndex index = new InvertedIndex(file);
+        index.addDocument(0, counts(3));
+        long whole = file.length();
+        index.addDocument(1, counts(5));
+        index.close();
+        try (RandomAccessFile log = new RandomAccessFile(file, "rw")) {
+            log.setLength(log.length() - 3); // the last document was only partly written
+        }
+
+        InvertedIndex recovered = new InvertedIndex(file);
+        assertEquals(1, recovered.numDocs);
+        assertEquals(whole, file.length());
+        assertNull(recovered.postings(4));
+        recovered.addDocument(2, counts(2));
+        recovered.close();
+
+        InvertedIndex reopened = new InvertedIndex(file);
+        assertEquals(2, reopened.numDocs);
+        assertEquals(2, reopened.counts(2).count(1));
+        assertEquals(3, reopened.counts(0).count(2));
+        reopened.close();
+    }
+
+    @Test
+    void failedAppendLeavesNothingBehind() throws IOException {
+        File file = new File(dir, "index.dat");
+        InvertedIndex index = new InvertedIndex(file);
+        index.addDocument(0, counts(3));
+        long whole = file.length();
+        index.log.close();
+        FileOutputStream out = new FileOutputStream(file, true);
+        index.log = new DataOutputStream(new OutputStream() {
+            int left = 10; // the disk fills up in the middle of the record
+
+            @Override
+            public void write(int b) throws IOException {
+                if (left-- == 0) throw new IOException("disk full");
+                out.write(b);
+            }
+
+            @Override
+            public void close() throws IOException {
+                out.close();
+            }
+        });
+        assertThrows(IOException.class, () -> index.addDocument(1, counts(5)));
+        assertEquals(1, index.numDocs);
+        assertNull(index.postings(4));
+        assertEquals(whole, file.length());
+        index.addDocument(1, counts(2));
+        index.close();
+
+        InvertedIndex reopened = new InvertedIndex(file);
+        assertEquals(2, reopened.numDocs);
+        assertEquals(2, reopened.counts(1).count(1));
+        assertEquals(0, reopened.documentFrequency(4));
+        reopened.close();
+    }
+
+    @Test
+    void replayStepsOverEveryTermItRead() throws IOException {
+        File file = new File(dir, "index.dat");
+        try (DataOutputStream log = new DataOutputStream(new FileOutputStream(file))) {
+            log.writeInt(0); // a record with the same term twice
+            log.writeInt(2);
+            log.writeInt(7);
+            log.writeInt(1);
+            log.writeInt(7);
+            log.writeInt(2);
+            log.writeInt(1);
+            log.writeInt(1);
+            log.writeInt(3);
+            log.writeInt(4);
+        }
+        long length = file.length();
+        InvertedIndex index = new InvertedIndex(file);
+        assertEquals(2, index.numDocs);
+        assertEquals(length, file.length());
+        assertEquals(4, index.counts(1).count(3));
+        index.addDocument(2, counts(1));
+        index.close();
+
+        InvertedIndex reopened = new InvertedIndex(file);
+        assertEquals(3, reopened.numDocs);
+        assertEquals(1, reopened.counts(2).count(0));
+        reopened.close();
+    }
+
+    @Test
+    void readersSeeWholeDocumentsWhileTheyAreAdded() throws Throwable {
+        InvertedIndex index = new InvertedIndex();
+        index.addDocument(0, counts(1));
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        Thread writer = new Thread(() -> {
+            try {
+                for (int d = 1; d < 20000; d++) index.addDocument(d, counts(1 + d % 7));
+            } catch (Throwable e) {
+                failure.compareAndSet(null, e);
+            }
+        });
+        writer.start();
+        int docs = 0;
+        while (writer.isAlive()) {
+            int now = index.numDocs();
+            assertTrue(now >= docs);
+            docs = now;
+            Postings p = index.postings(0); // every document has term 0
+            for (int i = 0; i < p.size; i++) assertEquals(i, p.docs[i]);
+            assertTrue(p.size >= now);
+            assertTrue(index.idf(6) >= 0);
+        }
+        writer.join();
+        if (failure.get() != null) throw failure.get();
+        assertEquals(20000, index.postings(0).size);
+        assertEquals(20000 / 7, index.documentFrequency(6));
+    }
+}
@@ -0,0 +1,153 @@
+package main;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Tests of LoggedPageStore, which must recover every commit that made it to the log and
+ * nothing after it, and force a commit to disk within one sync interval.
+ */
+class LoggedPageStoreTest {
+    /**
+     * Size of the pages of the stores.
+     */
+    static final int PAGE_SIZE = PersistentStatics.DEFAULT_PAGE_SIZE;
+
+    /**
+     * Directory the stores and logs are made in.
+     */
+    @TempDir
+    File dir;
+
+    /**
+     * Method to make a page holding a single byte value.
+     * @param value the value of every byte of the page.
+     * @return the page.
+     */
+    static byte[] page(int value) {
+        byte[] page = new byte[PAGE_SIZE];
+        Arrays.fill(page, (byte) value);
+        return page;
+    }
+
+    /**
+     * Method to read a page of a store.
+     * @param store the store.
+     * @param id the id of the page.
+     * @return the bytes of the page.
+     * @throws IOException if the page could not be read.
+     */
+    static byte[] read(PageStore store, long id) throws IOException {
+        ByteBuffer buf = ByteBuffer.allocate(PAGE_SIZE);
+        store.read(id, buf);
+        return buf.array();
+    }
+
+    /**
+     * Method to open a logged store over a new file.
+     * @param name the name of the file of the underlying store.
+     * @param log the log file.
+     * @return the store.
+     * @throws IOException if the store could not be opened or recovered.
+     */
+    LoggedPageStore open(String name, File log) throws IOException {
+        return new LoggedPageStore(new ChannelPageStore(new RandomAccessFile(new File(dir, name), "rw"), PAGE_SIZE), log);
+    }
+
+    /**
+     * Method to write two commits and a page that is never committed, and copy the log
+     * as a crash would leave it, before the store is closed.
+     * @return the copy of the log.
+     * @throws IOException if the store or the log could not be written.
+     */
+    File crashedLog() throws IOException {
+        File log = new File(dir, "wal.log");
+        LoggedPageStore store = open("pages.db", log);
+        store.write(1, ByteBuffer.wrap(page(1)));
+        store.commit();
+        store.write(2, ByteBuffer.wrap(page(2)));
+        store.commit();
+        store.write(3, ByteBuffer.wrap(page(3)));
+        store.sync();
+        File copy = new File(dir, "crashed.log");
+        Files.copy(log.toPath(), copy.toPath());
+        store.close();
+        return copy;
+    }
+
+    @Test
+    void recoversEveryCommitAndDropsTheRest() throws IOException {
+        LoggedPageStore recovered = open("recovered.db", crashedLog());
+        assertArrayEquals(page(1), read(recovered, 1));
+        assertArrayEquals(page(2), read(recovered, 2));
+        assertArrayEquals(page(0), read(recovered, 3));
+        recovered.close();
+    }
+
+    @Test
+    void tornRecordAtTheEndIsDropped() throws IOException {
+        File log = crashedLog();
+        try (RandomAccessFile out = new RandomAccessFile(log, "rw")) {
+            out.seek(out.length());
+            out.writeByte(LoggedPageStore.PAGE_RECORD);
+            out.writeLong(4);
+            out.writeInt(Integer.MAX_VALUE - 7); // a length torn by the crash
+            out.writeInt(-5);
+        }
+        LoggedPageStore recovered = open("recovered.db", log);
+        assertArrayEquals(page(2), read(recovered, 2));
+        assertArrayEquals(page(0), read(recovered, 4));
+        recovered.close();
+    }
+
+    @Test
+    void commitWithACorruptedPageIsDropped() throws IOException {
+        File log = crashedLog();
+        long secondPage = 2 * PersistentStatics.INT_WIDTH + (1 + 8 + 4 + PAGE_SIZE + 4) + (1 + 8 + 4);
+        try (RandomAccessFile out = new RandomAccessFile(log, "rw")) {
+            out.seek(secondPage + 1 + 8 + 4 + 100); // a byte in the middle of page 2
+            out.writeByte(7);
+        }
+        LoggedPageStore recovered = open("recovered.db", log);
+        assertArrayEquals(page(1), read(recovered, 1));
+        assertArrayEquals(page(0), read(recovered, 2));
+        recovered.close();
+    }
+
+    @Test
+    void commitIsForcedWithinTheSyncInterval() throws Exception {
+        File log = new File(dir, "wal.log");
+        PageStore pages = new ChannelPageStore(new RandomAccessFile(new File(dir, "pages.db"), "rw"), PAGE_SIZE);
+        LoggedPageStore store = new LoggedPageStore(pages, log, 50, Long.MAX_VALUE, Long.MAX_VALUE);
+        store.write(1, ByteBuffer.wrap(page(1)));
+        store.commit(); // no other commit follows to force the log
+        long deadline = System.nanoTime() + 5_000_000_000L;
+        long unsynced;
+        do {
+            Thread.sleep(10);
+            synchronized (store) {
+                unsynced = store.unsyncedBytes;
+            }
+        } while (unsynced > 0 && System.nanoTime() < deadline);
+        assertEquals(0, unsynced);
+        store.close();
+    }
+
+    @Test
+    void partialPageIsRejected() throws IOException {
+        LoggedPageStore store = open("pages.db", new File(dir, "wal.log"));
+        assertThrows(IllegalArgumentException.class, () -> store.write(1, ByteBuffer.allocate(PAGE_SIZE - 1)));
+        store.close();
+    }
+}
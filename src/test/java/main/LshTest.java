@@ -0,0 +1,154 @@
+package main;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests of MinHash and LshIndex, and of the recall of a ranker taking its
+ * candidates from an LSH index against the exact ranker.
+ */
+class LshTest {
+    /**
+     * Amount of topics the generated pages are about.
+     */
+    static final int TOPICS = 20;
+    /**
+     * Amount of pages about every topic.
+     */
+    static final int PAGES_PER_TOPIC = 15;
+
+    /**
+     * Directory the corpus is made in.
+     */
+    @TempDir
+    File dir;
+
+    /**
+     * Source of generated pages, each made of words of its topic and a few words of any topic,
+     * so pages of one topic are much more alike than pages of two.
+     */
+    static class TopicSource implements DocumentSource {
+        @Override
+        public List<String> locations() {
+            List<String> locations = new ArrayList<>();
+            for (int i = 0; i < TOPICS * PAGES_PER_TOPIC; i++) locations.add("doc/" + i);
+            return locations;
+        }
+
+        @Override
+        public RawDocument load(String location) {
+            int n = Integer.parseInt(location.substring(location.indexOf('/') + 1));
+            Random random = new Random(n);
+            StringBuilder text = new StringBuilder();
+            for (int i = 0; i < 20; i++) text.append(" topic").append(n % TOPICS).append('x').append(random.nextInt(30));
+            for (int i = 0; i < 4; i++) text.append(" any").append(random.nextInt(2000));
+            return new RawDocument(location, "<html><head><title>page " + n + "</title></head><body><p>"
+                    + text + "</p></body></html>");
+        }
+    }
+
+    /**
+     * Method to make a set of distinct random term ids.
+     * @param random the source of the draws.
+     * @param size the amount of terms.
+     * @return the terms.
+     */
+    static HashSet<Integer> randomSet(Random random, int size) {
+        HashSet<Integer> set = new HashSet<>();
+        while (set.size() < size) set.add(random.nextInt(1 << 20));
+        return set;
+    }
+
+    /**
+     * Method to turn a set of term ids into an array.
+     * @param set the terms.
+     * @return the terms, in no particular order.
+     */
+    static int[] array(HashSet<Integer> set) {
+        int[] a = new int[set.size()];
+        int i = 0;
+        for (int term : set) a[i++] = term;
+        return a;
+    }
+
+    @Test
+    void signaturesAgreeAboutAsOftenAsTheSetsOverlap() {
+        MinHash minHash = new MinHash(512, 24);
+        Random random = new Random(24);
+        for (int shared : new int[]{0, 50, 100, 150, 200}) {
+            HashSet<Integer> common = randomSet(random, shared);
+            HashSet<Integer> a = new HashSet<>(common);
+            HashSet<Integer> b = new HashSet<>(common);
+            while (a.size() < 200) a.add(random.nextInt(1 << 20));
+            while (b.size() < 200) b.add(random.nextInt(1 << 20));
+            HashSet<Integer> union = new HashSet<>(a);
+            union.addAll(b);
+            HashSet<Integer> both = new HashSet<>(a);
+            both.retainAll(b);
+            double jaccard = (double) both.size() / union.size();
+            double estimate = MinHash.similarity(minHash.signature(array(a)), minHash.signature(array(b)));
+            assertEquals(jaccard, estimate, 0.08, shared + " terms shared");
+        }
+    }
+
+    @Test
+    void samePageIsAlwaysACandidateAndDisjointRarelyIs() {
+        LshIndex lsh = new LshIndex(LshIndex.DEFAULT_BANDS, LshIndex.DEFAULT_ROWS);
+        Random random = new Random(25);
+        int[][] pages = new int[200][];
+        for (int d = 0; d < pages.length; d++) {
+            pages[d] = array(randomSet(random, 40));
+            lsh.add(d, pages[d]);
+        }
+        lsh.add(pages.length, new int[0]);
+        int others = 0;
+        for (int d = 0; d < pages.length; d++) {
+            int[] candidates = lsh.candidates(pages[d], -1);
+            assertTrue(Arrays.binarySearch(candidates, d) >= 0, "page " + d + " did not find itself");
+            others += candidates.length - 1;
+            for (int c : lsh.candidates(pages[d], d)) assertTrue(c != d);
+        }
+        assertTrue(others < pages.length, others + " candidates among pages sharing next to no terms");
+        assertArrayEquals(new int[0], lsh.candidates(new int[0], -1));
+    }
+
+    @Test
+    void probabilityFollowsTheBandLayout() {
+        assertEquals(0, LshIndex.probability(0, 64, 2), 0);
+        assertEquals(1, LshIndex.probability(1, 64, 2), 0);
+        assertEquals(1 - Math.pow(1 - 0.25, 64), LshIndex.probability(0.5, 64, 2), 1e-12);
+        assertTrue(LshIndex.probability(0.3, 16, 4) < LshIndex.probability(0.3, 64, 2));
+        assertThrows(IllegalArgumentException.class, () -> new LshIndex(0, 2));
+    }
+
+    @Test
+    void lshRankerRecallsTheExactMatches() throws Exception {
+        Corpus corpus = Corpus.create(dir, PersistentStatics.DEFAULT_PAGE_SIZE);
+        new IngestionPipeline(new TopicSource(), (page, done, total) -> { }).run(corpus);
+        LshIndex lsh = corpus.enableLsh(LshIndex.DEFAULT_BANDS, LshIndex.DEFAULT_ROWS);
+        assertEquals(TOPICS * PAGES_PER_TOPIC, lsh.size);
+        int[] queries = new int[60];
+        for (int i = 0; i < queries.length; i++) queries[i] = 5 * i;
+        Ranker ranker = new Ranker(corpus);
+        double recall = ranker.recall(queries, 5);
+        assertTrue(recall >= 0.9, "recall@5 was " + recall);
+
+        int[] candidates = lsh.candidates(corpus.vector(0).terms, 0);
+        assertTrue(candidates.length < corpus.size() / 2, candidates.length + " candidates, the index narrows nothing down");
+        corpus.disableLsh();
+        assertEquals(1, new Ranker(corpus).recall(queries, 5), 0);
+        corpus.close();
+    }
+}
@@ -0,0 +1,91 @@
+package main;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.lang.management.ManagementFactory;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Tests of NodeView and the lookups made through it, which must find what the decoded
+ * nodes hold without allocating anything.
+ */
+class NodeViewTest {
+    /**
+     * Directory the tree files are made in.
+     */
+    @TempDir
+    File dir;
+
+    /**
+     * Method to make a tree of many terms and write it to its pages.
+     * @param name the name of the tree file.
+     * @param cacheCapacity the amount of nodes the buffer pool may hold.
+     * @return the tree.
+     * @throws IOException if the tree could not be written.
+     */
+    BTree tree(String name, int cacheCapacity) throws IOException {
+        BTree tree = new BTree(new ChannelPageStore(new RandomAccessFile(new File(dir, name), "rw"),
+                PersistentStatics.DEFAULT_PAGE_SIZE), new TermDictionary(), cacheCapacity);
+        for (int i = 0; i < 50000; i++) tree.insert(7 * i % 50000, 2);
+        tree.flush();
+        return tree;
+    }
+
+    /**
+     * Method to get how many bytes a round of lookups allocates on the calling thread.
+     * @param tree the tree.
+     * @return the bytes allocated.
+     * @throws IOException if a page could not be read.
+     */
+    static long allocatedByLookups(BTree tree) throws IOException {
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long thread = Thread.currentThread().getId();
+        long before = threads.getThreadAllocatedBytes(thread);
+        long total = 0;
+        for (int term = 0; term < 60000; term++) total += tree.count(term);
+        long after = threads.getThreadAllocatedBytes(thread);
+        assertEquals(100000, total);
+        return after - before;
+    }
+
+    @Test
+    void viewFindsWhatTheNodeHolds() throws IOException {
+        BTree tree = tree("view.bt", BufferPool.MIN_CAPACITY);
+        NodeView view = new NodeView(tree.codec);
+        for (long id = BTree.ROOT_ID; id < BTree.ROOT_ID + tree.treeSize.get(); id++) {
+            Node n = tree.diskRead(id);
+            view.read(tree.store, id);
+            assertEquals(n.leaf, view.leaf);
+            assertEquals(n.numEntries, view.numEntries);
+            for (int i = 0; i < n.numEntries; i++) {
+                assertEquals(n.entries[i].term, view.key(i));
+                assertEquals(n.entries[i].count, view.count(i));
+                assertEquals(n.find(n.entries[i].term), view.find(n.entries[i].term));
+                assertEquals(n.find(n.entries[i].term + 1), view.find(n.entries[i].term + 1));
+            }
+            if (!n.leaf) {
+                for (int i = 0; i <= n.numEntries; i++) assertEquals(n.children[i].id, view.child(i));
+            }
+        }
+        tree.close();
+    }
+
+    @Test
+    void lookupsAllocateNothing() throws IOException {
+        BTree cached = tree("cached.bt", 1000); // every node stays in the buffer pool
+        BTree paged = tree("paged.bt", BufferPool.MIN_CAPACITY); // most nodes are read through a view
+        for (int round = 0; round < 3; round++) { // the thread's view and buffers are made on the first round
+            allocatedByLookups(cached);
+            allocatedByLookups(paged);
+        }
+        assertEquals(0, allocatedByLookups(cached));
+        assertEquals(0, allocatedByLookups(paged));
+        cached.close();
+        paged.close();
+    }
+}
@@ -0,0 +1,138 @@
+package main;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests of PageCache, which must give every page a second chance before reusing its slot,
+ * and keep every cached page reachable when others are dropped from its table.
+ */
+class PageCacheTest {
+    /**
+     * Size of the pages of the caches.
+     */
+    static final int PAGE_SIZE = PersistentStatics.DEFAULT_PAGE_SIZE;
+
+    /**
+     * Directory the stores are made in.
+     */
+    @TempDir
+    File dir;
+
+    /**
+     * Method to make a page whose bytes all come from a key.
+     * @param key the key.
+     * @return the page.
+     */
+    static ByteBuffer page(long key) {
+        byte[] page = new byte[PAGE_SIZE];
+        Arrays.fill(page, (byte) (key * 31 + 7));
+        return ByteBuffer.wrap(page);
+    }
+
+    /**
+     * Method to check whether a page is in a cache, and if it is that it holds what was put.
+     * @param cache the cache.
+     * @param key the key of the page.
+     * @return true if the page is in the cache.
+     */
+    static boolean cached(PageCache cache, long key) {
+        ByteBuffer read = ByteBuffer.allocate(PAGE_SIZE);
+        if (!cache.read(key, read)) return false;
+        assertArrayEquals(page(key).array(), read.array(), "page " + key);
+        return true;
+    }
+
+    @Test
+    void clockGivesUsedPagesASecondChance() {
+        PageCache cache = new PageCache(4 * PAGE_SIZE, PAGE_SIZE);
+        assertEquals(4, cache.capacity());
+        for (long key = 1; key <= 4; key++) cache.put(key, page(key));
+        cache.put(5, page(5)); // every page was used, so the hand goes round once and takes the first
+        assertFalse(cached(cache, 1));
+        assertTrue(cached(cache, 2)); // used again since the hand went past it
+        cache.put(6, page(6));
+        assertTrue(cached(cache, 2));
+        assertFalse(cached(cache, 3));
+        assertTrue(cached(cache, 4));
+        assertTrue(cached(cache, 5));
+        assertTrue(cached(cache, 6));
+    }
+
+    @Test
+    void droppedKeysLeaveTheOthersReachable() {
+        PageCache cache = new PageCache(64 * PAGE_SIZE, PAGE_SIZE);
+        Random random = new Random(21);
+        HashSet<Long> invalidated = new HashSet<>();
+        for (int i = 0; i < 20000; i++) {
+            long key = PageCache.key(1 + random.nextInt(3), random.nextInt(200));
+            if (random.nextInt(3) == 0) {
+                cache.invalidate(key);
+                invalidated.add(key);
+            } else {
+                cache.put(key, page(key));
+                invalidated.remove(key);
+            }
+            if (i % 100 != 0) continue;
+            // every page in a slot is found through the table, and nothing else is
+            int inSlots = 0;
+            for (long slotKey : cache.slotKeys) {
+                if (slotKey == PageCache.NO_KEY) continue;
+                inSlots++;
+                assertTrue(cached(cache, slotKey), "page " + slotKey + " is in a slot but not found");
+            }
+            int inTable = 0;
+            for (long tableKey : cache.keys) if (tableKey != PageCache.NO_KEY) inTable++;
+            assertEquals(inSlots, inTable);
+            for (long dropped : invalidated) assertFalse(cached(cache, dropped));
+        }
+    }
+
+    @Test
+    void storesSharingACacheKeepTheirOwnPages() throws IOException {
+        PageCache cache = new PageCache(128 * PAGE_SIZE, PAGE_SIZE);
+        ArrayList<CachedPageStore> stores = new ArrayList<>();
+        for (int s = 0; s < 2; s++) {
+            stores.add(new CachedPageStore(new ChannelPageStore(new RandomAccessFile(new File(dir, "store-" + s), "rw"), PAGE_SIZE), cache));
+        }
+        for (int id = 0; id < 40; id++) {
+            for (int s = 0; s < 2; s++) stores.get(s).write(id, page(100 * s + id));
+        }
+        for (int id = 0; id < 40; id++) {
+            for (int s = 0; s < 2; s++) {
+                ByteBuffer read = ByteBuffer.allocate(PAGE_SIZE);
+                stores.get(s).read(id, read);
+                assertArrayEquals(page(100 * s + id).array(), read.array(), "store " + s + ", page " + id);
+            }
+        }
+        assertEquals(0, cache.misses); // written through, so every read hits
+        for (CachedPageStore store : stores) store.close();
+    }
+
+    @Test
+    void shortPageReadsBackZeroFilled() {
+        PageCache cache = new PageCache(2 * PAGE_SIZE, PAGE_SIZE);
+        cache.put(1, page(1));
+        cache.put(1, ByteBuffer.wrap(new byte[]{9, 9}));
+        ByteBuffer read = ByteBuffer.allocate(PAGE_SIZE);
+        assertTrue(cache.read(1, read));
+        byte[] expected = new byte[PAGE_SIZE];
+        expected[0] = 9;
+        expected[1] = 9;
+        assertArrayEquals(expected, read.array());
+    }
+}
@@ -0,0 +1,172 @@
+package main;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests of Ranker, whose top matches must be those of scoring every page of the corpus.
+ */
+class RankerTest {
+    /**
+     * Amount of pages in the corpus.
+     */
+    static final int PAGES = 1500;
+    /**
+     * Amount of distinct terms the pages are drawn from.
+     */
+    static final int VOCABULARY = 400;
+
+    /**
+     * Method to draw the counts of a page.
+     * @param random the source of the draws.
+     * @return the count of every term of the page, by term id.
+     */
+    static HashMap<Integer, Integer> randomCounts(Random random) {
+        HashMap<Integer, Integer> counts = new HashMap<>();
+        for (int i = 0; i < 25; i++) counts.merge(random.nextInt(VOCABULARY), 1 + random.nextInt(4), Integer::sum);
+        return counts;
+    }
+
+    /**
+     * Method to make a corpus of random pages. Only the index of the corpus is used for ranking,
+     * so the pages and their trees are left out and the matches are compared by score.
+     * @param random the source of the draws.
+     * @return the corpus.
+     * @throws IOException if the index could not be written.
+     */
+    static Corpus randomCorpus(Random random) throws IOException {
+        Corpus corpus = new Corpus(new InvertedIndex(), new TermDictionary(), null);
+        for (int d = 0; d < PAGES; d++) {
+            corpus.pages.add(null);
+            corpus.index.addDocument(d, randomCounts(random));
+        }
+        return corpus;
+    }
+
+    /**
+     * Method to get the k best scores by scoring every page of a corpus.
+     * @param corpus the corpus.
+     * @param query the vector of the query.
+     * @param k the amount of scores.
+     * @param excludeDoc the document id of a page that is left out, or -1.
+     * @return the best scores greater than 0, from best to worst.
+     */
+    static double[] bruteForce(Corpus corpus, TermVector query, int k, int excludeDoc) {
+        ArrayList<Double> scores = new ArrayList<>();
+        for (int d = 0; d < corpus.size(); d++) {
+            double score = query.cosine(corpus.vector(d));
+            if (d != excludeDoc && score > 0) scores.add(score);
+        }
+        scores.sort((a, b) -> Double.compare(b, a));
+        double[] best = new double[Math.min(k, scores.size())];
+        for (int i = 0; i < best.length; i++) best[i] = scores.get(i);
+        return best;
+    }
+
+    /**
+     * Method to check matches have the expected scores, in order.
+     * @param expected the expected scores.
+     * @param matches the matches.
+     */
+    static void assertScores(double[] expected, ArrayList<Match> matches) {
+        assertEquals(expected.length, matches.size());
+        for (int i = 0; i < expected.length; i++) assertEquals(expected[i], matches.get(i).score, 1e-12);
+    }
+
+    @Test
+    void topKMatchesBruteForce() throws IOException {
+        Random random = new Random(6);
+        Corpus corpus = randomCorpus(random);
+        Ranker ranker = new Ranker(corpus);
+        for (int q = 0; q < 20; q++) {
+            TermVector query = TermVector.of(randomCounts(random), corpus.index);
+            for (int k : new int[]{1, 5, 10, PAGES + 1}) assertScores(bruteForce(corpus, query, k, -1), ranker.topK(query, k, -1));
+        }
+    }
+
+    @Test
+    void forkJoinScoringMatchesBruteForce() throws IOException {
+        Random random = new Random(9);
+        Corpus corpus = randomCorpus(random);
+        ForkJoinPool pool = new ForkJoinPool(4);
+        Ranker ranker = new Ranker(corpus, pool);
+        for (int q = 0; q < 20; q++) {
+            TermVector query = TermVector.of(randomCounts(random), corpus.index);
+            for (int k : new int[]{1, 10, PAGES + 1}) assertScores(bruteForce(corpus, query, k, 3), ranker.topK(query, k, 3));
+        }
+        pool.shutdown();
+    }
+
+    @Test
+    void pageOfTheQueryIsLeftOut() throws IOException {
+        Random random = new Random(7);
+        Corpus corpus = randomCorpus(random);
+        Ranker ranker = new Ranker(corpus);
+        for (int doc = 0; doc < 10; doc++) {
+            TermVector query = corpus.vector(doc);
+            assertEquals(1, ranker.topK(query, 1, -1).get(0).score, 1e-12);
+            assertScores(bruteForce(corpus, query, 10, doc), ranker.topK(query, 10, doc));
+        }
+    }
+
+    @Test
+    void queryWithoutKnownTermsMatchesNothing() throws IOException {
+        Corpus corpus = randomCorpus(new Random(8));
+        HashMap<Integer, Integer> unknown = new HashMap<>();
+        unknown.put(VOCABULARY, 3);
+        assertTrue(new Ranker(corpus).topK(TermVector.of(unknown, corpus.index), 5, -1).isEmpty());
+        assertEquals(0, new Ranker(corpus).topK(corpus.vector(0), 0, -1).size());
+    }
+
+    @Test
+    void rankingWhilePagesAreAdded() throws Throwable {
+        Corpus corpus = randomCorpus(new Random(31));
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        Thread writer = new Thread(() -> {
+            try {
+                Random random = new Random(32);
+                for (int d = 0; d < PAGES; d++) {
+                    CatalogEntry entry = new CatalogEntry(-1, -1, "added " + d, null, null, false);
+                    corpus.add(new Webpage(entry, null, corpus.dictionary, null), randomCounts(random));
+                }
+            } catch (Throwable e) {
+                failure.compareAndSet(null, e);
+            }
+        });
+        writer.start();
+        Ranker ranker = new Ranker(corpus, ForkJoinPool.commonPool());
+        Random random = new Random(33);
+        int rankings = 0;
+        while (writer.isAlive() || rankings == 0) {
+            TermVector query = TermVector.of(randomCounts(random), corpus.index);
+            for (Match m : ranker.topK(query, 10, -1)) assertTrue(m.score > 0);
+            rankings++;
+        }
+        writer.join();
+        if (failure.get() != null) throw failure.get();
+        assertEquals(2 * PAGES, corpus.size());
+        assertEquals(2 * PAGES, corpus.index.numDocs());
+        assertEquals(2 * PAGES, corpus.vectors().length);
+    }
+
+    @Test
+    void cosineOfSortedVectors() {
+        TermVector a = new TermVector(new int[]{1, 2, 3}, new double[]{1, 2, 3});
+        TermVector b = new TermVector(new int[]{2, 3, 4}, new double[]{4, 5, 6});
+        double expected = (2 * 4 + 3 * 5) / (Math.sqrt(14) * Math.sqrt(77));
+        assertEquals(expected, a.cosine(b), 1e-12);
+        assertEquals(1, a.cosine(a), 1e-12);
+        assertEquals(0, a.cosine(new TermVector(new int[0], new double[0])), 0);
+        assertTrue(Arrays.equals(new int[]{1, 2, 3}, a.terms));
+    }
+}
@@ -0,0 +1,98 @@
+package main;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests of SegmentStore, whose trees share its segment files and must be found again
+ * through its catalog, which never hides a record written after a crash behind a torn one.
+ */
+class SegmentStoreTest {
+    /**
+     * Size of the pages of the stores.
+     */
+    static final int PAGE_SIZE = PersistentStatics.DEFAULT_PAGE_SIZE;
+
+    /**
+     * Directory the store is made in.
+     */
+    @TempDir
+    File dir;
+
+    /**
+     * Method to build the tree of a document in a store and record it in the catalog.
+     * The document's terms are docId to docId + size - 1, each with a count of docId + 1.
+     * @param store the store.
+     * @param dictionary the dictionary of the tree.
+     * @param docId the document id.
+     * @param size the amount of terms.
+     * @throws IOException if the tree or the catalog could not be written.
+     */
+    static void addDocument(SegmentStore store, TermDictionary dictionary, int docId, int size) throws IOException {
+        SegmentPageStore pages = store.create();
+        BTree tree = new BTree(pages, dictionary);
+        for (int term = docId; term < docId + size; term++) tree.insert(term, docId + 1);
+        tree.flush();
+        store.register(pages, docId, "page " + docId, "doc/" + docId, new BloomFilter(size, 0.01), true);
+    }
+
+    @Test
+    void treesAreFoundAgainThroughTheCatalog() throws IOException {
+        TermDictionary dictionary = new TermDictionary();
+        SegmentStore store = new SegmentStore(dir, PAGE_SIZE);
+        for (int d = 0; d < 5; d++) addDocument(store, dictionary, d, 500 * (d + 1)); // the extents of the trees interleave
+        store.close();
+
+        SegmentStore reopened = new SegmentStore(dir, PAGE_SIZE);
+        for (int d = 0; d < 5; d++) {
+            CatalogEntry entry = reopened.document(d);
+            assertNotNull(entry);
+            assertEquals("page " + d, entry.title);
+            assertEquals("doc/" + d, entry.link);
+            assertTrue(entry.inTree);
+            BTree tree = BTree.open(reopened.open(entry.tree), dictionary);
+            assertEquals(500 * (d + 1), tree.size());
+            assertEquals(d + 1, tree.count(d + 7));
+            assertEquals(0, tree.count(d + 500 * (d + 1)));
+        }
+        assertNull(reopened.document(5));
+        reopened.close();
+    }
+
+    @Test
+    void tornRecordIsCutOffBeforeAppending() throws IOException {
+        TermDictionary dictionary = new TermDictionary();
+        SegmentStore store = new SegmentStore(dir, PAGE_SIZE);
+        addDocument(store, dictionary, 0, 100);
+        addDocument(store, dictionary, 1, 100);
+        store.close();
+        File catalog = new File(dir, SegmentStore.CATALOG_FILE);
+        try (RandomAccessFile out = new RandomAccessFile(catalog, "rw")) {
+            out.setLength(out.length() - 2); // the record of document 1 was only partly written
+        }
+
+        SegmentStore recovered = new SegmentStore(dir, PAGE_SIZE);
+        assertNotNull(recovered.document(0));
+        assertNull(recovered.document(1));
+        addDocument(recovered, dictionary, 2, 100);
+        recovered.close();
+
+        SegmentStore reopened = new SegmentStore(dir, PAGE_SIZE);
+        assertNotNull(reopened.document(0));
+        assertNull(reopened.document(1));
+        CatalogEntry entry = reopened.document(2);
+        assertNotNull(entry);
+        assertEquals("page 2", entry.title);
+        assertEquals(3, BTree.open(reopened.open(entry.tree), dictionary).count(50));
+        reopened.close();
+    }
+}
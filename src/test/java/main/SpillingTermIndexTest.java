@@ -0,0 +1,140 @@
+package main;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.HashMap;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests of SpillingTermIndex, which must only make a b-tree once its counts spill,
+ * of HashTermIndex, the table it keeps them in until then, and of the pages whose
+ * counts never spilled, which are read back from the inverted index.
+ */
+class SpillingTermIndexTest {
+    /**
+     * Directory the trees and the corpus are made in.
+     */
+    @TempDir
+    File dir;
+
+    /**
+     * Amount of trees the factory of the index being tested has made.
+     */
+    int treesMade;
+
+    /**
+     * Method to get a factory of trees in new files, counting the trees it makes.
+     * @return the factory.
+     */
+    SpillingTermIndex.TreeFactory factory() {
+        return () -> new BTree(new RandomAccessFile(new File(dir, "tree-" + treesMade++ + ".bt"), "rw"), new TermDictionary());
+    }
+
+    /**
+     * Method to check an index holds exactly the expected counts.
+     * @param expected the count of every term, by term id.
+     * @param index the index.
+     * @throws IOException if the index could not be read.
+     */
+    static void assertCounts(HashMap<Integer, Integer> expected, TermIndex index) throws IOException {
+        assertEquals(expected.size(), index.size());
+        for (HashMap.Entry<Integer, Integer> e : expected.entrySet()) assertEquals((int) e.getValue(), index.count(e.getKey()));
+        HashMap<Integer, Integer> seen = new HashMap<>();
+        index.forEach(seen::put);
+        assertEquals(expected, seen);
+    }
+
+    @Test
+    void hashIndexMatchesAMap() throws IOException {
+        HashTermIndex index = new HashTermIndex();
+        HashMap<Integer, Integer> expected = new HashMap<>();
+        Random random = new Random(20);
+        for (int i = 0; i < 50000; i++) {
+            int term = random.nextInt(10000);
+            index.insert(term, 2);
+            expected.merge(term, 2, Integer::sum);
+        }
+        assertCounts(expected, index);
+        assertEquals(0, index.count(10000));
+        int[] sorted = index.sortedTerms();
+        for (int i = 1; i < sorted.length; i++) assertTrue(sorted[i - 1] < sorted[i]);
+    }
+
+    @Test
+    void smallIndexNeverMakesATree() throws IOException {
+        SpillingTermIndex index = new SpillingTermIndex(factory(), 1 << 20);
+        HashMap<Integer, Integer> expected = new HashMap<>();
+        for (int i = 0; i < 200; i++) {
+            index.insert(i % 50, 1);
+            expected.merge(i % 50, 1, Integer::sum);
+        }
+        index.flush();
+        assertTrue(index.inMemory());
+        assertEquals(0, treesMade);
+        assertEquals(0, index.count(1000));
+        assertCounts(expected, index);
+    }
+
+    @Test
+    void spillsOnceTheTableIsTooLarge() throws IOException {
+        SpillingTermIndex index = new SpillingTermIndex(factory(), 1 << 12);
+        HashMap<Integer, Integer> expected = new HashMap<>();
+        Random random = new Random(20);
+        for (int i = 0; i < 20000; i++) {
+            int term = random.nextInt(3000);
+            index.insert(term, 1);
+            expected.merge(term, 1, Integer::sum);
+        }
+        index.flush();
+        assertFalse(index.inMemory());
+        assertEquals(1, treesMade);
+        assertCounts(expected, index);
+        assertCounts(expected, index.tree);
+    }
+
+    @Test
+    void largeInsertAllGoesStraightToTheTree() throws IOException {
+        SpillingTermIndex index = new SpillingTermIndex(factory(), 1 << 10);
+        int[] terms = new int[1000];
+        int[] counts = new int[1000];
+        HashMap<Integer, Integer> expected = new HashMap<>();
+        for (int i = 0; i < terms.length; i++) {
+            terms[i] = 3 * i;
+            counts[i] = i + 1;
+            expected.put(terms[i], counts[i]);
+        }
+        index.insertAll(terms, counts);
+        assertFalse(index.inMemory());
+        assertEquals(1, treesMade);
+        assertCounts(expected, index);
+    }
+
+    @Test
+    void pagesKeptInMemoryAreReadBackAfterReopen() throws Exception {
+        Corpus corpus = Corpus.create(dir, PersistentStatics.DEFAULT_PAGE_SIZE);
+        new IngestionPipeline(new IngestionPipelineTest.GeneratedSource(), (page, done, total) -> { }).run(corpus);
+        corpus.writeManifest(dir, "generated");
+        corpus.close();
+
+        Corpus reopened = Corpus.open(dir, "generated");
+        assertNotNull(reopened);
+        assertEquals(IngestionPipelineTest.DOCUMENTS, reopened.pages.size());
+        for (Webpage page : reopened.pages) {
+            assertFalse(reopened.segments.document(page.docId).inTree, page.title + " was written to a tree");
+            String n = page.title.substring(page.title.indexOf(' ') + 1);
+            assertEquals(1, page.count(reopened.dictionary.lookup("word" + n)), page.title);
+            assertEquals(1, page.count(reopened.dictionary.lookup("every")), page.title);
+            assertEquals(6, page.terms().size(), page.title);
+        }
+        reopened.close();
+    }
+}
@@ -0,0 +1,66 @@
+package main;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Tests of the file of TermDictionary, which must give every term back its id and
+ * never hide a term written after a crash behind a torn one.
+ */
+class TermDictionaryTest {
+    /**
+     * Directory the dictionary file is made in.
+     */
+    @TempDir
+    File dir;
+
+    @Test
+    void termsKeepTheirIdsAfterReopen() throws IOException {
+        File file = new File(dir, "terms.dat");
+        TermDictionary dictionary = new TermDictionary(file);
+        for (int i = 0; i < 1000; i++) assertEquals(i, dictionary.id("term" + i));
+        assertEquals(7, dictionary.id("term7"));
+        dictionary.close();
+
+        TermDictionary reopened = new TermDictionary(file);
+        assertEquals(1000, reopened.size());
+        for (int i = 0; i < 1000; i += 37) assertEquals(i, reopened.lookup("term" + i));
+        assertEquals("term999", reopened.term(999));
+        assertEquals(-1, reopened.lookup("absent"));
+        reopened.close();
+    }
+
+    @Test
+    void tornTermIsCutOffBeforeAppending() throws IOException {
+        File file = new File(dir, "terms.dat");
+        TermDictionary dictionary = new TermDictionary(file);
+        dictionary.id("apple");
+        dictionary.id("apricot");
+        dictionary.flush();
+        long whole = file.length();
+        dictionary.id("avocado");
+        dictionary.close();
+        try (RandomAccessFile out = new RandomAccessFile(file, "rw")) {
+            out.setLength(out.length() - 2); // the last term was only partly written
+        }
+
+        TermDictionary recovered = new TermDictionary(file);
+        assertEquals(2, recovered.size());
+        assertEquals(whole, file.length());
+        assertEquals(2, recovered.id("banana"));
+        recovered.close();
+
+        TermDictionary reopened = new TermDictionary(file);
+        assertEquals(3, reopened.size());
+        assertEquals(1, reopened.lookup("apricot"));
+        assertEquals(2, reopened.lookup("banana"));
+        assertEquals(-1, reopened.lookup("avocado"));
+        reopened.close();
+    }
+}
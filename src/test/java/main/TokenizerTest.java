@@ -0,0 +1,73 @@
+package main;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TreeMap;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests of Tokenizer, which must normalize words the same way for indexing and for
+ * queries, and only give new words a term id when indexing.
+ */
+class TokenizerTest {
+    @Test
+    void wordsAreNormalized() {
+        ArrayList<String> words = new ArrayList<>();
+        new Tokenizer().tokenize("Don't STOP, café-au-lait x2!", (chars, len) -> words.add(new String(chars, 0, len)));
+        assertEquals(List.of("dont", "stop", "café", "au", "lait", "x2"), words);
+    }
+
+    @Test
+    void countsAreByTermId() throws IOException {
+        TermDictionary dictionary = new TermDictionary();
+        TreeMap<Integer, Integer> counts = Tokenizer.count("the cat and The dog and the bird", dictionary);
+        assertEquals(5, dictionary.size());
+        assertEquals(3, (int) counts.get(dictionary.lookup("the")));
+        assertEquals(2, (int) counts.get(dictionary.lookup("and")));
+        assertEquals(1, (int) counts.get(dictionary.lookup("bird")));
+    }
+
+    @Test
+    void queriesDoNotGrowTheDictionary() throws IOException {
+        TermDictionary dictionary = new TermDictionary();
+        Tokenizer.count("red green blue", dictionary);
+        TreeMap<Integer, Integer> counts = Tokenizer.countKnown("green purple GREEN orange red", dictionary);
+        assertEquals(3, dictionary.size());
+        assertEquals(-1, dictionary.lookup("purple"));
+        assertEquals(2, counts.size());
+        assertEquals(2, (int) counts.get(dictionary.lookup("green")));
+        assertEquals(1, (int) counts.get(dictionary.lookup("red")));
+    }
+
+    @Test
+    void countsMatchAMapOfEveryWord() {
+        StringBuilder text = new StringBuilder();
+        TreeMap<String, Integer> expected = new TreeMap<>();
+        for (int i = 0; i < 20000; i++) {
+            String word = "w" + (i * 31 % 1500);
+            text.append(i % 7 == 0 ? word.toUpperCase() : word).append(' ');
+            expected.merge(word, 1, Integer::sum);
+        }
+        assertEquals(expected, Tokenizer.count(text));
+    }
+
+    @Test
+    void repeatedWordsAreNotCopied() {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < 100000; i++) text.append("the quick brown fox jumps over the lazy dog ");
+        Tokenizer.count(text); // the classes and the code are warmed up first
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long thread = Thread.currentThread().getId();
+        long before = threads.getThreadAllocatedBytes(thread);
+        TreeMap<String, Integer> counts = Tokenizer.count(text);
+        long allocated = threads.getThreadAllocatedBytes(thread) - before;
+        assertEquals(200000, (int) counts.get("the"));
+        assertTrue(allocated < 64 * 1024, allocated + " bytes for 8 distinct words"); // a String per word would take megabytes
+    }
+}
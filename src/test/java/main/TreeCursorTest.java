@@ -0,0 +1,190 @@
+package main;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests of TreeCursor, which must give back the entries of a range in order, once each,
+ * whether they were read ahead or not, and leave the buffer pool as it was.
+ */
+class TreeCursorTest {
+    /**
+     * Directory the tree files are made in.
+     */
+    @TempDir
+    File dir;
+
+    /**
+     * Method to make a tree of random term counts, inserted one by one through a small buffer pool.
+     * @param name the name of the tree file.
+     * @param size the amount of inserts.
+     * @param expected map the count of every term is added to.
+     * @return the tree.
+     * @throws IOException if the tree could not be written.
+     */
+    BTree randomTree(String name, int size, TreeMap<Integer, Integer> expected) throws IOException {
+        BTree tree = new BTree(new ChannelPageStore(new RandomAccessFile(new File(dir, name), "rw"),
+                PersistentStatics.DEFAULT_PAGE_SIZE), new TermDictionary(), BufferPool.MIN_CAPACITY);
+        Random random = new Random(19);
+        for (int i = 0; i < size; i++) {
+            int term = random.nextInt(4 * size);
+            int amount = 1 + random.nextInt(3);
+            tree.insert(term, amount);
+            expected.merge(term, amount, Integer::sum);
+        }
+        return tree;
+    }
+
+    /**
+     * Method to check a cursor gives back exactly the expected entries, in order.
+     * @param expected the count of every term the cursor should return, in order of term id.
+     * @param cursor the cursor.
+     * @throws IOException if a node could not be read.
+     */
+    static void assertScan(Map<Integer, Integer> expected, TreeCursor cursor) throws IOException {
+        for (Map.Entry<Integer, Integer> e : expected.entrySet()) {
+            assertTrue(cursor.hasNext(), "scan ended before term " + e.getKey());
+            Entry next = cursor.next();
+            assertEquals((int) e.getKey(), next.term);
+            assertEquals((int) e.getValue(), next.count, "term " + next.term);
+        }
+        assertFalse(cursor.hasNext());
+        assertNull(cursor.next());
+    }
+
+    @Test
+    void fullScanAndRangesMatchASortedMap() throws IOException {
+        TreeMap<Integer, Integer> expected = new TreeMap<>();
+        BTree tree = randomTree("range.bt", 20000, expected);
+        assertScan(expected, tree.cursor());
+        Random random = new Random(91);
+        for (int i = 0; i < 200; i++) {
+            int from = random.nextInt(90000) - 5000;
+            int to = from + random.nextInt(i % 2 == 0 ? 100 : 30000);
+            assertScan(expected.subMap(from, to), tree.range(from, to));
+        }
+        assertScan(expected.subMap(5, 5), tree.range(5, 5));
+        assertScan(expected.subMap(5, 5), tree.range(9, 3));
+        tree.close();
+    }
+
+    @Test
+    void scanReadsAheadPastManyLeavesWithoutFillingThePool() throws IOException {
+        File file = new File(dir, "ahead.bt");
+        TermDictionary dictionary = new TermDictionary();
+        BTree built = new BTree(new RandomAccessFile(file, "rw"), dictionary);
+        ArrayList<Entry> sorted = new ArrayList<>();
+        TreeMap<Integer, Integer> expected = new TreeMap<>();
+        for (int i = 0; i < 100000; i++) {
+            Entry e = new Entry(3 * i);
+            e.count = 1 + i % 5;
+            sorted.add(e);
+            expected.put(e.term, e.count);
+        }
+        built.bulkLoad(sorted.iterator(), 1); // full leaves, so a parent has many more than READ_AHEAD of them
+        built.close();
+
+        BTree tree = BTree.open(new ChannelPageStore(new RandomAccessFile(file, "rw"), PersistentStatics.DEFAULT_PAGE_SIZE),
+                dictionary, BufferPool.MIN_CAPACITY);
+        assertEquals(1, tree.search(1500).count); // a search puts its path in the pool
+        int cached = tree.cache.nodes.size();
+        long misses = tree.cache.misses;
+        assertScan(expected, tree.cursor());
+        assertScan(expected.subMap(150000, 150300), tree.range(150000, 150300));
+        assertEquals(cached, tree.cache.nodes.size());
+        assertEquals(misses, tree.cache.misses);
+        assertEquals(0, tree.cache.evictions);
+        tree.close();
+    }
+
+    @Test
+    void readAheadStartsOnlyOnceEveryLatchIsLetGo() throws Exception {
+        TreeMap<Integer, Integer> expected = new TreeMap<>();
+        BTree tree = randomTree("ahead.bt", 20000, expected);
+        AtomicInteger submitted = new AtomicInteger();
+        AtomicInteger latched = new AtomicInteger();
+        ExecutorService io = new ThreadPoolExecutor(1, 1, 0, TimeUnit.SECONDS, new LinkedBlockingQueue<>()) {
+            @Override
+            public void execute(Runnable task) {
+                submitted.incrementAndGet();
+                for (ReentrantReadWriteLock latch : tree.latches) { // held by the cursor, the reads before may hold theirs
+                    if (latch.getReadHoldCount() > 0 || latch.isWriteLockedByCurrentThread()) latched.incrementAndGet();
+                }
+                super.execute(task);
+            }
+        };
+        tree.io = io;
+        assertScan(expected, tree.cursor());
+        assertTrue(submitted.get() > 0);
+        assertEquals(0, latched.get());
+        io.shutdown();
+        tree.close();
+    }
+
+    @Test
+    void wordRangesAndPrefixesFilterTheScan() throws IOException {
+        TermDictionary dictionary = new TermDictionary();
+        BTree tree = new BTree(new RandomAccessFile(new File(dir, "words.bt"), "rw"), dictionary);
+        String[] words = {"pear", "apple", "peach", "banana", "apricot", "plum", "berry", "pea"};
+        for (int i = 0; i < words.length; i++) tree.insert(words[i], i + 1);
+
+        TreeMap<Integer, Integer> prefix = new TreeMap<>();
+        TreeMap<Integer, Integer> range = new TreeMap<>();
+        for (int i = 0; i < words.length; i++) {
+            int term = dictionary.lookup(words[i]);
+            if (words[i].startsWith("pea")) prefix.put(term, i + 1);
+            if (words[i].compareTo("apricot") >= 0 && words[i].compareTo("berry") < 0) range.put(term, i + 1);
+        }
+        assertEquals(3, prefix.size());
+        assertEquals(2, range.size());
+        assertScan(prefix, tree.prefix("pea"));
+        assertScan(range, tree.range("apricot", "berry"));
+        assertScan(new TreeMap<>(), tree.prefix("x"));
+        tree.close();
+    }
+
+    @Test
+    void scanDuringInsertsReturnsEveryEarlierEntryOnceInOrder() throws Exception {
+        TreeMap<Integer, Integer> expected = new TreeMap<>();
+        BTree tree = randomTree("moving.bt", 5000, expected);
+        Thread writer = new Thread(() -> {
+            try {
+                for (int i = 0; i < 20000; i++) tree.insert(100000 + 2 * i, 1); // terms after every earlier one
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        });
+        writer.start();
+        TreeCursor cursor = tree.cursor();
+        long last = -1;
+        int earlier = 0;
+        while (cursor.hasNext()) {
+            Entry e = cursor.next();
+            assertTrue(e.term > last, e.term + " came after " + last);
+            last = e.term;
+            if (expected.containsKey(e.term)) earlier++;
+        }
+        writer.join();
+        assertEquals(expected.size(), earlier);
+        tree.close();
+    }
+}